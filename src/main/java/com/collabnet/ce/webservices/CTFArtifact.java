@@ -17,10 +17,9 @@ import java.util.logging.Logger;
 /**
  * @author Kohsuke Kawaguchi
  */
-public class CTFArtifact extends CTFObject {
+public class CTFArtifact extends CTFObject implements ObjectWithTitle {
 
     static Logger logger = Logger.getLogger(CTFArtifact.class.getName());
-    Helper helper = new Helper();
     public String title;
     public String id;
     public String path;
@@ -126,7 +125,7 @@ public class CTFArtifact extends CTFObject {
      */
     public void refill() throws IOException {
         String end_point =  app.getServerUrl() + CTFConstants.ARTIFACT_URL + getId();
-        Response response = helper.request(end_point, app.getSessionId(), null, HttpMethod.GET, null);
+        Response response = app.request(end_point, null, HttpMethod.GET, null);
         String result = response.readEntity(String.class);
         int status = response.getStatus();
         if (status < 300) {
@@ -139,7 +138,7 @@ public class CTFArtifact extends CTFObject {
             }
         } else {
             logger.log(Level.WARNING, "Error getting the artifact details - " + status  + ", Error Msg - " + result);
-            throw new IOException("Error getting the artifact details - " + status + ", Error Msg - " + helper.getErrorMessage(result));
+            throw new IOException("Error getting the artifact details - " + status + ", Error Msg - " + Helper.getErrorMessage(result));
         }
         needsRefill = false;
     }
@@ -189,7 +188,7 @@ public class CTFArtifact extends CTFObject {
         requestPayload.put("comment", comment);
         requestPayload.put("attachments", attachArray);
         requestPayload.put("status", getStatus());
-        Response response = helper.request(end_point, app.getSessionId(), requestPayload.toString(), HttpMethod.PATCH, null);
+        Response response = app.request(end_point, requestPayload.toString(), HttpMethod.PATCH, null);
         String result = response.readEntity(String.class);
         int status = response.getStatus();
         if (status < 300) {
@@ -201,7 +200,7 @@ public class CTFArtifact extends CTFObject {
             }
         } else {
             logger.log(Level.WARNING,"Updating the artifact data failed - " + status);
-            throw new IOException("Error updating the artifact data failed - " + status + ", Error Msg - " + helper.getErrorMessage(result));
+            throw new IOException("Error updating the artifact data failed - " + status + ", Error Msg - " + Helper.getErrorMessage(result));
         }
     }
 
@@ -17,7 +17,6 @@ import java.util.logging.Logger;
 public class CTFDocument extends CTFItem {
 
     private final String description;
-    Helper helper = new Helper();
 
     static Logger logger = Logger.getLogger(CTFDocument.class.getName());
 
@@ -37,7 +36,7 @@ public class CTFDocument extends CTFItem {
         String end_point = app.getServerUrl() + CTFConstants.DOCUMENT_URL + getId();
         int currentVersion = 0;
         JSONObject docObj = new JSONObject();
-        Response response = helper.request(end_point, app.getSessionId(), null, HttpMethod.GET, null);
+        Response response = app.request(end_point, null, HttpMethod.GET, null);
         String result = response.readEntity(String.class);
         int status = response.getStatus();
         if (status < 300) {
@@ -52,7 +51,7 @@ public class CTFDocument extends CTFItem {
             } catch (ParseException e) {
                 logger.log(Level.WARNING, "Unable to parse the json content in getDocumentData() - " + e.getLocalizedMessage(), e);
             }
-            Response patchResponse = helper.request(end_point, app.getSessionId(), docObj.toString(), HttpMethod.PATCH, null);
+            Response patchResponse = app.request(end_point, docObj.toString(), HttpMethod.PATCH, null);
             String patchResult = patchResponse.readEntity(String.class);
             int patchStatus = patchResponse.getStatus();
             if (patchStatus == 200) {
@@ -67,7 +66,21 @@ public class CTFDocument extends CTFItem {
             }
         } else {
             logger.log(Level.WARNING, "Error getting the document details - " + status + ", Error Msg - " + result);
-            throw new IOException("Error getting the document details - " + status + ", Error Msg - " + helper.getErrorMessage(result));
+            throw new IOException("Error getting the document details - " + status + ", Error Msg - " + Helper.getErrorMessage(result));
+        }
+    }
+
+    /**
+     * Deletes this document, with all its versions.
+     */
+    public void delete() throws IOException {
+        String end_point = app.getServerUrl() + CTFConstants.DOCUMENT_URL + getId();
+        Response response = app.request(end_point, null, HttpMethod.DELETE, null);
+        String result = response.readEntity(String.class);
+        int status = response.getStatus();
+        if (status >= 300) {
+            logger.log(Level.WARNING, "Error while deleting a document - " + status + ", Error Msg - " + result);
+            throw new IOException("Error while deleting a document - " + status + ", Error Msg - " + Helper.getErrorMessage(result));
         }
     }
 
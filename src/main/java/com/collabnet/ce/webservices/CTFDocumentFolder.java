@@ -2,7 +2,6 @@ package com.collabnet.ce.webservices;
 
 import hudson.plugins.collabnet.util.Helper;
 import org.json.simple.JSONObject;
-import org.json.simple.JSONArray;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 
@@ -10,7 +9,6 @@ import javax.ws.rs.HttpMethod;
 import javax.ws.rs.core.Response;
 import java.io.IOException;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -23,8 +21,6 @@ public class CTFDocumentFolder extends CTFFolder {
 
     static Logger logger = Logger.getLogger(CTFDocumentFolder.class.getName());
 
-    Helper helper = new Helper();
-
     CTFDocumentFolder(CTFObject parent, JSONObject object) {
         super(parent, object, object.get("id").toString(), object.get("parentId").toString());
     }
@@ -35,30 +31,11 @@ public class CTFDocumentFolder extends CTFFolder {
         Map<String, String> queryParam = new HashMap<>();
         queryParam.put("recursive", "false");
         queryParam.put("basic", "false");
-        Response response = helper.request(end_point, app.getSessionId(), null, HttpMethod.GET, queryParam);
-        String result = response.readEntity(String.class);
-        int status = response.getStatus();
-        if (status < 300) {
-            JSONObject data = null;
-            try {
-                data = (JSONObject) new JSONParser().parse(result);
-                if (data != null & data.containsKey("items")) {
-                    JSONArray dataArray = (JSONArray)data.get("items");
-                    Iterator it = dataArray.iterator();
-                    while (it.hasNext()) {
-                        JSONObject jsonObject = (JSONObject) it.next();
-                        if (jsonObject != null) {
-                            r.add(new CTFDocumentFolder(this, jsonObject));
-                        }
-                    }
-                }
-            } catch (ParseException e) {
-                logger.log(Level.WARNING, "Unable to parse the json content in getFolders() - " + e.getLocalizedMessage(), e);
+        app.getItems(end_point, queryParam, "the document folders", new CTFJsonStream.ItemHandler() {
+            public void item(JSONObject item) {
+                r.add(new CTFDocumentFolder(CTFDocumentFolder.this, item));
             }
-        } else {
-            logger.log(Level.WARNING, "Error getting the document folders - " + status  + ", Error Msg - " + result);
-            throw new IOException("Error getting a document folders - " + status + ", Error Msg - " + helper.getErrorMessage(result));
-        }
+        });
         return r;
     }
 
@@ -67,7 +44,7 @@ public class CTFDocumentFolder extends CTFFolder {
         JSONObject requestPayload = new JSONObject();
         requestPayload.put("title", title);
         requestPayload.put("description", description);
-        Response response = helper.request(end_point, app.getSessionId(), requestPayload.toString(), HttpMethod.POST, null);
+        Response response = app.request(end_point, requestPayload.toString(), HttpMethod.POST, null);
         String result = response.readEntity(String.class);
         int status = response.getStatus();
         if (status < 300) {
@@ -80,42 +57,20 @@ public class CTFDocumentFolder extends CTFFolder {
             }
         } else {
             logger.log(Level.WARNING,"Error creating a document folder - " + status  + ", Error Msg - " + result);
-            throw new IOException("Error creating a document folder - " + status + ", Error Msg - " + helper.getErrorMessage(result));
+            throw new IOException("Error creating a document folder - " + status + ", Error Msg - " + Helper.getErrorMessage(result));
         }
         return null;
     }
 
     public CTFList<CTFDocument> getDocuments() throws IOException {
-        CTFList<CTFDocument> r = new CTFList<CTFDocument>();
         String end_point =  app.getServerUrl() + CTFConstants.DOCUMENT_FOLDERS_URL + getId() + "/documents";
-        Map<String, String> queryParam = new HashMap<>();
-        queryParam.put("offset", "0");
-        queryParam.put("count", "25");
-        Response response = helper.request(end_point, app.getSessionId(), null, HttpMethod.GET, queryParam);
-        String result = response.readEntity(String.class);
-        int status = response.getStatus();
-        if (status < 300) {
-            JSONObject data = null;
-            try {
-                data = (JSONObject) new JSONParser().parse(result);
-                if (data != null & data.containsKey("items")) {
-                    JSONArray dataArray = (JSONArray)data.get("items");
-                    Iterator it = dataArray.iterator();
-                    while (it.hasNext()) {
-                        JSONObject jsonObject = (JSONObject) it.next();
-                        if (jsonObject != null) {
-                            r.add(new CTFDocument(this, jsonObject));
-                        }
-                    }
-                }
-            } catch (ParseException e) {
-                logger.log(Level.WARNING, "Unable to parse the json content in getDocuments() - " + e.getLocalizedMessage(), e);
+        return new CTFList<CTFDocument>(new CTFPagedIterator<CTFDocument>(app, end_point, null, HttpMethod.GET,
+                null, "the documents list") {
+            @Override
+            protected CTFDocument create(JSONObject item) {
+                return new CTFDocument(CTFDocumentFolder.this, item);
             }
-        } else {
-            logger.log(Level.WARNING, "Error getting the documents list - " + status  + ", Error Msg - " + result);
-            throw new IOException("Error getting a documents list - " + status + ", Error Msg - " + helper.getErrorMessage(result));
-        }
-        return r;
+        });
     }
 
     public CTFDocument createDocument(java.lang.String title,
@@ -136,7 +91,7 @@ public class CTFDocumentFolder extends CTFFolder {
         requestPayload.put("fileName", fileName);
         requestPayload.put("mimeType", mimeType);
         requestPayload.put("fileId", file!=null?file.getId():null);
-        Response response = helper.request(end_point, app.getSessionId(), requestPayload.toString(), HttpMethod.POST, null);
+        Response response = app.request(end_point, requestPayload.toString(), HttpMethod.POST, null);
         String result = response.readEntity(String.class);
         int statusCode = response.getStatus();
         if (statusCode < 300) {
@@ -149,7 +104,7 @@ public class CTFDocumentFolder extends CTFFolder {
             }
         } else {
             logger.log(Level.WARNING,"Error creating a document - " + statusCode  + ", Error Msg - " + result);
-            throw new IOException("Error creating a document - " + status + ", Error Msg - " + helper.getErrorMessage(result));
+            throw new IOException("Error creating a document - " + status + ", Error Msg - " + Helper.getErrorMessage(result));
         }
         return null;
     }
@@ -19,8 +19,6 @@ public class CTFGroup extends CTFObject implements ObjectWithTitle {
 
     static Logger logger = Logger.getLogger(CTFGroup.class.getName());
 
-    Helper helper = new Helper();
-
     CTFGroup(CollabNetApp app, JSONObject data) {
         super(app,data.get("id").toString());
         this.fullName = data.get("fullname").toString();
@@ -49,14 +47,14 @@ public class CTFGroup extends CTFObject implements ObjectWithTitle {
     public void addMember(CTFUser u) throws IOException {
         String end_point =  app.getServerUrl() + CTFConstants.FOUNDATION_URL + "users/by-username/" + u.getUserName() +
                 "/groups/" + getId();
-        Response response = helper.request(end_point, app.getSessionId(), null, HttpMethod.PUT, null);
+        Response response = app.request(end_point, null, HttpMethod.PUT, null);
         String result = response.readEntity(String.class);
         int status = response.getStatus();
         if (status < 300) {
             logger.log(Level.INFO, u.getUserName() + " successfully added to the group");
         } else {
             logger.log(Level.WARNING, "Error while adding a member to the group - " + status + ", Error Msg - " + result);
-            throw new IOException("Error while adding a member to the group - " + status + ", Error Msg - " + helper.getErrorMessage(result));
+            throw new IOException("Error while adding a member to the group - " + status + ", Error Msg - " + Helper.getErrorMessage(result));
         }
     }
 }
@@ -0,0 +1,214 @@
+package com.collabnet.ce.webservices;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ContentHandler;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Parses TeamForge responses straight from the entity stream, without first reading the
+ * body into a String.
+ *
+ * <p>
+ * {@link #parseItems} goes further for list responses: only one element of {@code items}
+ * is held as a {@link JSONObject} at a time, and it is handed over as soon as it is complete,
+ * so a page of results never exists as a whole document.
+ */
+final class CTFJsonStream {
+    /**
+     * Receives the elements of {@code items} one by one.
+     */
+    interface ItemHandler {
+        void item(JSONObject item);
+    }
+
+    /**
+     * As a utility class, CTFJsonStream should never be instantiated.
+     */
+    private CTFJsonStream() {}
+
+    /**
+     * Parses a whole UTF-8 document, and closes the stream.
+     */
+    static JSONObject parse(InputStream in) throws IOException, ParseException {
+        try (Reader r = reader(in)) {
+            return (JSONObject) new JSONParser().parse(r);
+        }
+    }
+
+    /**
+     * What a list response said about itself, besides its items.
+     */
+    static final class Items {
+        /**
+         * Number of elements in {@code items}, including the ones that are not objects.
+         */
+        final int count;
+        /**
+         * The top level {@code total}, or -1 if the response has none.
+         */
+        final long total;
+
+        Items(int count, long total) {
+            this.count = count;
+            this.total = total;
+        }
+    }
+
+    /**
+     * Streams the elements of the top level {@code items} array to the handler, skipping
+     * everything else but the top level {@code total}.
+     */
+    static Items parseItems(Response response, ItemHandler handler) throws IOException, ParseException {
+        return parseItems(response.readEntity(InputStream.class), handler);
+    }
+
+    /**
+     * Streams the items of a UTF-8 document, and closes the stream.
+     *
+     * @see #parseItems(Response, ItemHandler)
+     */
+    static Items parseItems(InputStream in, ItemHandler handler) throws IOException, ParseException {
+        try (Reader r = reader(in)) {
+            return parseItems(r, handler);
+        }
+    }
+
+    /**
+     * @see #parseItems(Response, ItemHandler)
+     */
+    static Items parseItems(Reader r, ItemHandler handler) throws IOException, ParseException {
+        ItemsHandler h = new ItemsHandler(handler);
+        new JSONParser().parse(r, h);
+        return new Items(h.count, h.total);
+    }
+
+    private static Reader reader(InputStream in) {
+        return new InputStreamReader(in, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Builds one item at a time out of the parser events.
+     */
+    private static final class ItemsHandler implements ContentHandler {
+        private final ItemHandler handler;
+        /**
+         * Objects and arrays of the item being built, innermost first.
+         */
+        private final Deque<Object> stack = new ArrayDeque<Object>();
+        /**
+         * Keys waiting for their value in the objects on {@link #stack}.
+         */
+        private final Deque<String> keys = new ArrayDeque<String>();
+        /**
+         * Nesting of the objects and arrays outside of {@code items}.
+         */
+        private int depth;
+        private String topKey;
+        private boolean inItems;
+        int count;
+        long total = -1;
+
+        ItemsHandler(ItemHandler handler) {
+            this.handler = handler;
+        }
+
+        public void startJSON() {
+        }
+
+        public void endJSON() {
+        }
+
+        public boolean startObject() {
+            if (inItems) {
+                stack.push(new JSONObject());
+            } else {
+                depth++;
+            }
+            return true;
+        }
+
+        public boolean endObject() {
+            if (!stack.isEmpty()) {
+                add(stack.pop());
+            } else {
+                depth--;
+            }
+            return true;
+        }
+
+        public boolean startObjectEntry(String key) {
+            if (!stack.isEmpty()) {
+                keys.push(key);
+            } else if (depth == 1) {
+                topKey = key;
+            }
+            return true;
+        }
+
+        public boolean endObjectEntry() {
+            if (stack.isEmpty() && depth == 1) {
+                topKey = null;
+            }
+            return true;
+        }
+
+        public boolean startArray() {
+            if (inItems) {
+                stack.push(new JSONArray());
+            } else if (depth == 1 && "items".equals(topKey)) {
+                inItems = true;
+            } else {
+                depth++;
+            }
+            return true;
+        }
+
+        public boolean endArray() {
+            if (!stack.isEmpty()) {
+                add(stack.pop());
+            } else if (inItems) {
+                inItems = false;
+            } else {
+                depth--;
+            }
+            return true;
+        }
+
+        public boolean primitive(Object value) {
+            if (inItems) {
+                add(value);
+            } else if (depth == 1 && "total".equals(topKey) && value instanceof Number) {
+                total = ((Number) value).longValue();
+            }
+            return true;
+        }
+
+        private void add(Object value) {
+            if (stack.isEmpty()) {
+                // an element of items is complete
+                count++;
+                if (value instanceof JSONObject) {
+                    handler.item((JSONObject) value);
+                }
+                return;
+            }
+            Object container = stack.peek();
+            if (container instanceof JSONObject) {
+                ((JSONObject) container).put(keys.pop(), value);
+            } else {
+                ((JSONArray) container).add(value);
+            }
+        }
+    }
+}
@@ -3,40 +3,205 @@ package com.collabnet.ce.webservices;
 import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
 
 /**
  * Glorified {@link ArrayList} that supports a look-up by the title.
+ *
+ * <p>
+ * A list can be backed by a lazily fetched source such as a {@link CTFPagedIterator}.
+ * Iteration and the look-ups only pull as many items as they need; anything that depends
+ * on the whole list, like {@link #size()}, fetches the rest first. Since {@link List}
+ * methods cannot throw {@link java.io.IOException}, a lazily fetched page that fails
+ * surfaces as an unchecked {@link CollabNetApp.CollabNetAppException} from any of them,
+ * see {@link CollabNetApp.CollabNetAppException#toIOException()}.
+ *
  * @author Kohsuke Kawaguchi
  */
-public class CTFList<T extends ObjectWithTitle> extends ArrayList<T> {
+public class CTFList<T extends ObjectWithTitle> extends AbstractList<T> implements RandomAccess {
+    private final List<T> items;
+
+    /**
+     * Items not fetched yet, or null once the source is exhausted.
+     */
+    private Iterator<? extends T> source;
+
+    /**
+     * Loaded items by title and by ID, built on the first look-up and dropped on mutation.
+     * When titles or IDs repeat, the first item wins, just like a scan would.
+     */
+    private Map<String, T> titleIndex, idIndex;
+
     public CTFList() {
+        this.items = new ArrayList<T>();
     }
 
     public CTFList(Collection<? extends T> c) {
-        super(c);
+        this.items = new ArrayList<T>(c);
+    }
+
+    /**
+     * Creates a list that is filled from the given iterator on demand.
+     */
+    public CTFList(Iterator<? extends T> source) {
+        this();
+        this.source = source;
+    }
+
+    /**
+     * Pulls one more item from the source.
+     *
+     * @return false if the source is exhausted.
+     */
+    private boolean fetchNext() {
+        if (source != null) {
+            if (source.hasNext()) {
+                T t = source.next();
+                items.add(t);
+                if (titleIndex != null) {
+                    index(t);
+                }
+                return true;
+            }
+            source = null;
+        }
+        return false;
+    }
+
+    private void index(T t) {
+        if (!titleIndex.containsKey(t.getTitle())) {
+            titleIndex.put(t.getTitle(), t);
+        }
+        if (!idIndex.containsKey(t.getId())) {
+            idIndex.put(t.getId(), t);
+        }
+    }
+
+    private void buildIndexes() {
+        if (titleIndex == null) {
+            titleIndex = new HashMap<String, T>();
+            idIndex = new HashMap<String, T>();
+            for (T t : items) {
+                index(t);
+            }
+        }
+    }
+
+    private void invalidateIndexes() {
+        titleIndex = idIndex = null;
+    }
+
+    private void fetchAll() {
+        while (fetchNext()) {
+        }
+    }
+
+    @Override
+    public T get(int index) {
+        while (index >= items.size() && fetchNext()) {
+        }
+        return items.get(index);
+    }
+
+    @Override
+    public int size() {
+        fetchAll();
+        return items.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return items.isEmpty() && !fetchNext();
+    }
+
+    @Override
+    public T set(int index, T element) {
+        fetchAll();
+        invalidateIndexes();
+        return items.set(index, element);
+    }
+
+    @Override
+    public void add(int index, T element) {
+        fetchAll();
+        invalidateIndexes();
+        items.add(index, element);
+        modCount++;
+    }
+
+    @Override
+    public T remove(int index) {
+        fetchAll();
+        invalidateIndexes();
+        modCount++;
+        return items.remove(index);
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private int cursor;
+            private int lastRet = -1;
+
+            public boolean hasNext() {
+                return cursor < items.size() || fetchNext();
+            }
+
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                lastRet = cursor++;
+                return items.get(lastRet);
+            }
+
+            public void remove() {
+                if (lastRet < 0) {
+                    throw new IllegalStateException();
+                }
+                CTFList.this.remove(lastRet);
+                cursor = lastRet;
+                lastRet = -1;
+            }
+        };
     }
 
     /**
      * Looks up the object by its title.
      */
     public T byTitle(String title) {
-        for (T t : this) {
-            if (t.getTitle().equals(title))
-                return t;
+        buildIndexes();
+        while (!titleIndex.containsKey(title)) {
+            if (!fetchNext()) {
+                return null;
+            }
         }
-        return null;
+        return titleIndex.get(title);
     }
 
     /**
      * Looks up the object by its ID.
      */
     public T byId(String id) {
-        for (T t : this) {
-            if (t.getId().equals(id))
-                return t;
+        buildIndexes();
+        while (!idIndex.containsKey(id)) {
+            if (!fetchNext()) {
+                return null;
+            }
         }
-        return null;
+        return idIndex.get(id);
+    }
+
+    /**
+     * Checks if an object with the given title is in this list.
+     */
+    public boolean containsTitle(String title) {
+        return byTitle(title) != null;
     }
 
     /**
@@ -0,0 +1,137 @@
+package com.collabnet.ce.webservices;
+
+import hudson.Extension;
+import hudson.model.Hudson;
+import hudson.model.PeriodicWork;
+import hudson.plugins.collabnet.CollabNetPlugin;
+import hudson.util.AtomicFileWriter;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Optional on-disk copy of the TeamForge metadata cached by the plugin, so that a restarted
+ * controller does not have to look everything up again at once.
+ *
+ * <p>
+ * Only what identifies objects is written (ids, titles, hierarchy), never sessions or
+ * permissions. Restored entries are used right away and checked against the server in the
+ * background the first time they are used.
+ *
+ * <p>
+ * Disabled unless the {@code hudson.plugins.collabnet.CollabNetPlugin.metadataSnapshot}
+ * system property is set to true.
+ */
+public final class CTFMetadataSnapshot {
+    private static final String PROPERTY_PREFIX = CollabNetPlugin.class.getName() + ".";
+
+    public static final boolean ENABLED = Boolean.getBoolean(PROPERTY_PREFIX + "metadataSnapshot");
+
+    /**
+     * How often the snapshot is written, if anything changed.
+     */
+    public static final long INTERVAL_MS = TimeUnit.MINUTES.toMillis(
+            Long.getLong(PROPERTY_PREFIX + "metadataSnapshotIntervalMin", 15));
+
+    private static final int VERSION = 1;
+
+    static Logger logger = Logger.getLogger(CTFMetadataSnapshot.class.getName());
+
+    /**
+     * As a utility class, CTFMetadataSnapshot should never be instantiated.
+     */
+    private CTFMetadataSnapshot() {}
+
+    private static File getFile() {
+        return new File(Hudson.getInstance().getRootDir(), "collabnet-metadata.json");
+    }
+
+    /**
+     * Fills the caches from the snapshot, if there is one.
+     */
+    public static void load() {
+        if (ENABLED) {
+            load(getFile());
+        }
+    }
+
+    static void load(File f) {
+        if (!f.exists()) {
+            return;
+        }
+        Object data;
+        try (Reader r = new InputStreamReader(new FileInputStream(f), StandardCharsets.UTF_8)) {
+            data = new JSONParser().parse(r);
+        } catch (IOException | ParseException e) {
+            logger.log(Level.WARNING, "Unable to read the TeamForge metadata snapshot " + f, e);
+            return;
+        }
+        if (!(data instanceof JSONObject)
+                || !String.valueOf(VERSION).equals(String.valueOf(((JSONObject) data).get("version")))) {
+            logger.fine("Ignoring " + f + ", which is not a version " + VERSION + " snapshot");
+            return;
+        }
+        Object projects = ((JSONObject) data).get("projects");
+        if (projects instanceof JSONArray) {
+            CTFProjectCache.restore((JSONArray) projects);
+            logger.fine("Restored " + ((JSONArray) projects).size() + " projects from " + f);
+        }
+    }
+
+    /**
+     * Writes the snapshot if anything changed since it was last written.
+     */
+    public static void save() {
+        if (ENABLED) {
+            save(getFile());
+        }
+    }
+
+    static synchronized void save(File f) {
+        JSONArray projects = CTFProjectCache.snapshot();
+        if (projects == null) {
+            return;
+        }
+        JSONObject data = new JSONObject();
+        data.put("version", VERSION);
+        data.put("projects", projects);
+        try {
+            AtomicFileWriter w = new AtomicFileWriter(f.toPath(), StandardCharsets.UTF_8);
+            try {
+                w.write(data.toJSONString());
+                w.commit();
+            } finally {
+                w.abort();
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Unable to write the TeamForge metadata snapshot " + f, e);
+        }
+    }
+
+    /**
+     * Writes the snapshot every {@link #INTERVAL_MS}.
+     */
+    @Extension
+    public static final class Writer extends PeriodicWork {
+        @Override
+        public long getRecurrencePeriod() {
+            return INTERVAL_MS;
+        }
+
+        @Override
+        protected void doRun() {
+            save();
+        }
+    }
+}
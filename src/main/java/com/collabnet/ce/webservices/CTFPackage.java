@@ -2,14 +2,12 @@ package com.collabnet.ce.webservices;
 
 import hudson.plugins.collabnet.util.Helper;
 import org.json.simple.JSONObject;
-import org.json.simple.JSONArray;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 
 import javax.ws.rs.HttpMethod;
 import javax.ws.rs.core.Response;
 import java.io.IOException;
-import java.util.Iterator;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -20,8 +18,6 @@ public class CTFPackage extends CTFFolder {
 
     static Logger logger = Logger.getLogger(CTFPackage.class.getName());
 
-    Helper helper = new Helper();
-
     private static final String RELEASE_STATUS_ACTIVE = "active";
     private static final String MATURITY_NONE = "";
     private String description = "";
@@ -35,12 +31,12 @@ public class CTFPackage extends CTFFolder {
      */
     public void delete() throws IOException {
         String end_point =  app.getServerUrl() + CTFConstants.PACKAGE_URL + getId();
-        Response response = helper.request(end_point, app.getSessionId(), null, HttpMethod.DELETE, null);
+        Response response = app.request(end_point, null, HttpMethod.DELETE, null);
         int status = response.getStatus();
         String result = response.readEntity(String.class);
         if (status >= 300) {
             logger.log(Level.WARNING, "Error while deleting a package - " + status);
-            throw new IOException("Error while deleting a package - " + status + ", Error Msg - " + helper.getErrorMessage(result));
+            throw new IOException("Error while deleting a package - " + status + ", Error Msg - " + Helper.getErrorMessage(result));
         }
     }
 
@@ -51,7 +47,7 @@ public class CTFPackage extends CTFFolder {
         requestPayload.put("description", description);
         requestPayload.put("status", status);
         requestPayload.put("maturity", maturity);
-        Response response = helper.request(end_point, app.getSessionId(), requestPayload.toString(), HttpMethod.POST, null);
+        Response response = app.request(end_point, requestPayload.toString(), HttpMethod.POST, null);
         String result = response.readEntity(String.class);
         int statusCode = response.getStatus();
         if (statusCode < 300) {
@@ -64,7 +60,7 @@ public class CTFPackage extends CTFFolder {
             }
         } else {
             logger.log(Level.WARNING,"Error creating a release - " + statusCode + "Error Msg - " + result);
-            throw new IOException("Error creating a release - " + status + ", Error Msg - " + helper.getErrorMessage(result));
+            throw new IOException("Error creating a release - " + status + ", Error Msg - " + Helper.getErrorMessage(result));
         }
         return null;
     }
@@ -91,7 +87,7 @@ public class CTFPackage extends CTFFolder {
     public CTFRelease getReleaseById(String releaseId) throws IOException {
         CTFRelease ctfRelease = null;
         String end_point = app.getServerUrl() + CTFConstants.RELEASE_URL + releaseId;
-        Response response = helper.request(end_point, app.getSessionId(), null, HttpMethod.GET, null);
+        Response response = app.request(end_point, null, HttpMethod.GET, null);
         String result = response.readEntity(String.class);
         int status = response.getStatus();
         if (status < 300) {
@@ -104,7 +100,7 @@ public class CTFPackage extends CTFFolder {
             }
         } else {
             logger.log(Level.WARNING, "Error getting the release details - " + status  + ", Error Msg - " + result);
-            throw new IOException("Error getting the release details - " + status + ", Error Msg - " + helper.getErrorMessage(result));
+            throw new IOException("Error getting the release details - " + status + ", Error Msg - " + Helper.getErrorMessage(result));
         }
         return  ctfRelease;
     }
@@ -112,30 +108,11 @@ public class CTFPackage extends CTFFolder {
     public CTFList<CTFRelease> getReleases() throws IOException {
         CTFList<CTFRelease> r = new CTFList<CTFRelease>();
         String end_point = app.getServerUrl() + CTFConstants.PACKAGE_URL + getId() + "/releases";
-        Response response = helper.request(end_point, app.getSessionId(), null, HttpMethod.GET, null);
-        String result = response.readEntity(String.class);
-        int status = response.getStatus();
-        if (status < 300) {
-            JSONObject data = null;
-            try {
-                data = (JSONObject) new JSONParser().parse(result);
-                if (data != null & data.containsKey("items")) {
-                    JSONArray dataArray = (JSONArray)data.get("items");
-                    Iterator it = dataArray.iterator();
-                    while (it.hasNext()) {
-                        JSONObject jsonObject = (JSONObject) it.next();
-                        if (jsonObject != null) {
-                            r.add(new CTFRelease(this, jsonObject));
-                        }
-                    }
-                }
-            } catch (ParseException e) {
-                logger.log(Level.WARNING, "Unable to parse the json content in getReleases() - " + e.getLocalizedMessage(), e);
+        app.getItems(end_point, null, "the release list", new CTFJsonStream.ItemHandler() {
+            public void item(JSONObject item) {
+                r.add(new CTFRelease(CTFPackage.this, item));
             }
-        } else {
-            logger.log(Level.WARNING,"Error getting the release list " + status + "Error Msg - " + result);
-            throw new IOException("Error getting the release list  - " + status + ", Error Msg - " + helper.getErrorMessage(result));
-        }
+        });
         return r;
     }
 }
@@ -0,0 +1,218 @@
+package com.collabnet.ce.webservices;
+
+import hudson.plugins.collabnet.CollabNetPlugin;
+import hudson.plugins.collabnet.util.Helper;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ParseException;
+
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Lazily walks a TeamForge list endpoint that pages its {@code items} by
+ * {@code offset} and {@code count}.
+ *
+ * <p>
+ * Only one page is held at a time, and the next page is only fetched once the caller
+ * asks for an item beyond the current one, so a lookup that stops early never
+ * downloads the rest of the list.
+ *
+ * <p>
+ * The list ends with an empty page, or once the {@code total} reported by the server
+ * has been reached. A page may be shorter than {@link #PAGE_SIZE} without being the
+ * last one, since the server can cap {@code count}. A page longer than asked for, or
+ * one that starts over with the same item as the previous page, means the server
+ * ignored the paging parameters and already returned everything.
+ *
+ * <p>
+ * The first page is fetched by the constructor so that a failing request surfaces as an
+ * {@link IOException} to the caller. Failures on later pages are rethrown as
+ * {@link CollabNetApp.CollabNetAppException}.
+ *
+ * @see CTFList#CTFList(Iterator)
+ */
+abstract class CTFPagedIterator<T> implements Iterator<T> {
+    /**
+     * Number of items requested per page.
+     */
+    static final int PAGE_SIZE = Integer.getInteger(CollabNetPlugin.class.getName() + ".pageSize", 100);
+
+    static Logger logger = Logger.getLogger(CTFPagedIterator.class.getName());
+
+    private final CollabNetApp app;
+    private final String endPoint;
+    private final String method;
+    private final JSONObject payload;
+    private final Map<String, String> queryParam;
+    private final String description;
+
+    private Iterator<T> page;
+    private int nextOffset;
+    private boolean lastPage;
+    /**
+     * Id of the first item of the current page, to notice a server that ignores {@code offset}.
+     */
+    private Object firstId;
+
+    /**
+     * Takes the same arguments as {@link CollabNetApp#request}. {@code offset} and {@code count}
+     * are added to the query parameters of a GET and to the JSON payload of a POST.
+     *
+     * @param description what is being listed, used in log and error messages
+     */
+    CTFPagedIterator(CollabNetApp app, String endPoint, JSONObject payload, String method,
+                     Map<String, String> queryParam, String description) throws IOException {
+        this.app = app;
+        this.endPoint = endPoint;
+        this.method = method;
+        this.payload = payload;
+        this.queryParam = queryParam;
+        this.description = description;
+        startPage(fetchPage(0));
+    }
+
+    /**
+     * Creates the model object for one element of {@code items}.
+     */
+    protected abstract T create(JSONObject item);
+
+    public boolean hasNext() {
+        while (!page.hasNext()) {
+            if (lastPage) {
+                return false;
+            }
+            Page<T> p;
+            try {
+                p = fetchPage(nextOffset);
+            } catch (IOException e) {
+                throw new CollabNetApp.CollabNetAppException("Error getting " + description + " - "
+                        + e.getMessage(), e);
+            }
+            if (p.firstId != null && p.firstId.equals(firstId)) {
+                // the server started over from the beginning
+                lastPage = true;
+                return false;
+            }
+            startPage(p);
+        }
+        return true;
+    }
+
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return page.next();
+    }
+
+    private void startPage(Page<T> p) {
+        nextOffset += p.size;
+        lastPage = isLastPage(p.size, p.total, nextOffset);
+        page = p.items.iterator();
+        firstId = p.firstId;
+    }
+
+    /**
+     * @param size the number of items in the page
+     * @param total the total reported by the server, or -1
+     * @param end the offset just past the page
+     * @return true if no page follows this one.
+     */
+    static boolean isLastPage(int size, long total, int end) {
+        if (size == 0 || size > PAGE_SIZE) {
+            // an empty page ends the list; a long one means the server ignored the paging parameters
+            return true;
+        }
+        return total >= 0 && end >= total;
+    }
+
+    /**
+     * Fetches one page and creates the model objects of its items.
+     *
+     * <p>
+     * The items are streamed out of the response, see {@link CTFJsonStream#parseItems}. GET
+     * pages go through {@link CollabNetApp#getItems}, so a page that did not change is not
+     * downloaded again. POST pages are filter results that cannot be cached.
+     */
+    private Page<T> fetchPage(int offset) throws IOException {
+        final Page<T> p = new Page<T>();
+        if (!HttpMethod.POST.equals(method)) {
+            Map<String, String> params = new HashMap<String, String>();
+            if (queryParam != null) {
+                params.putAll(queryParam);
+            }
+            params.put("offset", String.valueOf(offset));
+            params.put("count", String.valueOf(PAGE_SIZE));
+            CTFJsonStream.Items items = app.getItems(endPoint, params, description, new CTFJsonStream.ItemHandler() {
+                public void item(JSONObject item) {
+                    p.add(create(item), item);
+                }
+            });
+            if (items != null) {
+                p.size = items.count;
+                p.total = items.total;
+            }
+            return p;
+        }
+        JSONObject requestPayload = new JSONObject();
+        if (payload != null) {
+            requestPayload.putAll(payload);
+        }
+        requestPayload.put("offset", offset);
+        requestPayload.put("count", PAGE_SIZE);
+        Response response = app.request(endPoint, requestPayload.toString(), method, null);
+        try {
+            int status = response.getStatus();
+            if (status >= 300) {
+                String result = response.readEntity(String.class);
+                logger.log(Level.WARNING, "Error getting " + description + " - " + status + ", Error Msg - " + result);
+                throw new IOException("Error getting " + description + " - " + status + ", Error Msg - " + Helper.getErrorMessage(result));
+            }
+            CTFJsonStream.Items items = CTFJsonStream.parseItems(response, new CTFJsonStream.ItemHandler() {
+                public void item(JSONObject item) {
+                    p.add(create(item), item);
+                }
+            });
+            p.size = items.count;
+            p.total = items.total;
+        } catch (ParseException e) {
+            logger.log(Level.WARNING, "Unable to parse the json content while getting " + description + " - " + e.getLocalizedMessage(), e);
+            throw new IOException("Unable to parse the json content while getting " + description + " - " + e.getLocalizedMessage(), e);
+        } finally {
+            response.close();
+        }
+        return p;
+    }
+
+    /**
+     * The model objects of one page.
+     */
+    private static final class Page<T> {
+        final List<T> items = new ArrayList<T>();
+        /**
+         * Number of elements the server returned, including any that were skipped.
+         */
+        int size;
+        /**
+         * Number of elements in the whole list, or -1 if the server did not say.
+         */
+        long total = -1;
+        Object firstId;
+
+        void add(T item, JSONObject data) {
+            if (items.isEmpty()) {
+                firstId = data.get("id");
+            }
+            items.add(item);
+        }
+    }
+}
@@ -12,7 +12,6 @@ import java.io.IOException;
 import java.rmi.RemoteException;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
@@ -28,8 +27,6 @@ public class CTFProject extends CTFObject implements ObjectWithTitle {
 
     static Logger logger = Logger.getLogger(CTFProject.class.getName());
 
-    Helper helper = new Helper();
-
     public String getTitle() {
         return title;
     }
@@ -39,6 +36,19 @@ public class CTFProject extends CTFObject implements ObjectWithTitle {
         this.title = data.get("title").toString();
     }
 
+    CTFProject(CollabNetApp app, String id, String title) {
+        super(app, id);
+        this.title = title;
+    }
+
+    /**
+     * Returns this project bound to another connection, so that it can be shared
+     * between users while every call still runs with the caller's own session.
+     */
+    public CTFProject withConnection(CollabNetApp app) {
+        return app == this.app ? this : new CTFProject(app, id, title);
+    }
+
 
     /**
      * @param title
@@ -54,7 +64,7 @@ public class CTFProject extends CTFObject implements ObjectWithTitle {
         requestPayload.put("title", title);
         requestPayload.put("description", description);
         requestPayload.put("published", String.valueOf(isPublished));
-        Response response = helper.request(end_point, app.getSessionId(), requestPayload.toString(), HttpMethod.POST, null);
+        Response response = app.request(end_point, requestPayload.toString(), HttpMethod.POST, null);
         String result = response.readEntity(String.class);
         int statusCode = response.getStatus();
         if (statusCode < 300) {
@@ -67,7 +77,7 @@ public class CTFProject extends CTFObject implements ObjectWithTitle {
             }
         } else {
             logger.log(Level.WARNING,"Error creating a package " + statusCode  + ", Error Msg - " + result);
-            throw new IOException("Error creating a package - " + statusCode + ", Error Msg - " + helper.getErrorMessage(result));
+            throw new IOException("Error creating a package - " + statusCode + ", Error Msg - " + Helper.getErrorMessage(result));
         }
         return null;
     }
@@ -75,63 +85,23 @@ public class CTFProject extends CTFObject implements ObjectWithTitle {
     public CTFList<CTFPackage> getPackages() throws IOException {
         CTFList<CTFPackage> r = new CTFList<CTFPackage>();
         String end_point = app.getServerUrl() + CTFConstants.FRS_URL + getId() + "/packages";
-        Response response = helper.request(end_point, app.getSessionId(), null, HttpMethod.GET, null);
-        String result = response.readEntity(String.class);
-        int status = response.getStatus();
-        if (status < 300) {
-            JSONObject data = null;
-            try {
-                data = (JSONObject) new JSONParser().parse(result);
-                if (data != null & data.containsKey("items")) {
-                    JSONArray dataArray = (JSONArray)data.get("items");
-                    Iterator it = dataArray.iterator();
-                    while (it.hasNext()) {
-                        JSONObject jsonObject = (JSONObject) it.next();
-                        if (jsonObject != null) {
-                            r.add(new CTFPackage(this, jsonObject));
-                        }
-                    }
-                }
-            } catch (ParseException e) {
-                logger.log(Level.WARNING, "Unable to parse the json content in getPackages() - " + e.getLocalizedMessage(), e);
+        app.getItems(end_point, null, "the packages", new CTFJsonStream.ItemHandler() {
+            public void item(JSONObject item) {
+                r.add(new CTFPackage(CTFProject.this, item));
             }
-        } else {
-            logger.log(Level.WARNING,"Error getting the packages - " + status + ", Error Msg - " + result);
-            throw new IOException("Error getting the packages - " + status + ", Error Msg - " + helper.getErrorMessage(result));
-        }
+        });
         return r;
     }
 
     public CTFList<CTFTracker> getTrackers() throws IOException {
-        CTFList<CTFTracker> r = new CTFList<CTFTracker>();
         String end_point = app.getServerUrl() + CTFConstants.TRACKER_PRJ_URL + getId() + "/trackers";
-        Map<String, String> queryParam = new HashMap<>();
-        queryParam.put("count", "-1");
-        Response response = helper.request(end_point, app.getSessionId(), null, HttpMethod.GET, queryParam);
-        String result = response.readEntity(String.class);
-        int status = response.getStatus();
-        if (status < 300) {
-            JSONObject data = null;
-            try {
-                data = (JSONObject) new JSONParser().parse(result);
-                if (data != null & data.containsKey("items")) {
-                    JSONArray dataArray = (JSONArray)data.get("items");
-                    Iterator it = dataArray.iterator();
-                    while (it.hasNext()) {
-                        JSONObject jsonObject = (JSONObject) it.next();
-                        if (jsonObject != null) {
-                            r.add(new CTFTracker(this, jsonObject));
-                        }
-                    }
-                }
-            } catch (ParseException e) {
-                logger.log(Level.WARNING, "Unable to parse the json content in getTrackers() - " + e.getLocalizedMessage(), e);
+        return new CTFList<CTFTracker>(new CTFPagedIterator<CTFTracker>(app, end_point, null, HttpMethod.GET,
+                null, "the trackers of a project") {
+            @Override
+            protected CTFTracker create(JSONObject item) {
+                return new CTFTracker(CTFProject.this, item);
             }
-        } else {
-            logger.log(Level.WARNING,"Error getting the trackers of a project - " + status + ", Error Msg - " + result);
-            throw new IOException("Error getting the trackers of a project - " + status + ", Error Msg - " + helper.getErrorMessage(result));
-        }
-        return r;
+        });
     }
 
     public CTFTracker createTracker(String name, String title, String description) throws IOException {
@@ -140,7 +110,7 @@ public class CTFProject extends CTFObject implements ObjectWithTitle {
         requestPayload.put("name", name);
         requestPayload.put("title", title);
         requestPayload.put("description", description);
-        Response response = helper.request(end_point, app.getSessionId(), requestPayload.toString(), HttpMethod.POST, null);
+        Response response = app.request(end_point, requestPayload.toString(), HttpMethod.POST, null);
         String result = response.readEntity(String.class);
         int statusCode = response.getStatus();
         if (statusCode < 300) {
@@ -153,7 +123,7 @@ public class CTFProject extends CTFObject implements ObjectWithTitle {
             }
         } else {
             logger.log(Level.WARNING,"Error creating a tracker " + statusCode + ", Error Msg - " + result);
-            throw new IOException("Error creating a tracker - " + statusCode + ", Error Msg - " + helper.getErrorMessage(result));
+            throw new IOException("Error creating a tracker - " + statusCode + ", Error Msg - " + Helper.getErrorMessage(result));
         }
         return null;
     }
@@ -161,30 +131,11 @@ public class CTFProject extends CTFObject implements ObjectWithTitle {
     public CTFList<CTFScmRepository> getScmRepositories() throws IOException {
         CTFList<CTFScmRepository> r = new CTFList<CTFScmRepository>();
         String end_point = app.getServerUrl() + CTFConstants.SCM_URL+ getId() + "/repositories";
-        Response response = helper.request(end_point, app.getSessionId(), null, HttpMethod.GET, null);
-        String result = response.readEntity(String.class);
-        int status = response.getStatus();
-        if (status < 300) {
-            JSONObject data = null;
-            try {
-                data = (JSONObject) new JSONParser().parse(result);
-                if (data != null & data.containsKey("items")) {
-                    JSONArray dataArray = (JSONArray)data.get("items");
-                    Iterator it = dataArray.iterator();
-                    while (it.hasNext()) {
-                        JSONObject jsonObject = (JSONObject) it.next();
-                        if (jsonObject != null) {
-                            r.add(new CTFScmRepository(this, jsonObject));
-                        }
-                    }
-                }
-            } catch (ParseException e) {
-                logger.log(Level.WARNING, "Unable to parse the json content in getScmRepositories() - " + e.getLocalizedMessage(), e);
+        app.getItems(end_point, null, "the scm repositories of a project", new CTFJsonStream.ItemHandler() {
+            public void item(JSONObject item) {
+                r.add(new CTFScmRepository(CTFProject.this, item));
             }
-        } else {
-            logger.log(Level.WARNING,"Error getting the scm repositories of a project - " + status + ", Error Msg - " + result);
-            throw new IOException("Error getting the scm repositories of a project - " + status + ", Error Msg - " + helper.getErrorMessage(result));
-        }
+        });
         return r;
     }
 
@@ -195,30 +146,11 @@ public class CTFProject extends CTFObject implements ObjectWithTitle {
         queryParam.put("offset", "0");
         queryParam.put("count", "-1");
         queryParam.put("sortby", "fullName");
-        Response response = helper.request(end_point, app.getSessionId(), null, HttpMethod.GET, queryParam);
-        String result = response.readEntity(String.class);
-        int status = response.getStatus();
-        if (status < 300) {
-            JSONObject data = null;
-            try {
-                data = (JSONObject) new JSONParser().parse(result);
-                if (data != null & data.containsKey("items")) {
-                    JSONArray dataArray = (JSONArray)data.get("items");
-                    Iterator it = dataArray.iterator();
-                    while (it.hasNext()) {
-                        JSONObject jsonObject = (JSONObject) it.next();
-                        if (jsonObject != null) {
-                            r.add(new CTFUser(app, jsonObject));
-                        }
-                    }
-                }
-            } catch (ParseException e) {
-                logger.log(Level.WARNING, "Unable to parse the json content in getMembers() - " + e.getLocalizedMessage(), e);
+        app.getItems(end_point, queryParam, "the members of a project", new CTFJsonStream.ItemHandler() {
+            public void item(JSONObject item) {
+                r.add(new CTFUser(app, item));
             }
-        } else {
-            logger.log(Level.WARNING,"Error getting the members of a project - " + status + ", Error Msg - " + result);
-            throw new IOException("Error getting the members of a project - " + status + ", Error Msg - " + helper.getErrorMessage(result));
-        }
+        });
         return r;
     }
 
@@ -228,43 +160,24 @@ public class CTFProject extends CTFObject implements ObjectWithTitle {
     public List<CTFUser> getAdmins() throws IOException {
         List<CTFUser> r = new ArrayList<CTFUser>();
         String end_point = app.getServerUrl() + CTFConstants.FOUNDATION_PRJ_URL + getId() + "/admins";
-        Response response = helper.request(end_point, app.getSessionId(), null, HttpMethod.GET, null);
-        String result = response.readEntity(String.class);
-        int status = response.getStatus();
-        if (status < 300) {
-            JSONObject data = null;
-            try {
-                data = (JSONObject) new JSONParser().parse(result);
-                if (data != null & data.containsKey("items")) {
-                    JSONArray dataArray = (JSONArray)data.get("items");
-                    Iterator it = dataArray.iterator();
-                    while (it.hasNext()) {
-                        JSONObject jsonObject = (JSONObject) it.next();
-                        if (jsonObject != null) {
-                            r.add(new CTFUser(app, jsonObject));
-                        }
-                    }
-                }
-            } catch (ParseException e) {
-                logger.log(Level.WARNING, "Unable to parse the json content in getAdmins() - " + e.getLocalizedMessage(), e);
+        app.getItems(end_point, null, "the administrator of a project", new CTFJsonStream.ItemHandler() {
+            public void item(JSONObject item) {
+                r.add(new CTFUser(app, item));
             }
-        } else {
-            logger.log(Level.WARNING,"Error getting the administrator of a project - " + status + ", Error Msg - " + result);
-            throw new IOException("Error getting the administrator of a project - " + status + ", Error Msg - " + helper.getErrorMessage(result));
-        }
+        });
         return r;
     }
 
     public void addMember(String userName) throws IOException {
         String end_point =  app.getServerUrl() + CTFConstants.FOUNDATION_PRJ_URL + getId() + "/" + userName;
-        Response response = helper.request(end_point, app.getSessionId(), null, HttpMethod.PUT, null);
+        Response response = app.request(end_point, null, HttpMethod.PUT, null);
         String result = response.readEntity(String.class);
         int status = response.getStatus();
         if (status < 300) {
             logger.log(Level.INFO, userName + " is successfully added as Project Member");
         } else {
             logger.log(Level.WARNING, "Error while adding a member to the project - " + status + ", Error Msg - " + result);
-            throw new IOException("Error adding a member to the project - " + status + ", Error Msg - " + helper.getErrorMessage(result));
+            throw new IOException("Error adding a member to the project - " + status + ", Error Msg - " + Helper.getErrorMessage(result));
         }
     }
 
@@ -288,30 +201,11 @@ public class CTFProject extends CTFObject implements ObjectWithTitle {
     public CTFList<CTFRole> getRoles() throws IOException {
         CTFList<CTFRole> r = new CTFList<CTFRole>();
         String end_point = app.getServerUrl() + CTFConstants.FOUNDATION_PRJ_URL + getId() + "/roles";
-        Response response = helper.request(end_point, app.getSessionId(), null, HttpMethod.GET, null);
-        String result = response.readEntity(String.class);
-        int status = response.getStatus();
-        if (status < 300) {
-            JSONObject data = null;
-            try {
-                data = (JSONObject) new JSONParser().parse(result);
-                if (data != null & data.containsKey("items")) {
-                    JSONArray dataArray = (JSONArray)data.get("items");
-                    Iterator it = dataArray.iterator();
-                    while (it.hasNext()) {
-                        JSONObject jsonObject = (JSONObject) it.next();
-                        if (jsonObject != null) {
-                            r.add(new CTFRole(this, jsonObject));
-                        }
-                    }
-                }
-            } catch (ParseException e) {
-                logger.log(Level.WARNING, "Unable to parse the json content in getRoles() - " + e.getLocalizedMessage(), e);
+        app.getItems(end_point, null, "the roles of a project", new CTFJsonStream.ItemHandler() {
+            public void item(JSONObject item) {
+                r.add(new CTFRole(CTFProject.this, item));
             }
-        } else {
-            logger.log(Level.WARNING,"Error getting the roles of a project - " + status + ", Error Msg - " + result);
-            throw new IOException("Error getting the roles of a project - " + status + ", Error Msg - " + helper.getErrorMessage(result));
-        }
+        });
         return r;
     }
 
@@ -323,7 +217,7 @@ public class CTFProject extends CTFObject implements ObjectWithTitle {
         requestPayload.put("preventInheritance", String.valueOf(false));
         requestPayload.put("requestable", String.valueOf(false));
         requestPayload.put("autoGrant", String.valueOf(false));
-        Response response = helper.request(end_point, app.getSessionId(), requestPayload.toString(), HttpMethod.POST, null);
+        Response response = app.request(end_point, requestPayload.toString(), HttpMethod.POST, null);
         String result = response.readEntity(String.class);
         int statusCode = response.getStatus();
         if (statusCode < 300) {
@@ -336,7 +230,7 @@ public class CTFProject extends CTFObject implements ObjectWithTitle {
             }
         } else {
             logger.log(Level.WARNING,"Error creating a role " + statusCode  + ", Error Msg - " + result);
-            throw new IOException("Error creating a role - " + statusCode + ", Error Msg - " + helper.getErrorMessage(result));
+            throw new IOException("Error creating a role - " + statusCode + ", Error Msg - " + Helper.getErrorMessage(result));
         }
         return null;
     }
@@ -355,7 +249,7 @@ public class CTFProject extends CTFObject implements ObjectWithTitle {
         JSONArray userNames =  new JSONArray();
         userNames.add(username);
         requestPayload.put("userNames", userNames);
-        Response response = helper.request(end_point, app.getSessionId(), requestPayload.toString(), HttpMethod.POST, null);
+        Response response = app.request(end_point, requestPayload.toString(), HttpMethod.POST, null);
         String result = response.readEntity(String.class);
         int status = response.getStatus();
         if (status < 300) {
@@ -364,10 +258,24 @@ public class CTFProject extends CTFObject implements ObjectWithTitle {
                 data = (JSONObject) new JSONParser().parse(result);
                 JSONObject roleMap = (JSONObject) data.get("userRoleMap");
                 JSONArray roleArray = ((JSONArray) roleMap.get(username));
-                for (int i=0; i< roleArray.size(); i++) {
-                    CTFRole ctfRole = getRoleById(roleArray.get(i).toString());
-                    if (ctfRole != null) {
-                        r.add(ctfRole);
+                if (roleArray != null && !roleArray.isEmpty()) {
+                    // one listing of the project roles instead of one request per role
+                    CTFList<CTFRole> roles = getRoles();
+                    for (int i=0; i< roleArray.size(); i++) {
+                        String roleId = roleArray.get(i).toString();
+                        CTFRole ctfRole = roles.byId(roleId);
+                        if (ctfRole == null) {
+                            // inherited and site-wide roles are not in the project's own list
+                            logger.log(Level.FINE, "Role " + roleId + " of " + username + " is not a role of "
+                                    + getId() + ", looking it up");
+                            ctfRole = getRoleById(roleId);
+                        }
+                        if (ctfRole != null) {
+                            r.add(ctfRole);
+                        } else {
+                            logger.log(Level.WARNING, "Unable to find the role " + roleId + " of " + username
+                                    + " in " + getId());
+                        }
                     }
                 }
             } catch (ParseException e) {
@@ -375,7 +283,7 @@ public class CTFProject extends CTFObject implements ObjectWithTitle {
             }
         } else {
             logger.log(Level.WARNING,"Error getting the roles of an user - " + status + ", Error Msg - " + result);
-            throw new IOException("Error getting the roles of a project - " + status + ", Error Msg - " + helper.getErrorMessage(result));
+            throw new IOException("Error getting the roles of a project - " + status + ", Error Msg - " + Helper.getErrorMessage(result));
         }
         return r;
     }
@@ -385,22 +293,8 @@ public class CTFProject extends CTFObject implements ObjectWithTitle {
         Map<String, String> queryParam = new HashMap<>();
         queryParam.put("recursive", "false");
         queryParam.put("basic", "true");
-        Response response = helper.request(end_point, app.getSessionId(), null, HttpMethod.GET, queryParam);
-        String result = response.readEntity(String.class);
-        int status = response.getStatus();
-        if (status < 300) {
-            JSONObject data = null;
-            try {
-                data = (JSONObject) new JSONParser().parse(result);
-                return new CTFDocumentFolder(this, data);
-            } catch (ParseException e) {
-                logger.log(Level.WARNING, "Unable to parse the json content in getRootFolder() - " + e.getLocalizedMessage(), e);
-            }
-        } else {
-            logger.log(Level.WARNING,"Error getting the document rootFolder for projectId " + status + " failed to find any folders " + status + ", Error Msg - " + result);
-            throw new IOException("Error getting the document rootFolder for projectId - " + status + ", Error Msg - " + helper.getErrorMessage(result));
-        }
-        return null;
+        JSONObject data = app.getJSON(end_point, queryParam, "the document rootFolder for projectId");
+        return data == null ? null : new CTFDocumentFolder(this, data);
     }
 
     /**
@@ -474,7 +368,7 @@ public class CTFProject extends CTFObject implements ObjectWithTitle {
 
     public CTFRole getRoleById(String roleId) throws IOException {
         String end_point = app.getServerUrl() + CTFConstants.ROLE_URL + roleId;
-        Response response = helper.request(end_point, app.getSessionId(), null, HttpMethod.GET, null);
+        Response response = app.request(end_point, null, HttpMethod.GET, null);
         String result = response.readEntity(String.class);
         int status = response.getStatus();
         if (status < 300) {
@@ -487,7 +381,7 @@ public class CTFProject extends CTFObject implements ObjectWithTitle {
             }
         } else {
             logger.log(Level.WARNING,"Error getting the role details - " + status + ", Error Msg - " + result);
-            throw new IOException("Error getting the role details - " + status + ", Error Msg - " + helper.getErrorMessage(result));
+            throw new IOException("Error getting the role details - " + status + ", Error Msg - " + Helper.getErrorMessage(result));
         }
         return null;
     }
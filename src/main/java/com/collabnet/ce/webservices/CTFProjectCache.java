@@ -0,0 +1,231 @@
+package com.collabnet.ce.webservices;
+
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.Descriptor;
+import hudson.model.AbstractProject;
+import hudson.model.Job;
+import hudson.model.JobProperty;
+import hudson.model.Project;
+import hudson.model.Saveable;
+import hudson.model.listeners.SaveableListener;
+import hudson.plugins.collabnet.CollabNetPlugin;
+import hudson.scm.SCM;
+import hudson.tasks.Builder;
+import hudson.tasks.Publisher;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Remembers which project a title resolves to per (url, username), so that build steps
+ * and form fill-ins do not look the project up again every time.
+ *
+ * <p>
+ * Titles that did not resolve are cached too, but for a much shorter time, so that a project
+ * created on TeamForge shows up quickly. Saving a CollabNet configuration drops everything,
+ * since that is when a user typically fixes a project name, see {@link ConfigListener}.
+ *
+ * @see CollabNetApp#getProjectByTitle(String)
+ */
+public final class CTFProjectCache {
+    private static final String PROPERTY_PREFIX = CollabNetPlugin.class.getName() + ".";
+
+    /**
+     * How long a resolved project is reused.
+     */
+    public static final long PROJECT_TTL_MS = TimeUnit.MINUTES.toMillis(
+            Long.getLong(PROPERTY_PREFIX + "projectCacheTimeoutMin", 10));
+
+    /**
+     * How long a title that did not resolve is remembered as missing.
+     */
+    public static final long MISSING_PROJECT_TTL_MS = TimeUnit.SECONDS.toMillis(
+            Long.getLong(PROPERTY_PREFIX + "missingProjectCacheTimeoutSec", 60));
+
+    /**
+     * Fields of a project kept in the on-disk snapshot, see {@link CTFMetadataSnapshot}.
+     */
+    private static final String[] SNAPSHOT_FIELDS = {"id", "title", "path", "parentId"};
+
+    private static final ConcurrentMap<String, Entry> projects = new ConcurrentHashMap<String, Entry>();
+    /**
+     * Set whenever a project is cached, cleared when a snapshot is taken.
+     */
+    private static volatile boolean dirty;
+
+    /**
+     * As a utility class, CTFProjectCache should never be instantiated.
+     */
+    private CTFProjectCache() {}
+
+    /**
+     * @return the cached entry, or null if the title has to be resolved against the server.
+     */
+    static Entry get(String url, String username, String title) {
+        String key = key(url, username, title);
+        Entry e = projects.get(key);
+        if (e != null && System.currentTimeMillis() >= e.expiresAt) {
+            projects.remove(key, e);
+            return null;
+        }
+        return e;
+    }
+
+    /**
+     * Caches what the title resolved to.
+     *
+     * @param data the project as returned by the server, or null if there is no such project.
+     */
+    static void put(String url, String username, String title, JSONObject data) {
+        long ttl = data != null ? PROJECT_TTL_MS : MISSING_PROJECT_TTL_MS;
+        if (ttl > 0) {
+            projects.put(key(url, username, title), new Entry(data, System.currentTimeMillis() + ttl, false));
+            dirty |= data != null;
+        }
+    }
+
+    /**
+     * @return the resolved projects, with only the fields that identify them, or null if nothing
+     *         changed since the last call.
+     */
+    static JSONArray snapshot() {
+        if (!dirty) {
+            return null;
+        }
+        dirty = false;
+        long now = System.currentTimeMillis();
+        JSONArray r = new JSONArray();
+        for (Map.Entry<String, Entry> e : projects.entrySet()) {
+            JSONObject data = e.getValue().data;
+            if (data == null || now >= e.getValue().expiresAt) {
+                continue;
+            }
+            JSONObject project = new JSONObject();
+            for (String field : SNAPSHOT_FIELDS) {
+                if (data.get(field) != null) {
+                    project.put(field, data.get(field));
+                }
+            }
+            JSONObject o = new JSONObject();
+            o.put("key", e.getKey());
+            o.put("project", project);
+            r.add(o);
+        }
+        return r;
+    }
+
+    /**
+     * Caches the projects of a snapshot. They are used right away, but looked up again in
+     * the background the first time they are asked for. Malformed entries are skipped.
+     */
+    static void restore(JSONArray snapshot) {
+        long expiresAt = System.currentTimeMillis() + PROJECT_TTL_MS;
+        for (Object o : snapshot) {
+            if (!(o instanceof JSONObject)) {
+                continue;
+            }
+            JSONObject e = (JSONObject) o;
+            Object project = e.get("project");
+            if (e.get("key") != null && project instanceof JSONObject
+                    && ((JSONObject) project).get("id") != null && ((JSONObject) project).get("title") != null) {
+                projects.putIfAbsent(e.get("key").toString(), new Entry((JSONObject) project, expiresAt, true));
+            }
+        }
+    }
+
+    /**
+     * Drops every cached project.
+     */
+    public static void clear() {
+        projects.clear();
+    }
+
+    private static String key(String url, String username, String title) {
+        return url + '\n' + username + '\n' + title;
+    }
+
+    static final class Entry {
+        /**
+         * The project, or null if the title did not resolve.
+         */
+        final JSONObject data;
+        private final long expiresAt;
+        /**
+         * Set for entries restored from a snapshot until someone revalidates them.
+         */
+        private final AtomicBoolean restored;
+
+        private Entry(JSONObject data, long expiresAt, boolean restored) {
+            this.data = data;
+            this.expiresAt = expiresAt;
+            this.restored = new AtomicBoolean(restored);
+        }
+
+        /**
+         * @return true exactly once for an entry restored from a snapshot, telling the caller
+         *         to check it against the server.
+         */
+        boolean claimRevalidation() {
+            return restored.compareAndSet(true, false);
+        }
+    }
+
+    /**
+     * Clears the cache whenever a CollabNet configuration is saved: the global configuration
+     * of one of its build steps or features, or a job that uses one. A Pipeline job cannot
+     * be told apart, since its steps live in its script; a project it did not find is looked
+     * up again once {@link #MISSING_PROJECT_TTL_MS} has passed.
+     */
+    @Extension
+    public static final class ConfigListener extends SaveableListener {
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof Descriptor ? isCollabNet(o) : o instanceof Job && usesCollabNet((Job<?, ?>) o)) {
+                clear();
+            }
+        }
+
+        static boolean usesCollabNet(Job<?, ?> job) {
+            for (JobProperty<?> p : job.getAllProperties()) {
+                if (isCollabNet(p)) {
+                    return true;
+                }
+            }
+            if (job instanceof AbstractProject) {
+                AbstractProject<?, ?> project = (AbstractProject<?, ?>) job;
+                for (Publisher p : project.getPublishersList()) {
+                    if (isCollabNet(p)) {
+                        return true;
+                    }
+                }
+                SCM scm = project.getScm();
+                if (scm != null && isCollabNet(scm.getBrowser())) {
+                    return true;
+                }
+            }
+            if (job instanceof Project) {
+                for (Builder b : ((Project<?, ?>) job).getBuilders()) {
+                    if (isCollabNet(b)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        static boolean isCollabNet(Object o) {
+            if (o == null) {
+                return false;
+            }
+            String name = o.getClass().getName();
+            return name.startsWith("hudson.plugins.collabnet.") || name.startsWith("jenkins.plugins.collabnet.")
+                    || name.startsWith("com.collabnet.");
+        }
+    }
+}
@@ -3,7 +3,6 @@ package com.collabnet.ce.webservices;
 
 import hudson.plugins.collabnet.util.Helper;
 import org.json.simple.JSONObject;
-import org.json.simple.JSONArray;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 
@@ -11,7 +10,6 @@ import javax.ws.rs.HttpMethod;
 import javax.ws.rs.core.Response;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -23,8 +21,6 @@ public class CTFRelease extends CTFFolder {
 
     static Logger logger = Logger.getLogger(CTFRelease.class.getName());
 
-    Helper helper = new Helper();
-
     CTFRelease(CTFObject parent, JSONObject data) {
         super(parent, data, data.get("id").toString(), data.get("parentFolderId").toString());
     }
@@ -38,12 +34,12 @@ public class CTFRelease extends CTFFolder {
 
     public void delete() throws IOException {
         String end_point =  app.getServerUrl() + CTFConstants.RELEASE_URL + getId();
-        Response response = helper.request(end_point, app.getSessionId(), null, HttpMethod.DELETE, null);
+        Response response = app.request(end_point, null, HttpMethod.DELETE, null);
         int status = response.getStatus();
         String result = response.readEntity(String.class);
         if (status >= 300) {
             logger.log(Level.WARNING, "Error while deleting a release - " + status + ", Error Msg - " + result);
-            throw new IOException("Error while deleting a release - " + status + ", Error Msg - " + helper.getErrorMessage(result));
+            throw new IOException("Error while deleting a release - " + status + ", Error Msg - " + Helper.getErrorMessage(result));
         }
     }
 
@@ -59,30 +55,11 @@ public class CTFRelease extends CTFFolder {
     public List<CTFReleaseFile> getFiles() throws IOException {
         List<CTFReleaseFile> r = new ArrayList<CTFReleaseFile>();
         String end_point = app.getServerUrl() + CTFConstants.RELEASE_URL + getId() + "/files";
-        Response response = helper.request(end_point, app.getSessionId(), null, HttpMethod.GET, null);
-        String result = response.readEntity(String.class);
-        int status = response.getStatus();
-        if (status < 300) {
-            JSONObject data = null;
-            try {
-                data = (JSONObject) new JSONParser().parse(result);
-                if (data != null & data.containsKey("items")) {
-                    JSONArray dataArray = (JSONArray)data.get("items");
-                    Iterator it = dataArray.iterator();
-                    while (it.hasNext()) {
-                        JSONObject jsonObject = (JSONObject) it.next();
-                        if (jsonObject != null) {
-                            r.add(new CTFReleaseFile(this, jsonObject));
-                        }
-                    }
-                }
-            } catch (ParseException e) {
-                logger.log(Level.WARNING, "Unable to parse the json content in getFiles() - " + e.getLocalizedMessage(), e);
+        app.getItems(end_point, null, "the file release lists", new CTFJsonStream.ItemHandler() {
+            public void item(JSONObject item) {
+                r.add(new CTFReleaseFile(CTFRelease.this, item));
             }
-        } else {
-            logger.log(Level.WARNING,"Error getting the file release lists - " + status + ", Error Msg - " + result);
-            throw new IOException("Error getting the file release lists - " + status + ", Error Msg - " + helper.getErrorMessage(result));
-        }
+        });
         return r;
     }
 
@@ -94,7 +71,7 @@ public class CTFRelease extends CTFFolder {
         requestPayload.put("fileName", fileName);
         requestPayload.put("mimeType", mimeType);
         requestPayload.put("fileId", file!=null?file.getId():null);
-        Response response = helper.request(end_point, app.getSessionId(), requestPayload.toString(), HttpMethod.POST, null);
+        Response response = app.request(end_point, requestPayload.toString(), HttpMethod.POST, null);
         String result = response.readEntity(String.class);
         int statusCode = response.getStatus();
         if (statusCode < 300) {
@@ -107,7 +84,7 @@ public class CTFRelease extends CTFFolder {
             }
         } else {
             logger.log(Level.WARNING,"Error adding a file to the file release - " + statusCode +  ", Error Msg - " + result);
-            throw new IOException("Error adding a file to the file release - " + statusCode + ", Error Msg - " + helper.getErrorMessage(result));
+            throw new IOException("Error adding a file to the file release - " + statusCode + ", Error Msg - " + Helper.getErrorMessage(result));
         }
         return ctfReleaseFile;
     }
@@ -18,8 +18,6 @@ public class CTFReleaseFile extends CTFItem {
 
     static Logger logger = Logger.getLogger(CTFReleaseFile.class.getName());
 
-    Helper helper = new Helper();
-
     protected CTFReleaseFile(CTFObject parent, JSONObject data) {
         super(parent, data);
         this.description = data.get("description")!= null ? data.
@@ -51,12 +49,12 @@ public class CTFReleaseFile extends CTFItem {
 
     public void delete() throws IOException {
         String end_point =  app.getServerUrl() + CTFConstants.RELEASE_FILE_URL + getId();
-        Response response = helper.request(end_point, app.getSessionId(), null, HttpMethod.DELETE, null);
+        Response response = app.request(end_point, null, HttpMethod.DELETE, null);
         String result = response.readEntity(String.class);
         int status = response.getStatus();
         if (status >= 300) {
             logger.log(Level.WARNING, "Error while deleting a release file - " + status +  ", Error Msg - " + result);
-            throw new IOException("Error while deleting a release file - " + status + ", Error Msg - " + helper.getErrorMessage(result));
+            throw new IOException("Error while deleting a release file - " + status + ", Error Msg - " + Helper.getErrorMessage(result));
         }
     }
 }
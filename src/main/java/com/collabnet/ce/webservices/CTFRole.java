@@ -2,14 +2,10 @@ package com.collabnet.ce.webservices;
 
 import hudson.plugins.collabnet.util.Helper;
 import org.json.simple.JSONObject;
-import org.json.simple.JSONArray;
-import org.json.simple.parser.JSONParser;
-import org.json.simple.parser.ParseException;
 
 import javax.ws.rs.HttpMethod;
 import javax.ws.rs.core.Response;
 import java.io.IOException;
-import java.util.Iterator;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -23,8 +19,6 @@ public class CTFRole extends CTFObject implements ObjectWithTitle {
 
     static Logger logger = Logger.getLogger(CTFRole.class.getName());
 
-    Helper helper = new Helper();
-
     public CTFRole(CTFProject parent, JSONObject data) {
         super(parent, data.get("id").toString());
         this.title = data.get("title").toString();
@@ -45,30 +39,11 @@ public class CTFRole extends CTFObject implements ObjectWithTitle {
     public CTFList<CTFUser> getMembers() throws IOException {
         CTFList<CTFUser> r = new CTFList<CTFUser>();
         String end_point =  app.getServerUrl() + CTFConstants.ROLE_URL + getId() + "/members";
-        Response response = helper.request(end_point, app.getSessionId(), null, HttpMethod.GET, null);
-        String result = response.readEntity(String.class);
-        int status = response.getStatus();
-        if (status < 300) {
-            JSONObject data = null;
-            try {
-                data = (JSONObject) new JSONParser().parse(result);
-                if (data != null & data.containsKey("items")) {
-                    JSONArray dataArray = (JSONArray)data.get("items");
-                    Iterator it = dataArray.iterator();
-                    while (it.hasNext()) {
-                        JSONObject jsonObject = (JSONObject) it.next();
-                        if (jsonObject != null) {
-                            r.add(new CTFUser(app, jsonObject));
-                        }
-                    }
-                }
-            } catch (ParseException e) {
-                logger.log(Level.WARNING, "Unable to parse the json content in getMembers() - " + e.getLocalizedMessage(), e);
+        app.getItems(end_point, null, "the members of a role", new CTFJsonStream.ItemHandler() {
+            public void item(JSONObject item) {
+                r.add(new CTFUser(app, item));
             }
-        } else {
-            logger.log(Level.WARNING,"Error getting the members of a role - " + status + ", Error Msg - " + result);
-            throw new IOException("Error getting the members of a role - " + status + ", Error Msg - " + helper.getErrorMessage(result));
-        }
+        });
         return r;
     }
 
@@ -77,14 +52,14 @@ public class CTFRole extends CTFObject implements ObjectWithTitle {
      */
     public void grant(String username) throws IOException {
         String end_point =  app.getServerUrl() + CTFConstants.ROLE_URL + getId() + "/members/" + username;
-        Response response = helper.request(end_point, app.getSessionId(), null, HttpMethod.PUT, null);
+        Response response = app.request(end_point, null, HttpMethod.PUT, null);
         String result = response.readEntity(String.class);
         int status = response.getStatus();
         if (status < 300) {
             logger.log(Level.INFO, username + " successfully added to the role");
         } else {
             logger.log(Level.WARNING, "Error while adding a member to the role - " + status +  ", Error Msg - " + result);
-            throw new IOException("Error while adding a member to the role - " + status + ", Error Msg - " + helper.getErrorMessage(result));
+            throw new IOException("Error while adding a member to the role - " + status + ", Error Msg - " + Helper.getErrorMessage(result));
         }
     }
 
@@ -25,8 +25,6 @@ public class CTFScmRepository extends CTFFolder {
 
     static Logger logger = Logger.getLogger(CTFScmRepository.class.getName());
 
-    Helper helper = new Helper();
-
     public String systemId;
     public String systemTitle;
     public String repositoryDirectory;
@@ -46,7 +44,7 @@ public class CTFScmRepository extends CTFFolder {
             String end_point = app.getServerUrl() + CTFConstants.SCM_REPO_URL + getId();
             Map<String, String> queryParam = new HashMap<>();
             queryParam.put("includeWebhooks", "false");
-            Response response = helper.request(end_point, app.getSessionId(), null, HttpMethod.GET, queryParam);
+            Response response = app.request(end_point, null, HttpMethod.GET, queryParam);
             String result = response.readEntity(String.class);
             int status = response.getStatus();
             if (status < 300) {
@@ -57,7 +55,7 @@ public class CTFScmRepository extends CTFFolder {
                 }
             } else {
                 logger.log(Level.WARNING, "Error getting the repository data - " + status + ", Error Msg - " + result);
-                throw new IOException("Error getting the repository data - " + status + ", Error Msg - " + helper.getErrorMessage(result));
+                throw new IOException("Error getting the repository data - " + status + ", Error Msg - " + Helper.getErrorMessage(result));
             }
         }
         return scmData;
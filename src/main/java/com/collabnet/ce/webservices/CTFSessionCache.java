@@ -0,0 +1,232 @@
+package com.collabnet.ce.webservices;
+
+import hudson.plugins.collabnet.CollabNetPlugin;
+import hudson.plugins.collabnet.util.CNExecutors;
+import hudson.plugins.collabnet.util.Helper;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Caches TeamForge session ids per (url, username), so that notifiers and form validation
+ * do not repeat the password grant, one-time token and session id exchange on every call.
+ *
+ * <p>
+ * An entry is only handed out to a caller presenting the same password it was created with.
+ * The password is not kept, only an HMAC of it under a key drawn at random when the class is
+ * loaded, so what is in memory cannot be checked against a list of likely passwords.
+ * Once an entry is past {@link #REFRESH_FRACTION} of its lifetime, the next lookup returns it
+ * right away and logs in again in the background, so a warm cache never costs a round trip.
+ *
+ * @see CollabNetApp#CollabNetApp(String, String, String)
+ */
+public final class CTFSessionCache {
+    private static final Logger logger = Logger.getLogger(CTFSessionCache.class.getName());
+
+    /**
+     * How long a session id is reused before logging in again.
+     */
+    public static final long SESSION_TTL_MS = TimeUnit.MINUTES.toMillis(
+            Long.getLong(CollabNetPlugin.class.getName() + ".sessionCacheTimeoutMin", 30));
+
+    /**
+     * Fraction of {@link #SESSION_TTL_MS} after which the session is refreshed in the background.
+     */
+    private static final double REFRESH_FRACTION = 0.75;
+
+    private static final ConcurrentMap<String, Entry> sessions = new ConcurrentHashMap<String, Entry>();
+
+    /**
+     * One lock per (url, username), held while a rejected session is replaced.
+     */
+    private static final ConcurrentMap<String, Object> reloginLocks = new ConcurrentHashMap<String, Object>();
+
+    /**
+     * Key of the password HMACs, never stored anywhere.
+     */
+    private static final SecretKeySpec PASSWORD_KEY;
+
+    static {
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        PASSWORD_KEY = new SecretKeySpec(key, "HmacSHA256");
+    }
+
+    /**
+     * Trades credentials for a session id; replaced by tests.
+     */
+    interface TokenSource {
+        String getToken(String url, String username, String password) throws IOException;
+    }
+
+    static volatile TokenSource tokenSource = new TokenSource() {
+        public String getToken(String url, String username, String password) throws IOException {
+            return Helper.getToken(new URL(url), username, password);
+        }
+    };
+
+    /**
+     * As a utility class, CTFSessionCache should never be instantiated.
+     */
+    private CTFSessionCache() {}
+
+    /**
+     * Returns a valid session id for the given credentials, logging in only if no
+     * usable cached session exists.
+     *
+     * @return the session id, or null if TeamForge did not issue one.
+     * @throws IOException if the login fails.
+     */
+    public static String getSessionId(final String url, final String username, final String password)
+            throws IOException {
+        if (SESSION_TTL_MS <= 0) {
+            return tokenSource.getToken(url, username, password);
+        }
+        String key = key(url, username);
+        Entry e = sessions.get(key);
+        long now = System.currentTimeMillis();
+        if (e != null && e.matches(password) && now < e.expiresAt) {
+            if (now >= e.refreshAt && e.refreshing.compareAndSet(false, true)) {
+                final Entry stale = e;
+                try {
+                    CNExecutors.background().submit(new Runnable() {
+                        public void run() {
+                            try {
+                                login(url, username, password);
+                            } catch (IOException ex) {
+                                logger.log(Level.FINE, "Background refresh of the session for " + username + " failed", ex);
+                                // let a later lookup try again
+                                stale.refreshing.set(false);
+                            }
+                        }
+                    });
+                } catch (RejectedExecutionException ex) {
+                    // shutting down
+                    stale.refreshing.set(false);
+                }
+            }
+            return e.sessionId;
+        }
+        return login(url, username, password);
+    }
+
+    /**
+     * Called when TeamForge rejected {@code staleSessionId}. Returns a session id that another
+     * thread already refreshed, or logs in again. Threads rejected at the same time wait for
+     * the first one's login rather than each logging in.
+     *
+     * @return the new session id, or null if TeamForge did not issue one.
+     * @throws IOException if the login fails.
+     */
+    public static String relogin(String url, String username, String password, String staleSessionId)
+            throws IOException {
+        String key = key(url, username);
+        synchronized (reloginLock(key)) {
+            Entry e = sessions.get(key);
+            if (e != null) {
+                if (!e.sessionId.equals(staleSessionId) && e.matches(password)
+                        && System.currentTimeMillis() < e.expiresAt) {
+                    return e.sessionId;
+                }
+                sessions.remove(key, e);
+            }
+            return login(url, username, password);
+        }
+    }
+
+    /**
+     * Logs in unconditionally and caches the resulting session.
+     *
+     * @return the session id, or null if TeamForge did not issue one.
+     * @throws IOException if the login fails.
+     */
+    public static String login(String url, String username, String password) throws IOException {
+        String sessionId = tokenSource.getToken(url, username, password);
+        if (sessionId != null && SESSION_TTL_MS > 0) {
+            sessions.put(key(url, username), new Entry(sessionId, hmac(password)));
+        }
+        return sessionId;
+    }
+
+    /**
+     * Drops the cached session for the given user, if any.
+     */
+    public static void invalidate(String url, String username) {
+        sessions.remove(key(url, username));
+    }
+
+    /**
+     * Drops every cached session.
+     */
+    public static void clear() {
+        sessions.clear();
+    }
+
+    /**
+     * @return the cached session for the given user, or null.
+     */
+    static Entry getEntry(String url, String username) {
+        return sessions.get(key(url, username));
+    }
+
+    private static String key(String url, String username) {
+        return url + '\n' + username;
+    }
+
+    private static Object reloginLock(String key) {
+        Object lock = reloginLocks.get(key);
+        if (lock == null) {
+            Object created = new Object();
+            lock = reloginLocks.putIfAbsent(key, created);
+            if (lock == null) {
+                lock = created;
+            }
+        }
+        return lock;
+    }
+
+    private static byte[] hmac(String password) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(PASSWORD_KEY);
+            return mac.doFinal(String.valueOf(password).getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new Error(e);
+        }
+    }
+
+    static final class Entry {
+        final String sessionId;
+        private final byte[] passwordHmac;
+        final long createdAt;
+        volatile long refreshAt;
+        final long expiresAt;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        private Entry(String sessionId, byte[] passwordHmac) {
+            long now = System.currentTimeMillis();
+            this.sessionId = sessionId;
+            this.passwordHmac = passwordHmac;
+            this.createdAt = now;
+            this.refreshAt = now + (long) (SESSION_TTL_MS * REFRESH_FRACTION);
+            this.expiresAt = now + SESSION_TTL_MS;
+        }
+
+        private boolean matches(String password) {
+            return MessageDigest.isEqual(passwordHmac, hmac(password));
+        }
+    }
+}
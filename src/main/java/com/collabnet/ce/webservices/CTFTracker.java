@@ -10,9 +10,6 @@ import javax.ws.rs.HttpMethod;
 import javax.ws.rs.core.Response;
 import java.io.IOException;
 import java.rmi.RemoteException;
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -24,8 +21,6 @@ public class CTFTracker extends CTFFolder {
 
     static Logger logger = Logger.getLogger(CTFTracker.class.getName());
 
-    Helper helper = new Helper();
-
     CTFTracker(CTFObject parent, JSONObject data) {
         super(parent, data, data.get("trackerId").toString(), data.get("parentFolderId").toString());
         this.project = (CTFProject) parent;
@@ -35,8 +30,7 @@ public class CTFTracker extends CTFFolder {
         return project;
     }
 
-    public List<CTFArtifact> getArtifactsByTitle(String title) throws IOException {
-        List<CTFArtifact> r = new ArrayList<CTFArtifact>();
+    public CTFList<CTFArtifact> getArtifactsByTitle(String title) throws IOException {
         String end_point =  app.getServerUrl() + CTFConstants.TRACKER_URL + getId() + "/artifacts/filter";
         JSONArray filterArray = new JSONArray();
         JSONObject filterPayload = new JSONObject();
@@ -46,32 +40,13 @@ public class CTFTracker extends CTFFolder {
         filterArray.add(filterPayload);
         JSONObject requestPayload = new JSONObject();
         requestPayload.put("filter", filterArray);
-        requestPayload.put("count", -1);
-        Response response = helper.request(end_point, app.getSessionId(), requestPayload.toString(), HttpMethod.POST, null);
-        String result = response.readEntity(String.class);
-        int statusCode = response.getStatus();
-        if (statusCode < 300) {
-            JSONObject data = null;
-            try {
-                data = (JSONObject) new JSONParser().parse(result);
-                if (data != null & data.containsKey("items")) {
-                    JSONArray dataArray = (JSONArray)data.get("items");
-                    Iterator it = dataArray.iterator();
-                    while (it.hasNext()) {
-                        JSONObject jsonObject = (JSONObject) it.next();
-                        if (jsonObject != null) {
-                            r.add(new CTFArtifact(this, jsonObject));
-                        }
-                    }
-                }
-            } catch (ParseException e) {
-                logger.log(Level.WARNING,"Unable to parse the json content in getArtifactsByTitle() - " + e.getLocalizedMessage(), e);
+        return new CTFList<CTFArtifact>(new CTFPagedIterator<CTFArtifact>(app, end_point, requestPayload,
+                HttpMethod.POST, null, "the artifact details by title") {
+            @Override
+            protected CTFArtifact create(JSONObject item) {
+                return new CTFArtifact(CTFTracker.this, item);
             }
-        } else {
-            logger.log(Level.WARNING,"Error getting the artifact details by title - " + statusCode + ", Error Msg - " + result);
-            throw new IOException("Error getting the artifact details by title -" + statusCode + ", Error Msg - " + helper.getErrorMessage(result));
-        }
-        return r;
+        });
     }
 
     /**
@@ -145,7 +120,7 @@ public class CTFTracker extends CTFFolder {
         requestPayload.put("autoSummingPoints", String.valueOf(autosumming));
         requestPayload.put("points", String.valueOf(points));
 
-        Response response = helper.request(end_point, app.getSessionId(), requestPayload.toString(), HttpMethod.POST, null);
+        Response response = app.request(end_point, requestPayload.toString(), HttpMethod.POST, null);
         String result = response.readEntity(String.class);
         int statusCode = response.getStatus();
         if ( statusCode < 300 ) {
@@ -158,7 +133,7 @@ public class CTFTracker extends CTFFolder {
             }
         } else {
             logger.log(Level.WARNING,"Error creating an artifact - " + statusCode + ", Error Msg - " + result);
-            throw new IOException("Error creating an artifact - " + statusCode + ", Error Msg - " + helper.getErrorMessage(result));
+            throw new IOException("Error creating an artifact - " + statusCode + ", Error Msg - " + Helper.getErrorMessage(result));
         }
         return ctfArtifact;
     }
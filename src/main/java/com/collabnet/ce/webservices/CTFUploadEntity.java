@@ -0,0 +1,119 @@
+package com.collabnet.ce.webservices;
+
+import hudson.plugins.collabnet.CollabNetPlugin;
+import org.apache.http.entity.AbstractHttpEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+/**
+ * Multipart/form-data body holding a single file, written straight from the file to the
+ * connection with chunked transfer encoding.
+ *
+ * <p>
+ * The file is copied through one direct buffer of {@link #BUFFER_SIZE} bytes, so memory use
+ * does not depend on the size of the file. The file is read again if the request is retried.
+ * {@link #getContent()} streams the same body for callers that read it instead.
+ *
+ * @see CollabNetApp#upload(File, hudson.model.TaskListener)
+ */
+final class CTFUploadEntity extends AbstractHttpEntity {
+    /**
+     * Size of the buffer the file is copied through.
+     */
+    static final int BUFFER_SIZE = Integer.getInteger(CollabNetPlugin.class.getName() + ".uploadBufferSize", 64 * 1024);
+
+    private final File src;
+    private final String boundary = "----CollabNetJenkins" + UUID.randomUUID().toString().replace("-", "");
+    private final MessageDigest digest;
+    private volatile long bytesSent;
+
+    /**
+     * @param digest if not null, updated with the content of the file as it is written
+     */
+    CTFUploadEntity(File src, MessageDigest digest) {
+        this.src = src;
+        this.digest = digest;
+        setChunked(true);
+        setContentType("multipart/form-data; boundary=" + boundary);
+    }
+
+    /**
+     * @return the number of bytes of the file sent by the last attempt.
+     */
+    long getBytesSent() {
+        return bytesSent;
+    }
+
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    public long getContentLength() {
+        // unknown up front, hence chunked
+        return -1;
+    }
+
+    public boolean isStreaming() {
+        return false;
+    }
+
+    /**
+     * @return a new stream over the whole body, reading the file as it goes.
+     */
+    public InputStream getContent() throws IOException {
+        return new SequenceInputStream(Collections.enumeration(Arrays.asList(
+                new ByteArrayInputStream(header()), new FileInputStream(src), new ByteArrayInputStream(trailer()))));
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        bytesSent = 0;
+        if (digest != null) {
+            digest.reset();
+        }
+        out.write(header());
+        WritableByteChannel target = Channels.newChannel(out);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        try (FileChannel source = FileChannel.open(src.toPath(), StandardOpenOption.READ)) {
+            while (source.read(buffer) != -1) {
+                buffer.flip();
+                if (digest != null) {
+                    digest.update(buffer.duplicate());
+                }
+                while (buffer.hasRemaining()) {
+                    bytesSent += target.write(buffer);
+                }
+                buffer.clear();
+            }
+        }
+        out.write(trailer());
+        out.flush();
+    }
+
+    private byte[] header() {
+        String fileName = src.getName().replace("\"", "%22");
+        return ("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + fileName + "\"\r\n"
+                + "Content-Type: application/octet-stream\r\n"
+                + "\r\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] trailer() {
+        return ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -2,7 +2,6 @@ package com.collabnet.ce.webservices;
 
 import hudson.plugins.collabnet.util.Helper;
 import org.json.simple.JSONObject;
-import org.json.simple.JSONArray;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 
@@ -10,7 +9,6 @@ import javax.ws.rs.HttpMethod;
 import javax.ws.rs.core.Response;
 import java.io.IOException;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -30,19 +28,21 @@ public class CTFUser extends CTFObject implements ObjectWithTitle {
 
     static Logger logger = Logger.getLogger(CTFUser.class.getName());
 
-    Helper helper = new Helper();
-
     CTFUser(CollabNetApp app, JSONObject data) {
         super(app,data.get("id").toString());
         this.userName = data.get("username").toString();
         this.fullName = data.get("fullname").toString();
         this.email = data.get("email").toString();
+        if (data.containsKey("superUser")) {
+            // already the detailed record, no need to fetch it again
+            this.userData = data;
+        }
     }
 
     private JSONObject data() throws IOException {
         if (userData == null) {
             String end_point = app.getServerUrl() + CTFConstants.USERS_URL + getId();
-            Response response = helper.request(end_point, app.getSessionId(), null, HttpMethod.GET, null);
+            Response response = app.request(end_point, null, HttpMethod.GET, null);
             String result = response.readEntity(String.class);
             int status = response.getStatus();
             if (status < 300) {
@@ -53,7 +53,7 @@ public class CTFUser extends CTFObject implements ObjectWithTitle {
                 }
             } else {
                 logger.log(Level.WARNING, "Error getting the user data - " + status + ", Error Msg - " + result);
-                throw new IOException("Error getting the user data - " + status + ", Error Msg - " + helper.getErrorMessage(result));
+                throw new IOException("Error getting the user data - " + status + ", Error Msg - " + Helper.getErrorMessage(result));
             }
         }
         return userData;
@@ -111,8 +111,16 @@ public class CTFUser extends CTFObject implements ObjectWithTitle {
      * {@link CTFGroup}s.
      */
     public Set<String> getGroupNames() throws IOException {
+        return getGroupNames(app, userName);
+    }
+
+    /**
+     * Gets the group full names that the given user belongs to, without
+     * fetching the user first.
+     */
+    static Set<String> getGroupNames(CollabNetApp app, String userName) throws IOException {
         Set<String> groups = new HashSet<String>();
-        CTFList<CTFGroup> groupList = getUserGroupListForUser();
+        CTFList<CTFGroup> groupList = getUserGroupListForUser(app, userName);
         if (groupList != null) {
             for (CTFGroup ctfGroup : groupList) {
                 if (ctfGroup != null) {
@@ -125,7 +133,7 @@ public class CTFUser extends CTFObject implements ObjectWithTitle {
 
     public CTFList<CTFGroup> getGroups() throws IOException {
         CTFList<CTFGroup> groups = new CTFList<CTFGroup>();
-        groups = getUserGroupListForUser();
+        groups = getUserGroupListForUser(app, userName);
         if (groups != null) {
             for (CTFGroup ctfGroup : groups) {
                 if (ctfGroup != null) {
@@ -155,33 +163,14 @@ public class CTFUser extends CTFObject implements ObjectWithTitle {
         return userName.hashCode();
     }
 
-    private CTFList<CTFGroup> getUserGroupListForUser() throws IOException {
+    private static CTFList<CTFGroup> getUserGroupListForUser(CollabNetApp app, String userName) throws IOException {
         CTFList<CTFGroup> groups = new CTFList<CTFGroup>();
         String end_point =  app.getServerUrl() + CTFConstants.USERS_URL + "by-username/" + userName + "/groups";
-        Response response = helper.request(end_point, app.getSessionId(), null, HttpMethod.GET, null);
-        String result = response.readEntity(String.class);
-        int status = response.getStatus();
-        if (status < 300) {
-            JSONObject data = null;
-            try {
-                data = (JSONObject) new JSONParser().parse(result);
-                if (data != null & data.containsKey("items")) {
-                    JSONArray dataArray = (JSONArray)data.get("items");
-                    Iterator it = dataArray.iterator();
-                    while (it.hasNext()) {
-                        JSONObject jsonObject = (JSONObject) it.next();
-                        if (jsonObject != null) {
-                            groups.add(new CTFGroup(app, jsonObject));
-                        }
-                    }
-                }
-            } catch (ParseException e) {
-                logger.log(Level.WARNING, "Unable to parse the json content in getUserGroupListForUser() - " + e.getLocalizedMessage(), e);
+        app.getItems(end_point, null, "the user group list for an user", new CTFJsonStream.ItemHandler() {
+            public void item(JSONObject item) {
+                groups.add(new CTFGroup(app, item));
             }
-        } else {
-            logger.log(Level.WARNING,"Error getting the user group list for an user - " + status + ", Error Msg - " + result);
-            throw new IOException("Error getting the user group list for an user - " + status + ", Error Msg - " + helper.getErrorMessage(result));
-        }
+        });
         return groups;
     }
 }
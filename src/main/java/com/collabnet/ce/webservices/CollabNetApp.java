@@ -1,42 +1,52 @@
 package com.collabnet.ce.webservices;
 
 import hudson.RelativePath;
+import hudson.model.TaskListener;
 import hudson.plugins.collabnet.CollabNetPlugin;
 import hudson.plugins.collabnet.CtfSoapHttpSender;
 import hudson.plugins.collabnet.share.TeamForgeShare;
+import hudson.plugins.collabnet.util.CNExecutors;
+import hudson.plugins.collabnet.util.CNHttpTransport;
 import hudson.plugins.collabnet.util.CNHudsonUtil;
+import hudson.plugins.collabnet.util.CNResponseCache;
 import hudson.plugins.collabnet.util.CommonUtil;
 import hudson.plugins.collabnet.util.Helper;
 import hudson.util.Secret;
-import org.glassfish.jersey.media.multipart.MultiPart;
-import org.glassfish.jersey.media.multipart.MultiPartFeature;
-import org.glassfish.jersey.media.multipart.file.FileDataBodyPart;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 import org.json.simple.JSONObject;
-import org.json.simple.JSONArray;
 import org.kohsuke.stapler.QueryParameter;
 
 import javax.ws.rs.HttpMethod;
-import javax.ws.rs.client.Client;
-import javax.ws.rs.client.ClientBuilder;
-import javax.ws.rs.client.Entity;
-import javax.ws.rs.client.Invocation;
-import javax.ws.rs.client.WebTarget;
-import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.rmi.RemoteException;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -49,16 +59,29 @@ import java.util.logging.Logger;
  */
 public class CollabNetApp {
     public static String SOAP_SERVICE = "/ce-soap60/services/";
-    private String sessionId;
+    private volatile String sessionId;
     private String username;
     private String url;
+    /**
+     * Kept only for connections created with a password, to log in again
+     * when TeamForge rejects an expired session. Held as a {@link Secret} so
+     * that the password is not kept in clear text on a long-lived object.
+     */
+    private Secret password;
 
     static Logger logger = Logger.getLogger(CollabNetApp.class.getName());
 
-    Helper helper = new Helper();
+    /**
+     * Number of projects whose roles are fetched at the same time by {@link #getUserRoles(String, Collection)}.
+     */
+    public static final int ROLE_FETCH_CONCURRENCY = Math.max(1,
+            Integer.getInteger(CollabNetPlugin.class.getName() + ".roleFetchConcurrency", 4));
+
+    private static ExecutorService roleFetchPool;
 
     /**
-     * Creates a new session to the server at the given url.
+     * Creates a new session to the server at the given url. A session cached
+     * for the same credentials is reused, see {@link CTFSessionCache}.
      *
      * @param url of the CollabNet server.
      * @param username to login as.
@@ -68,6 +91,7 @@ public class CollabNetApp {
     public CollabNetApp(String url, String username, String password)
         throws IOException {
         this(url, username);
+        this.password = password == null ? null : Secret.fromString(password);
         this.sessionId = this.login(password);
     }
 
@@ -102,6 +126,16 @@ public class CollabNetApp {
     public CollabNetApp(String url) {
         this.url = url;
     }
+    /**
+     * @return a new connection on the same session, which can log in again on
+     *         a 401 exactly when this one can, that is if it holds a password.
+     */
+    public CollabNetApp copy() {
+        CollabNetApp copy = new CollabNetApp(this.url, this.username, null, this.sessionId);
+        copy.password = this.password;
+        return copy;
+    }
+
     /**
      * Returns the user name that this connection is set up with.
      */
@@ -128,11 +162,11 @@ public class CollabNetApp {
      * re-login, you should get a new CollabNetApp object.
      *
      * @param password used to login with.
-     * @return a new sessionId.
+     * @return a cached or new sessionId.
      * @throws RemoteException
      */
     private String login(String password) throws IOException {
-        sessionId = helper.getToken(new URL(this.url), this.username, password);
+        sessionId = CTFSessionCache.getSessionId(this.url, this.username, password);
         return sessionId;
     }
 
@@ -160,9 +194,132 @@ public class CollabNetApp {
      */
     public void loginWithToken(String token)
             throws IOException, MalformedURLException, RemoteException {
-        this.sessionId = helper.getSessionId(new URL(this.url), token);
+        this.sessionId = Helper.getSessionId(new URL(this.url), token);
     }
     
+    /**
+     * Login with a password, always verifying it against the server rather
+     * than reusing a cached session. Used for interactive logins.
+     *
+     * @param password used to login with.
+     * @throws IOException if the username/password is rejected
+     */
+    public void loginWithPassword(String password) throws IOException {
+        this.sessionId = CTFSessionCache.login(this.url, this.username, password);
+    }
+
+    /**
+     * Performs a REST request with this connection's session. If TeamForge
+     * rejects the session and the password is known, logs in once more and
+     * repeats the request.
+     *
+     * @param endPoint the full URL of the REST endpoint
+     * @param payload the JSON request body, or null
+     * @param method the HTTP method
+     * @param queryParam query parameters, or null
+     * @return the response; the caller must read or close it
+     * @throws IOException if the server cannot be reached
+     */
+    public Response request(String endPoint, String payload, String method,
+                            Map<String, String> queryParam) throws IOException {
+        return request(endPoint, payload, method, queryParam, null);
+    }
+
+    private Response request(String endPoint, String payload, String method,
+                             Map<String, String> queryParam, Map<String, String> headers) throws IOException {
+        String currentSessionId = this.sessionId;
+        Response response = Helper.request(endPoint, currentSessionId, payload, method, queryParam, headers);
+        if (response != null && response.getStatus() == 401 && password != null) {
+            response.close();
+            this.sessionId = CTFSessionCache.relogin(this.url, this.username, password.getPlainText(),
+                    currentSessionId);
+            response = Helper.request(endPoint, this.sessionId, payload, method, queryParam, headers);
+        }
+        return response;
+    }
+
+    /**
+     * GETs a JSON document. If an earlier copy carried an ETag or a Last-Modified date, the
+     * request is made conditional, and the earlier copy is parsed again and returned when
+     * TeamForge answers 304 Not Modified. See {@link CNResponseCache}.
+     *
+     * @param description what is being fetched, used in log and error messages
+     * @return the parsed document, or null if it could not be parsed. It belongs to the
+     *         caller.
+     * @throws IOException if TeamForge answered with an error
+     */
+    public JSONObject getJSON(String endPoint, Map<String, String> queryParam, String description)
+            throws IOException {
+        return get(endPoint, queryParam, description, new BodyParser<JSONObject>() {
+            public JSONObject parse(InputStream in) throws IOException, ParseException {
+                return CTFJsonStream.parse(in);
+            }
+        });
+    }
+
+    /**
+     * GETs a list, like {@link #getJSON}, but hands the elements of its {@code items} to the
+     * handler one at a time instead of building the whole document.
+     *
+     * @return what the response said about the list, or null if it could not be parsed.
+     * @throws IOException if TeamForge answered with an error
+     */
+    CTFJsonStream.Items getItems(String endPoint, Map<String, String> queryParam, String description,
+                                 final CTFJsonStream.ItemHandler handler) throws IOException {
+        return get(endPoint, queryParam, description, new BodyParser<CTFJsonStream.Items>() {
+            public CTFJsonStream.Items parse(InputStream in) throws IOException, ParseException {
+                return CTFJsonStream.parseItems(in, handler);
+            }
+        });
+    }
+
+    /**
+     * Reads a response body, see {@link #get}.
+     */
+    private interface BodyParser<V> {
+        V parse(InputStream in) throws IOException, ParseException;
+    }
+
+    /**
+     * Makes a conditional GET and parses the body: the cached copy on 304, the body off the
+     * stream if it cannot be cached, or else the body read once and kept for next time.
+     */
+    private <V> V get(String endPoint, Map<String, String> queryParam, String description, BodyParser<V> parser)
+            throws IOException {
+        String key = CNResponseCache.key(username, endPoint, queryParam);
+        CNResponseCache.Entry cached = CNResponseCache.get(key);
+        Response response = request(endPoint, null, HttpMethod.GET, queryParam,
+                cached == null ? null : cached.getConditionalHeaders());
+        try {
+            int status = response.getStatus();
+            if (status == 304 && cached != null) {
+                return parser.parse(cached.getBody());
+            }
+            if (status >= 300) {
+                String result = response.readEntity(String.class);
+                logger.log(Level.WARNING, "Error getting " + description + " - " + status + ", Error Msg - " + result);
+                throw new IOException("Error getting " + description + " - " + status + ", Error Msg - "
+                        + Helper.getErrorMessage(result));
+            }
+            String eTag = response.getHeaderString(HttpHeaders.ETAG);
+            String lastModified = response.getHeaderString(HttpHeaders.LAST_MODIFIED);
+            if (!CNResponseCache.isCacheable(eTag, lastModified)) {
+                // parsed off the stream, the body is never held as a whole
+                return parser.parse(response.readEntity(InputStream.class));
+            }
+            byte[] body = response.readEntity(byte[].class);
+            V parsed = parser.parse(new ByteArrayInputStream(body));
+            CNResponseCache.put(key, eTag, lastModified, body);
+            return parsed;
+        } catch (ParseException e) {
+            logger.log(Level.WARNING, "Unable to parse the json content while getting " + description + " - "
+                    + e.getLocalizedMessage(), e);
+            return null;
+        } finally {
+            response.close();
+        }
+    }
+
     /**
      * Logoff for this user and invalidate the sessionId.
      *
@@ -182,37 +339,83 @@ public class CollabNetApp {
      * @throws IOException if any problems occurs reading/writing file
      */
     public CTFFile upload(File src) throws IOException {
+        return upload(src, null);
+    }
+
+    /**
+     * Uploads a file. The file is streamed with chunked transfer encoding through a
+     * fixed-size buffer, so files of any size can be uploaded without being held in memory.
+     *
+     * <p>
+     * Like {@link #request}, the upload is repeated once after a new login if TeamForge
+     * rejects the session and the password is known. It goes over a connection of its own,
+     * closed when it is done: uploads also run on agents, where nothing would shut down the
+     * shared pool of {@link CNHttpTransport}.
+     *
+     * @param src The file to upload
+     * @param listener if not null, the number of bytes sent and the throughput are reported to it
+     * @return CTFFile object
+     * @throws IOException if any problems occurs reading/writing file
+     */
+    public CTFFile upload(File src, TaskListener listener) throws IOException {
+        return upload(src, listener, null);
+    }
+
+    /**
+     * Uploads a file, and hashes it as it is sent, so that the file is read only once.
+     *
+     * @param digest if not null, holds the digest of the whole file once the upload succeeded
+     * @see #upload(File, TaskListener)
+     */
+    public CTFFile upload(File src, TaskListener listener, MessageDigest digest) throws IOException {
         String end_point =  url + CTFConstants.FILE_STORAGE_URL;
         int status = 0;
         String result =null;
-        try {
-            Client client = ClientBuilder.newBuilder().
-                    register(MultiPartFeature.class).build();
-            WebTarget server = client.target(end_point);
-            Invocation.Builder builder = server.request(MediaType.APPLICATION_JSON_TYPE);
-            builder.header("Content-Type", "multipart/form-data");
-            builder.header("accept", "application/json");
-            builder.header("Authorization" , "Bearer " + this.sessionId);
-            MultiPart multiPart = new MultiPart();
-            FileDataBodyPart pdfBodyPart = new FileDataBodyPart("file", src,
-                    MediaType.APPLICATION_OCTET_STREAM_TYPE);
-            multiPart.bodyPart(pdfBodyPart);
-            Response response = builder
-                    .post(Entity.entity(multiPart, MediaType.MULTIPART_FORM_DATA));
-            status = response.getStatus();
-            result = response.readEntity(String.class);
-            if (status < 300) {
-                JSONObject data = (JSONObject) new JSONParser().parse(result);
-                return new CTFFile(this, data.get("guid").toString());
-            } else {
-                logger.log(Level.WARNING, "Error uploading a file, response code - " + status);
+        CTFUploadEntity entity = new CTFUploadEntity(src, digest);
+        try (CloseableHttpClient client = CNHttpTransport.newHttpClient()) {
+            String currentSessionId = this.sessionId;
+            long start = System.nanoTime();
+            CloseableHttpResponse response = client.execute(newUploadRequest(end_point, currentSessionId, entity));
+            if (response.getStatusLine().getStatusCode() == 401 && password != null) {
+                response.close();
+                this.sessionId = CTFSessionCache.relogin(this.url, this.username, password.getPlainText(),
+                        currentSessionId);
+                start = System.nanoTime();
+                response = client.execute(newUploadRequest(end_point, this.sessionId, entity));
+            }
+            try {
+                status = response.getStatusLine().getStatusCode();
+                result = EntityUtils.toString(response.getEntity());
+                if (status < 300) {
+                    if (listener != null) {
+                        long millis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                        listener.getLogger().println("Uploaded " + src.getName() + ": " + entity.getBytesSent()
+                                + " bytes in " + millis / 1000.0 + " s ("
+                                + String.format("%.2f", entity.getBytesSent() / 1024.0 / 1024.0 / (millis / 1000.0))
+                                + " MB/s)");
+                    }
+                    JSONObject data = (JSONObject) new JSONParser().parse(result);
+                    return new CTFFile(this, data.get("guid").toString());
+                } else {
+                    logger.log(Level.WARNING, "Error uploading a file, response code - " + status);
+                }
+            } finally {
+                response.close();
             }
         } catch (Exception e) {
             logger.log(Level.WARNING, "Error uploading a file" + e.getLocalizedMessage(), e);
-            throw new IOException("Error uploading a file - " + status + ", Error Msg - " + helper.getErrorMessage(result));
+            throw new IOException("Error uploading a file - " + status + ", Error Msg - " + Helper.getErrorMessage(result));
         }
         return null;
     }
+
+    private static HttpPost newUploadRequest(String endPoint, String sessionId, CTFUploadEntity entity) {
+        HttpPost post = new HttpPost(endPoint);
+        post.setHeader("Accept", "application/json");
+        post.setHeader("Authorization", "Bearer " + sessionId);
+        post.setEntity(entity);
+        return post;
+    }
     
     /**
      * Can the user can be found on the CollabNet server?
@@ -235,33 +438,16 @@ public class CollabNetApp {
      */
     public CTFList<CTFGroup> getGroups() throws IOException {
         this.checkValidSessionId();
-        CTFList<CTFGroup> r = new CTFList<CTFGroup>();
-        String end_point =  url + CTFConstants.FOUNDATION_URL + "groups?sortby=id&offset=0&count=25";
-        Response response = helper.request(end_point, sessionId, null, HttpMethod.GET, null);
-        String result = response.readEntity(String.class);
-        int status = response.getStatus();
-        if (status < 300) {
-            JSONObject data = null;
-            try {
-                data = (JSONObject) new JSONParser().parse(result);
-                if (data != null & data.containsKey("items")) {
-                    JSONArray dataArray = (JSONArray)data.get("items");
-                    Iterator it = dataArray.iterator();
-                    while (it.hasNext()) {
-                        JSONObject jsonObject = (JSONObject) it.next();
-                        if (jsonObject != null) {
-                            r.add(new CTFGroup(this, jsonObject));
-                        }
-                    }
-                }
-            } catch (ParseException e) {
-                logger.log(Level.WARNING, "Unable to parse the json content in getGroups() - " + e.getLocalizedMessage(), e);
+        String end_point =  url + CTFConstants.FOUNDATION_URL + "groups";
+        Map<String, String> queryParam = new HashMap<>();
+        queryParam.put("sortby", "id");
+        return new CTFList<CTFGroup>(new CTFPagedIterator<CTFGroup>(this, end_point, null, HttpMethod.GET, queryParam,
+                "the group lists") {
+            @Override
+            protected CTFGroup create(JSONObject item) {
+                return new CTFGroup(CollabNetApp.this, item);
             }
-        } else {
-            logger.log(Level.WARNING, "Error getting the group lists - " + status  + ", Error Msg - " + result);
-            throw new IOException("Error getting the group lists - " + status + ", Error Msg - " + helper.getErrorMessage(result));
-        }
-        return r;
+        });
     }
 
     /**
@@ -288,7 +474,7 @@ public class CollabNetApp {
         JSONObject requestPayload = new JSONObject();
         requestPayload.put("fullname", fullName);
         requestPayload.put("description", description);
-        Response response = helper.request(end_point, sessionId, requestPayload.toString(), HttpMethod.POST, null);
+        Response response = request(end_point, requestPayload.toString(), HttpMethod.POST, null);
         String result = response.readEntity(String.class);
         int status = response.getStatus();
         if (status < 300) {
@@ -301,7 +487,7 @@ public class CollabNetApp {
             }
         } else {
             logger.log(Level.WARNING,"Error creating an user group - " + status  + ", Error Msg - " + result);
-            throw new IOException("Error creating an user group - " + status + ", Error Msg - " + helper.getErrorMessage(result));
+            throw new IOException("Error creating an user group - " + status + ", Error Msg - " + Helper.getErrorMessage(result));
         }
         return null;
     }
@@ -326,7 +512,7 @@ public class CollabNetApp {
         requestPayload.put("name", name);
         requestPayload.put("title", title);
         requestPayload.put("description", description);
-        Response response = helper.request(end_point, sessionId, requestPayload.toString(), HttpMethod.POST, null);
+        Response response = request(end_point, requestPayload.toString(), HttpMethod.POST, null);
         String result = response.readEntity(String.class);
         int status = response.getStatus();
         if (status < 300) {
@@ -339,7 +525,7 @@ public class CollabNetApp {
             }
         } else {
             logger.log(Level.WARNING,"Error creating a project - " + status  + ", Error Msg - " + result);
-            throw new IOException("Error creating a project - " + status + ", Error Msg - " + helper.getErrorMessage(result));
+            throw new IOException("Error creating a project - " + status + ", Error Msg - " + Helper.getErrorMessage(result));
         }
         return projectId;
     }
@@ -356,30 +542,11 @@ public class CollabNetApp {
         this.checkValidSessionId();
         Collection<String> users = new ArrayList<String>();
         String end_point =  url + CTFConstants.FOUNDATION_URL + "groups/" + groupId + "/members";
-        Response response = helper.request(end_point, sessionId, null, HttpMethod.GET, null);
-        String result = response.readEntity(String.class);
-        int status = response.getStatus();
-        if (status < 300) {
-            JSONObject data = null;
-            try {
-                data = (JSONObject) new JSONParser().parse(result);
-                if (data != null & data.containsKey("items")) {
-                    JSONArray dataArray = (JSONArray)data.get("items");
-                    Iterator it = dataArray.iterator();
-                    while (it.hasNext()) {
-                        JSONObject jsonObject = (JSONObject) it.next();
-                        if (jsonObject != null) {
-                            users.add(jsonObject.get("username").toString());
-                        }
-                    }
-                }
-            } catch (ParseException e) {
-                logger.log(Level.WARNING, "Unable to parse the json content in getGroupUsers() - " + e.getLocalizedMessage(), e);
+        getItems(end_point, null, "the active members of the group", new CTFJsonStream.ItemHandler() {
+            public void item(JSONObject item) {
+                users.add(item.get("username").toString());
             }
-        } else {
-            logger.log(Level.WARNING, "Error getting the active members of the group - " + status + ", Error Msg - " + result);
-            throw new IOException("Error getting the active members of the group - " + status + ", Error Msg - " + helper.getErrorMessage(result));
-        }
+        });
         return users;
     }
     
@@ -401,24 +568,9 @@ public class CollabNetApp {
      * @throws IOException if any problems occurs reading project data
      */
     public CTFProject getProjectById(String projectId) throws IOException {
-        CTFProject ctfProject = null;
         String end_point =  url + CTFConstants.FOUNDATION_URL + "projects/" + projectId;
-        Response response = helper.request(end_point, sessionId, null, HttpMethod.GET, null);
-        String result = response.readEntity(String.class);
-        int status = response.getStatus();
-        if (status < 300) {
-            JSONObject data = null;
-            try {
-                data = (JSONObject) new JSONParser().parse(result);
-                ctfProject = new CTFProject(this, data);
-            } catch (ParseException e) {
-                logger.log(Level.WARNING, "Unable to parse the json content in getProjectById() - " + e.getLocalizedMessage(), e);
-            }
-        } else {
-            logger.log(Level.WARNING, "Error getting the project details - " + status  + ", Error Msg - " + result);
-            throw new IOException("Error getting the project details - " + status + ", Error Msg - " + helper.getErrorMessage(result));
-        }
-        return ctfProject;
+        JSONObject data = getJSON(end_point, null, "the project details");
+        return data == null ? null : new CTFProject(this, data);
     }
 
     /**
@@ -427,37 +579,17 @@ public class CollabNetApp {
      * @return list of projects
      * @throws IOException if any problems occurs reading projects data
      */
-    public List<CTFProject> getProjects() throws IOException {
-        List<CTFProject> r = new ArrayList<CTFProject>();
+    public CTFList<CTFProject> getProjects() throws IOException {
         String end_point =  url + CTFConstants.FOUNDATION_URL + "projects";
         Map<String, String> queryParam = new HashMap<>();
         queryParam.put("fetchHierarchyPath", "false");
-        queryParam.put("count", "-1");
-        Response response = helper.request(end_point, sessionId, null, HttpMethod.GET, queryParam);
-        String result = response.readEntity(String.class);
-        int status = response.getStatus();
-        if (status < 300) {
-            JSONObject data = null;
-            try {
-                data = (JSONObject) new JSONParser().parse(result);
-                if (data != null & data.containsKey("items")) {
-                    JSONArray dataArray = (JSONArray)data.get("items");
-                    Iterator it = dataArray.iterator();
-                    while (it.hasNext()) {
-                        JSONObject jsonObject = (JSONObject) it.next();
-                        if (jsonObject != null) {
-                            r.add(new CTFProject(this, jsonObject));
-                        }
-                    }
-                }
-            } catch (ParseException e) {
-                logger.log(Level.WARNING, "Unable to parse the json content in getProjects() - " + e.getLocalizedMessage(), e);
+        return new CTFList<CTFProject>(new CTFPagedIterator<CTFProject>(this, end_point, null, HttpMethod.GET, queryParam,
+                "the projects") {
+            @Override
+            protected CTFProject create(JSONObject item) {
+                return new CTFProject(CollabNetApp.this, item);
             }
-        } else {
-            logger.log(Level.WARNING, "Error getting the projects - " + status + ", Error Msg - " + result);
-            throw new IOException("Error getting the projects - " + status + ", Error Msg - " + helper.getErrorMessage(result));
-        }
-        return r;
+        });
     }
 
     /**
@@ -468,12 +600,128 @@ public class CollabNetApp {
      * @throws IOException if any problems occurs reading project data
      */
     public CTFProject getProjectByTitle(String title) throws IOException {
-        for (CTFProject p : getProjects())
-            if (p != null) {
-                if (p.getTitle().equals(title))
-                    return p;
+        if (title == null) {
+            return null;
+        }
+        CTFProjectCache.Entry cached = CTFProjectCache.get(url, username, title);
+        if (cached != null) {
+            if (cached.claimRevalidation()) {
+                revalidateProjectByTitle(title);
             }
-        return null;
+            return cached.data == null ? null : new CTFProject(this, cached.data);
+        }
+        JSONObject data = findProjectByTitle(title);
+        CTFProjectCache.put(url, username, title, data);
+        return data == null ? null : new CTFProject(this, data);
+    }
+
+    /**
+     * Looks up again, in the background, a project that was restored from a snapshot.
+     */
+    private void revalidateProjectByTitle(final String title) {
+        try {
+            CNExecutors.background().execute(new Runnable() {
+                public void run() {
+                    try {
+                        CTFProjectCache.put(url, username, title, findProjectByTitle(title));
+                    } catch (IOException e) {
+                        logger.log(Level.FINE, "Failed to revalidate the project " + title, e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // shutting down; the restored entry simply expires
+        }
+    }
+
+    /**
+     * Asks the server for projects matching the title and returns the exact match. Only the
+     * filtered results are looked at: the project catalogue is never paged through.
+     */
+    private JSONObject findProjectByTitle(final String title) throws IOException {
+        String end_point =  url + CTFConstants.FOUNDATION_URL + "projects";
+        Map<String, String> queryParam = new HashMap<>();
+        queryParam.put("fetchHierarchyPath", "false");
+        queryParam.put("title", title);
+        queryParam.put("offset", "0");
+        queryParam.put("count", String.valueOf(CTFPagedIterator.PAGE_SIZE));
+        final JSONObject[] match = new JSONObject[1];
+        getItems(end_point, queryParam, "the project details", new CTFJsonStream.ItemHandler() {
+            public void item(JSONObject item) {
+                if (match[0] == null && title.equals(String.valueOf(item.get("title")))) {
+                    match[0] = item;
+                }
+            }
+        });
+        return match[0];
+    }
+
+    /**
+     * Runs role fetches only, so that they never wait behind, or hold up, other work.
+     */
+    private static synchronized ExecutorService getRoleFetchPool() {
+        if (roleFetchPool == null || roleFetchPool.isShutdown()) {
+            roleFetchPool = CNExecutors.newPool("CollabNet role fetch", Math.max(1, ROLE_FETCH_CONCURRENCY - 1));
+        }
+        return roleFetchPool;
+    }
+
+    /**
+     * Gets the roles a user has in each of the given projects. A few projects are fetched at a
+     * time, see {@link #ROLE_FETCH_CONCURRENCY}, so that this takes about as long as the slowest
+     * projects rather than the sum of all of them.
+     *
+     * <p>
+     * The helpers run on a pool of their own, and the calling thread fetches too, so the call
+     * completes even when every helper is busy with other callers' projects. The helpers never
+     * wait for anything but TeamForge, so callers may run on any pool.
+     *
+     * @param username the user whose roles are wanted
+     * @param projectIds ids of the projects to look at
+     * @return the roles by project id. Projects whose roles could not be retrieved are left out.
+     */
+    public Map<String, CTFList<CTFRole>> getUserRoles(final String username, Collection<String> projectIds) {
+        final Map<String, CTFList<CTFRole>> r = new ConcurrentHashMap<String, CTFList<CTFRole>>();
+        final Queue<String> pending = new ConcurrentLinkedQueue<String>(projectIds);
+        Runnable worker = new Runnable() {
+            public void run() {
+                String projectId;
+                while ((projectId = pending.poll()) != null) {
+                    try {
+                        r.put(projectId, new CTFProject(CollabNetApp.this, projectId, null).getUserRoles(username));
+                    } catch (IOException e) {
+                        logger.log(Level.FINE, "Failed to retrieve the roles of " + username + " in " + projectId, e);
+                    }
+                }
+            }
+        };
+        int workers = Math.min(ROLE_FETCH_CONCURRENCY, projectIds.size());
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        try {
+            for (int i = 1; i < workers; i++) {
+                futures.add(getRoleFetchPool().submit(worker));
+            }
+        } catch (RejectedExecutionException e) {
+            // shutting down; the calling thread does it all
+        }
+        // the calling thread does its share too
+        worker.run();
+        for (Future<?> f : futures) {
+            // nothing is left to fetch, so a helper that has not started yet is not waited for
+            f.cancel(false);
+            if (f.isCancelled()) {
+                continue;
+            }
+            try {
+                f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                logger.log(Level.WARNING, "Failed to retrieve the roles of " + username, e.getCause());
+            }
+        }
+        return r;
     }
 
     /**
@@ -493,7 +741,19 @@ public class CollabNetApp {
      * @throws IOException if any problems occurs reading user data
      */
     public CTFUser getMyselfData() throws IOException {
-        return new CTFUser(this, helper.getUserData(this.url, this.sessionId, username));
+        return new CTFUser(this, Helper.getUserData(this.url, this.sessionId, username));
+    }
+
+    /**
+     * Gets the full names of the groups the current user belongs to. Unlike
+     * {@code getMyselfData().getGroupNames()}, this does not need the user
+     * record, so it can run in parallel with {@link #getMyselfData()}.
+     *
+     * @return group full names
+     * @throws IOException if any problems occurs reading the groups
+     */
+    public Set<String> getMyGroupNames() throws IOException {
+        return CTFUser.getGroupNames(this, username);
     }
 
     /**
@@ -505,7 +765,7 @@ public class CollabNetApp {
      */
     public CTFUser getUser(String username) throws IOException {
         try {
-            return new CTFUser(this, helper.getUserData(this.url, getSessionId(),username));
+            return new CTFUser(this, Helper.getUserData(this.url, getSessionId(),username));
         } catch (IOException e) {
             return null;
         }
@@ -544,7 +804,7 @@ public class CollabNetApp {
         requestPayload.put("licenseTypes", licenseType);
         requestPayload.put("superUser", Boolean.toString(isSuperUser));
         requestPayload.put("restrictedUser",  Boolean.toString(isRestrictedUser));
-        Response response = helper.request(end_point, sessionId, requestPayload.toString(), HttpMethod.POST, null);
+        Response response = request(end_point, requestPayload.toString(), HttpMethod.POST, null);
         String result = response.readEntity(String.class);
         int status = response.getStatus();
         if (status < 300) {
@@ -557,7 +817,7 @@ public class CollabNetApp {
             }
         } else {
             logger.log(Level.WARNING,"Error creating an user " + status  + ", Error Msg - " + result);
-            throw new IOException("Error creating an user - " + status + ", Error Msg - " + helper.getErrorMessage(result));
+            throw new IOException("Error creating an user - " + status + ", Error Msg - " + Helper.getErrorMessage(result));
         }
         return  ctfUser;
     }
@@ -569,6 +829,21 @@ public class CollabNetApp {
         public CollabNetAppException(String msg) {
             super(msg);
         }
+
+        public CollabNetAppException(String msg, Throwable cause) {
+            super(msg, cause);
+        }
+
+        /**
+         * @return the {@link IOException} this was thrown for, such as a page of a
+         *         {@link CTFList} that could not be fetched, or this wrapped in one.
+         */
+        public IOException toIOException() {
+            if (getCause() instanceof IOException) {
+                return (IOException) getCause();
+            }
+            return new IOException(getMessage(), this);
+        }
     }
 
     /**
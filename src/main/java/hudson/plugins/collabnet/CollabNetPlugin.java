@@ -1,7 +1,10 @@
 package hudson.plugins.collabnet;
 
+import com.collabnet.ce.webservices.CTFMetadataSnapshot;
 import hudson.Plugin;
 import hudson.plugins.collabnet.auth.CNFilter;
+import hudson.plugins.collabnet.util.CNExecutors;
+import hudson.plugins.collabnet.util.CNHttpTransport;
 import hudson.util.PluginServletFilter;
 
 /**
@@ -13,4 +16,18 @@ public class CollabNetPlugin extends Plugin {
         PluginServletFilter.addFilter(new CNFilter());
         super.start();
     }
+
+    @Override
+    public void postInitialize() throws Exception {
+        CTFMetadataSnapshot.load();
+        super.postInitialize();
+    }
+
+    @Override
+    public void stop() throws Exception {
+        CTFMetadataSnapshot.save();
+        CNExecutors.shutdown();
+        CNHttpTransport.shutdown();
+        super.stop();
+    }
 }
@@ -13,6 +13,7 @@ import hudson.model.JobProperty;
 import hudson.model.JobPropertyDescriptor;
 import hudson.plugins.collabnet.util.ComboBoxUpdater;
 import hudson.plugins.collabnet.util.CommonUtil;
+import hudson.security.AuthorizationStrategy;
 import hudson.security.Permission;
 import hudson.util.ComboBoxModel;
 import hudson.util.FormValidation;
@@ -70,6 +71,7 @@ public class CNAuthProjectProperty extends JobProperty<Job<?, ?>> {
             // means we can't find the specified project name - prevent overriding
             setProjectId(storedProjectId);
         }
+        clearProjectACLs();
     }
 
     /**
@@ -141,6 +143,20 @@ public class CNAuthProjectProperty extends JobProperty<Job<?, ?>> {
      */
     public void setProjectId(String projectId) {
         this.projectId = projectId;
+        clearProjectACLs();
+    }
+
+    /**
+     * The authorization strategy caches job ACLs by project id, and the authorization
+     * cache the projects jobs are bound to, so drop them whenever a job's project
+     * binding is configured.
+     */
+    private static void clearProjectACLs() {
+        CNAuthorizationCache.getInstance().clearBoundProjects();
+        AuthorizationStrategy strategy = Hudson.getInstance().getAuthorizationStrategy();
+        if (strategy instanceof CNAuthorizationStrategy) {
+            ((CNAuthorizationStrategy) strategy).clearProjectACLs();
+        }
     }
 
     /**
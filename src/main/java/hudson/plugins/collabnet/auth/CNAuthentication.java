@@ -4,6 +4,7 @@ import com.collabnet.ce.webservices.CTFProject;
 import com.collabnet.ce.webservices.CTFUser;
 import com.collabnet.ce.webservices.CollabNetApp;
 import hudson.model.Hudson;
+import hudson.plugins.collabnet.util.CNExecutors;
 import hudson.security.Permission;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
@@ -14,6 +15,10 @@ import java.util.List;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Logger;
 
 /**
@@ -25,23 +30,77 @@ public class CNAuthentication implements Authentication {
     private final CTFUser myself;
     private final CollabNetApp cna;
     private List<SimpleGrantedAuthority> authorities = new ArrayList<>();
-    private Collection<String> groups;
+    /**
+     * Group names, fetched in the background after login, see {@link #startBackgroundLoads()},
+     * or by the first caller that needs them.
+     */
+    private final FutureTask<Set<String>> groupsTask;
+    private volatile Set<String> groups;
     private boolean authenticated = false;
     private boolean cnauthed = false;
-    private CNAuthorizationCache mAuthCache = null;
 
     private static Logger log = Logger.getLogger("CNAuthentication");
     
     public CNAuthentication(Object principal, Object credentials) throws IOException {
         this.principal = (String) principal;
         this.cna = (CollabNetApp) credentials;
+        this.groupsTask = new FutureTask<Set<String>>(new Callable<Set<String>>() {
+            public Set<String> call() throws IOException {
+                return cna.getMyGroupNames();
+            }
+        });
+        // the user record already carries the superuser flag
         this.myself = cna.getMyselfData();
         this.setupAuthorities();
-        this.setupGroups();
         this.setAuthenticated(true);
         this.setCNAuthed(true);
+    }
+
+    /**
+     * Copies an authentication for another session. The copy has its own connection and
+     * flags, so that nothing one session does to its authentication affects the other; the
+     * user record and the groups, which are not modified, are shared.
+     * The connection keeps the credentials of the original, so the copy can log in again
+     * on a 401 whenever the original can. SSO token logins, the only ones copied, hold no
+     * password, so neither can; once TeamForge expires the session the user goes through
+     * SSO again.
+     */
+    private CNAuthentication(CNAuthentication from) {
+        this.principal = from.principal;
+        this.cna = from.cna.copy();
+        this.groupsTask = from.groupsTask;
+        this.groups = from.groups;
+        this.myself = from.myself;
+        this.authorities = new ArrayList<>(from.authorities);
+        this.setAuthenticated(true);
+        this.setCNAuthed(true);
+    }
 
-        mAuthCache = new CNAuthorizationCache();
+    /**
+     * @return a copy of this authentication for another session.
+     */
+    CNAuthentication copy() {
+        return new CNAuthentication(this);
+    }
+
+    /**
+     * Called by the login paths once the authentication is built: fetches the groups and
+     * loads the project permissions on the plugin's background pool, ahead of the first
+     * page that needs them.
+     */
+    void startBackgroundLoads() {
+        final CollabNetApp conn = this.cna;
+        final String username = this.principal;
+        try {
+            CNExecutors.background().execute(groupsTask);
+            CNExecutors.background().execute(new Runnable() {
+                public void run() {
+                    CNAuthorizationCache.getInstance().warmUp(conn, username);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // shutting down; the groups are fetched on first use instead
+        }
     }
     
     /**
@@ -62,15 +121,26 @@ public class CNAuthentication implements Authentication {
     }
 
     /**
-     * Check which groups this user belongs to.
+     * Check which groups this user belongs to, waiting for the fetch started at login,
+     * or fetching them here if it has not started yet.
      */
-    private void setupGroups() {
-        this.groups = Collections.emptyList();
-        try {
-            this.groups = myself.getGroupNames();
-        } catch (IOException re) {
-            // not much we can do
+    private Set<String> getGroups() {
+        Set<String> g = this.groups;
+        if (g == null) {
+            g = Collections.emptySet();
+            groupsTask.run(); // no-op if the background fetch already started
+            try {
+                g = groupsTask.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return g;
+            } catch (ExecutionException e) {
+                // not much we can do
+                log.info("Failed to retrieve the groups of " + principal + ": " + e.getCause().getMessage());
+            }
+            this.groups = g;
         }
+        return g;
     }
     
     public void setAuthenticated(boolean authenticated) {
@@ -109,7 +179,7 @@ public class CNAuthentication implements Authentication {
      * @return true if the user is a member of the given group.
      */
     public boolean isMember(String group) {
-        return this.groups.contains(group);
+        return this.getGroups().contains(group);
     }
 
     public String toString() {
@@ -191,7 +261,17 @@ public class CNAuthentication implements Authentication {
      * @return set of permissions
      */
     public Set<Permission> getUserProjectPermSet(String username, String projectId) {
-        return mAuthCache.getUserProjectPermSet(username, projectId);
+        return getUserProjectPermissions(username, projectId).getGranted();
+    }
+
+    /**
+     * Get the permissions that a user has for a given project, with everything they imply.
+     * @param username user name
+     * @param projectId project id
+     * @return the user's permissions
+     */
+    public CNPermissionSet getUserProjectPermissions(String username, String projectId) {
+        return CNAuthorizationCache.getInstance().getUserProjectPermissions(username, projectId);
     }
 
     /**
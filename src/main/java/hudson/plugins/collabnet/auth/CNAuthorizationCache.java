@@ -4,110 +4,517 @@ import com.collabnet.ce.webservices.CTFList;
 import com.collabnet.ce.webservices.CTFProject;
 import com.collabnet.ce.webservices.CTFRole;
 import com.collabnet.ce.webservices.CollabNetApp;
+import hudson.Extension;
 import hudson.model.Hudson;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.listeners.ItemListener;
+import hudson.plugins.collabnet.CollabNetPlugin;
+import hudson.plugins.collabnet.util.CNExecutors;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
 import hudson.security.AuthorizationStrategy;
 import hudson.security.Permission;
 
 import java.io.IOException;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * Authorization cache.
+ * Authorization cache, shared by every session on the controller.
+ *
+ * <p>
+ * Permission sets are kept per (project, user), so a user's browser and API sessions share them.
+ * Projects are kept once for everybody, and only the projects that were actually checked.
+ *
+ * <p>
+ * Lookups never block on each other: each (project, user) pair is loaded by at most one
+ * thread at a time, and other threads asking for the same pair wait for that load instead of
+ * starting their own.
+ *
+ * <p>
+ * Every entry has its own lifetime, the cache timeout shortened by up to {@link #JITTER}, so
+ * that entries loaded together do not all expire together. A lifetime never exceeds the cache
+ * timeout, since that is the longest a revoked permission may still be honoured. Once past
+ * {@link #REFRESH_FRACTION} of its lifetime, an entry is still served while it is reloaded in
+ * the background. When the cache grows beyond {@link #MAX_ENTRIES}, the least recently used
+ * entries are dropped.
  */
 public class CNAuthorizationCache {
+    /**
+     * Maximum number of (project, user) entries kept.
+     */
+    public static final int MAX_ENTRIES = Integer.getInteger(CollabNetPlugin.class.getName() + ".authCacheMaxEntries", 10000);
+
+    /**
+     * Largest number of projects whose permissions are loaded at login. On instances with
+     * more projects bound to jobs than this, the permissions are only loaded as they are
+     * checked. Zero turns loading at login off.
+     */
+    public static final int WARM_UP_MAX_PROJECTS = Integer.getInteger(CollabNetPlugin.class.getName() + ".authWarmUpMaxProjects", 50);
+
+    /**
+     * Entry lifetimes are shortened by up to this fraction of the cache timeout.
+     */
+    private static final double JITTER = 0.1;
+
+    /**
+     * Fraction of an entry's lifetime after which a lookup reloads it in the background.
+     */
+    private static final double REFRESH_FRACTION = 0.75;
+
+    private static final Statistics STATISTICS = new Statistics();
 
-    private Map<String, Set<Permission>> mPermSetMap = new HashMap<String, Set<Permission>>();
-    private Map<String, CTFProject> mProjects = new HashMap<>();
-    private Map<String, CTFList<CTFRole>> mRoles = new HashMap<>();
-    private long mCacheExpirationDate;
+    private static final CNAuthorizationCache INSTANCE = new CNAuthorizationCache(MAX_ENTRIES);
+
+    private final ConcurrentMap<String, Entry> mPermSetMap = new ConcurrentHashMap<String, Entry>();
+    private final ConcurrentMap<String, CTFProject> mProjects = new ConcurrentHashMap<String, CTFProject>();
+    private final AtomicBoolean mEvicting = new AtomicBoolean();
+    private volatile Set<String> mBoundProjects;
+    private final int mMaxEntries;
+
+    CNAuthorizationCache(int maxEntries) {
+        mMaxEntries = maxEntries;
+    }
 
     /**
-     * Constructor.
+     * @return the controller-wide cache.
      */
-    public CNAuthorizationCache() {
-        mCacheExpirationDate = System.currentTimeMillis(); // first time we use the cache, we'd reset expiration
+    public static CNAuthorizationCache getInstance() {
+        return INSTANCE;
     }
 
     /**
-     * Remove all cache entries and sets next expiration date
+     * Drops every cached permission set and project.
      */
-    private void clearCache() {
+    public void clear() {
         mPermSetMap.clear();
         mProjects.clear();
-        mRoles.clear();
+    }
+
+    /**
+     * Forgets which projects jobs are bound to, called when a job's binding may have changed.
+     */
+    public void clearBoundProjects() {
+        mBoundProjects = null;
+    }
+
+    /**
+     * @return the ids of the projects that jobs are bound to, found once with a scan of
+     *         every job as SYSTEM and kept until {@link #clearBoundProjects()}.
+     */
+    Set<String> getBoundProjects() {
+        Set<String> projectIds = mBoundProjects;
+        if (projectIds == null) {
+            projectIds = new HashSet<String>();
+            // logins warm up on a pool thread with no user, who could see no jobs
+            try (ACLContext ctx = ACL.as2(ACL.SYSTEM2)) {
+                for (Job<?, ?> job : Hudson.getInstance().getAllItems(Job.class)) {
+                    CNAuthProjectProperty capp = job.getProperty(CNAuthProjectProperty.class);
+                    String projectId = capp == null ? null : capp.getProjectId();
+                    if (projectId != null && !projectId.equals("")) {
+                        projectIds.add(projectId);
+                    }
+                }
+            }
+            projectIds = Collections.unmodifiableSet(projectIds);
+            mBoundProjects = projectIds;
+        }
+        return projectIds;
+    }
+
+    /**
+     * @return the counters of the authorization cache.
+     */
+    public static Statistics getStatistics() {
+        return STATISTICS;
+    }
 
+    long getCacheTimeoutMs() {
         AuthorizationStrategy authStrategy = Hudson.getInstance().getAuthorizationStrategy();
         CNAuthorizationStrategy cnAuthStrategy = (CNAuthorizationStrategy) authStrategy;
-        long permCacheTimeoutMs = cnAuthStrategy.getAuthCacheTimeoutMs();
-
-        mCacheExpirationDate = System.currentTimeMillis() + permCacheTimeoutMs;
+        return cnAuthStrategy.getAuthCacheTimeoutMs();
     }
 
     /**
      * Get a user's permission available for a given project.
-     * @return set containing all of the user's permissions
+     * @return the user's permissions, with everything they imply
      */
-    public synchronized Set<Permission> getUserProjectPermSet(String username, String projectId) {
-        if (System.currentTimeMillis() >= mCacheExpirationDate) {
-            clearCache();
+    public CNPermissionSet getUserProjectPermissions(String username, String projectId) {
+        Entry e = getEntry(username, projectId);
+        long now = System.currentTimeMillis();
+        e.lastAccess = now;
+
+        CNPermissionSet userPermSet = e.value;
+        if (userPermSet != null && now < e.expiresAt) {
+            STATISTICS.hits.incrementAndGet();
+            if (now >= e.refreshAt) {
+                // stale, but still usable while a fresh copy is fetched
+                e.load(CNConnection.getInstance(), username, projectId, true);
+            }
+            return userPermSet;
         }
+        STATISTICS.misses.incrementAndGet();
+        return e.load(CNConnection.getInstance(), username, projectId, false);
+    }
+
+    /**
+     * @return whether a user's permissions on a project are cached, without adding them.
+     */
+    boolean isCached(String username, String projectId) {
+        return mPermSetMap.containsKey(projectId + ":" + username);
+    }
+
+    /**
+     * @return the number of cached permission sets.
+     */
+    int size() {
+        return mPermSetMap.size();
+    }
+
+    Entry getEntry(String username, String projectId) {
         String cacheKey = projectId + ":" + username;
-        Set<Permission> userPermSet = mPermSetMap.get(cacheKey);
-        if (userPermSet == null || userPermSet.size() == 0) {
-            userPermSet = new HashSet<Permission>();
-            try {
-                CollabNetApp conn = CNConnection.getInstance();
-                CTFProject ctfProject = mProjects.get(projectId);
-                if (ctfProject == null) {
-                    List<CTFProject> projects = conn.getProjects();
-                    for (CTFProject p : projects) {
-                        mProjects.put(p.getId(), p);
-                        if (p.getId().equals(projectId)) {
-                            userPermSet = getProjectRoles(p, cacheKey, projectId, username);
-                        }
-                    }
-                } else {
-                    userPermSet = getProjectRoles(ctfProject, cacheKey, projectId, username);
+        Entry e = mPermSetMap.get(cacheKey);
+        if (e == null) {
+            Entry created = new Entry();
+            e = mPermSetMap.putIfAbsent(cacheKey, created);
+            if (e == null) {
+                e = created;
+                evictIfNeeded();
+            }
+        }
+        return e;
+    }
+
+    /**
+     * Loads a user's permissions on every project in {@link #getBoundProjects()}, fetching the roles
+     * of all those projects together rather than one project per cache miss.
+     * Projects whose entry is still fresh are skipped, and nothing is loaded if more than
+     * {@link #WARM_UP_MAX_PROJECTS} projects would be.
+     *
+     * @param conn the user's own connection
+     * @param username the user who just logged in
+     */
+    public void warmUp(CollabNetApp conn, String username) {
+        if (conn == null || WARM_UP_MAX_PROJECTS <= 0
+                || !(Hudson.getInstance().getAuthorizationStrategy() instanceof CNAuthorizationStrategy)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Set<String> projectIds = new HashSet<String>();
+        for (String projectId : getBoundProjects()) {
+            Entry e = mPermSetMap.get(projectId + ":" + username);
+            if (e == null || e.value == null || now >= e.refreshAt) {
+                projectIds.add(projectId);
+                if (projectIds.size() > WARM_UP_MAX_PROJECTS) {
+                    LOGGER.fine("Not loading the permissions of " + username + " at login: more than "
+                            + WARM_UP_MAX_PROJECTS + " projects");
+                    return;
                 }
+            }
+        }
+        if (projectIds.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        Map<String, CTFList<CTFRole>> roles = conn.getUserRoles(username, projectIds);
+        long perProject = (System.nanoTime() - start) / projectIds.size();
+        for (String projectId : projectIds) {
+            CTFList<CTFRole> projectRoles = roles.get(projectId);
+            STATISTICS.recordLoad(perProject, projectRoles != null);
+            if (projectRoles != null) {
+                getEntry(username, projectId).store(new CNPermissionSet(getPermissions(projectRoles)));
+            }
+        }
+        LOGGER.fine("Loaded the permissions of " + username + " on " + roles.size() + " of "
+                + projectIds.size() + " projects");
+    }
 
-            } catch (IOException e) {
-                LOGGER.log(Level.WARNING, "Failed to retrieve permissions for the user "+username+" on "+projectId);
-                // fall back to zero permission
+    /**
+     * Drops the least recently used entries once the cache is over {@link #MAX_ENTRIES},
+     * bringing it down to 90% of that so that eviction does not run on every insert.
+     * Only the access times of the entries to drop are kept in order, not those of the
+     * whole cache.
+     */
+    private void evictIfNeeded() {
+        if (mPermSetMap.size() <= mMaxEntries || !mEvicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int excess = mPermSetMap.size() - mMaxEntries * 9 / 10;
+            if (excess <= 0) {
+                return;
+            }
+            // the newest of the oldest entries sits on top
+            PriorityQueue<Long> oldest = new PriorityQueue<Long>(excess, Collections.<Long>reverseOrder());
+            for (Entry e : mPermSetMap.values()) {
+                long t = e.lastAccess;
+                if (oldest.size() < excess) {
+                    oldest.add(t);
+                } else if (t < oldest.peek()) {
+                    oldest.poll();
+                    oldest.add(t);
+                }
             }
-            mPermSetMap.put(cacheKey, userPermSet);
+            long cutoff = oldest.peek();
+            // entries accessed at the cutoff time are only partly dropped
+            int atCutoff = excess;
+            for (long t : oldest) {
+                if (t < cutoff) {
+                    atCutoff--;
+                }
+            }
+            for (Map.Entry<String, Entry> victim : mPermSetMap.entrySet()) {
+                long t = victim.getValue().lastAccess;
+                if (t > cutoff || (t == cutoff && atCutoff <= 0)) {
+                    continue;
+                }
+                if (mPermSetMap.remove(victim.getKey(), victim.getValue())) {
+                    STATISTICS.evictions.incrementAndGet();
+                    if (t == cutoff) {
+                        atCutoff--;
+                    }
+                }
+            }
+        } finally {
+            mEvicting.set(false);
         }
-        return userPermSet;
     }
 
     private static final Logger LOGGER = Logger.getLogger(CNAuthorizationCache.class.getName());
 
-    private Set<Permission> getProjectRoles(CTFProject ctfProject, String cacheKey, String projectId, String username) {
-        Set<Permission> userPermSet = new HashSet<Permission>();
+    /**
+     * Fetches the permissions from TeamForge.
+     *
+     * @return the permissions, or null if they could not be retrieved.
+     */
+    Set<Permission> loadUserProjectPermSet(CollabNetApp conn, String username, String projectId) {
+        if (conn == null) {
+            return null;
+        }
         try {
-            if (ctfProject != null) {
-                if (ctfProject.getId().equals(projectId)) {
-                    CTFList<CTFRole> roleNameSet = mRoles.get(cacheKey);
-                    if (roleNameSet == null) {
-                        roleNameSet = ctfProject.getUserRoles(username);
-                        mRoles.put(cacheKey, roleNameSet);
+            CTFProject ctfProject = mProjects.get(projectId);
+            if (ctfProject == null) {
+                ctfProject = conn.getProjectById(projectId);
+                if (ctfProject == null) {
+                    return getProjectRoles(null, username);
+                }
+                // keep an unbound copy so that the cache does not pin this user's session
+                mProjects.put(projectId, ctfProject.withConnection(null));
+            }
+            return getProjectRoles(ctfProject.withConnection(conn), username);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to retrieve permissions for the user "+username+" on "+projectId);
+            return null;
+        }
+    }
+
+    private Set<Permission> getProjectRoles(CTFProject ctfProject, String username) throws IOException {
+        if (ctfProject == null) {
+            return new HashSet<Permission>();
+        }
+        return getPermissions(ctfProject.getUserRoles(username));
+    }
+
+    private static Set<Permission> getPermissions(CTFList<CTFRole> roleNameSet) {
+        Set<Permission> userPermSet = new HashSet<Permission>();
+        Collection<CollabNetRole> userRoles = CNProjectACL.CollabNetRoles.getMatchingRoles(roleNameSet);
+        for (CollabNetRole role : userRoles) {
+            userPermSet.addAll(CNProjectACL.CollabNetRoles.getPermissions(role));
+        }
+        return userPermSet;
+    }
+
+    /**
+     * Forgets the bound projects when jobs are loaded, created or deleted; configuring a
+     * job's binding goes through {@link CNAuthProjectProperty} instead.
+     */
+    @Extension
+    public static final class BoundProjectsListener extends ItemListener {
+        @Override
+        public void onLoaded() {
+            INSTANCE.clearBoundProjects();
+        }
+
+        @Override
+        public void onCreated(Item item) {
+            INSTANCE.clearBoundProjects();
+        }
+
+        @Override
+        public void onDeleted(Item item) {
+            INSTANCE.clearBoundProjects();
+        }
+    }
+
+    /**
+     * Cached permissions of one user on one project.
+     */
+    final class Entry {
+        /**
+         * Last successfully loaded permissions, or null if never loaded.
+         */
+        volatile CNPermissionSet value;
+        /**
+         * After this time, a lookup triggers a background reload.
+         */
+        volatile long refreshAt;
+        /**
+         * After this time, a lookup waits for a reload.
+         */
+        volatile long expiresAt;
+        /**
+         * Set on creation too, so that a new entry is not the first one evicted.
+         */
+        volatile long lastAccess = System.currentTimeMillis();
+        /**
+         * The load in progress, if any.
+         */
+        private final AtomicReference<FutureTask<CNPermissionSet>> loading =
+                new AtomicReference<FutureTask<CNPermissionSet>>();
+
+        private void store(CNPermissionSet loaded) {
+            long ttl = getCacheTimeoutMs();
+            ttl -= (long) (ttl * JITTER * ThreadLocalRandom.current().nextDouble());
+            long now = System.currentTimeMillis();
+            refreshAt = now + (long) (ttl * REFRESH_FRACTION);
+            expiresAt = now + ttl;
+            value = loaded;
+        }
+
+        /**
+         * Starts a load unless one is already running, and waits for it unless {@code async}.
+         *
+         * @return the loaded permissions, or an empty set if the load failed or {@code async} is set.
+         */
+        CNPermissionSet load(final CollabNetApp conn, final String username, final String projectId,
+                             boolean async) {
+            FutureTask<CNPermissionSet> task = loading.get();
+            if (task == null) {
+                FutureTask<CNPermissionSet> created = new FutureTask<CNPermissionSet>(new Callable<CNPermissionSet>() {
+                    public CNPermissionSet call() {
+                        long start = System.nanoTime();
+                        Set<Permission> granted = loadUserProjectPermSet(conn, username, projectId);
+                        CNPermissionSet loaded = granted == null ? null : new CNPermissionSet(granted);
+                        STATISTICS.recordLoad(System.nanoTime() - start, loaded != null);
+                        if (loaded == null) {
+                            return null;
+                        }
+                        store(loaded);
+                        return loaded;
                     }
-                    Collection<CollabNetRole> userRoles = CNProjectACL.CollabNetRoles.getMatchingRoles(roleNameSet);
-                    for (CollabNetRole role : userRoles) {
-                        userPermSet.addAll(role.getPermissions());
+                }) {
+                    @Override
+                    protected void done() {
+                        loading.compareAndSet(this, null);
                     }
+                };
+                if (loading.compareAndSet(null, created)) {
+                    task = created;
+                    if (async) {
+                        try {
+                            CNExecutors.background().execute(task);
+                        } catch (RejectedExecutionException e) {
+                            // shutting down; done() releases the slot for the next lookup
+                            task.cancel(false);
+                        }
+                    } else {
+                        task.run();
+                    }
+                } else {
+                    task = loading.get();
                 }
             }
-        } catch (IOException e) {
-            LOGGER.log(Level.WARNING, "Failed to retrieve permissions for the user using getProjectRoles: + "+username+" on "+projectId);
-            // fall back to zero permission
+            if (async || task == null) {
+                // a concurrent load just finished; use whatever it stored
+                CNPermissionSet v = value;
+                return async || v == null ? CNPermissionSet.EMPTY : v;
+            }
+            try {
+                CNPermissionSet loaded = task.get();
+                // fall back to zero permission
+                return loaded != null ? loaded : CNPermissionSet.EMPTY;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return CNPermissionSet.EMPTY;
+            } catch (ExecutionException e) {
+                LOGGER.log(Level.WARNING, "Failed to retrieve permissions for the user "+username+" on "+projectId, e.getCause());
+                return CNPermissionSet.EMPTY;
+            }
+        }
+    }
+
+    /**
+     * Counters of the authorization cache, shown on the security configuration page.
+     */
+    public static final class Statistics {
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private final AtomicLong evictions = new AtomicLong();
+        private final AtomicLong loads = new AtomicLong();
+        private final AtomicLong loadFailures = new AtomicLong();
+        private final AtomicLong loadTimeNanos = new AtomicLong();
+
+        private Statistics() {}
+
+        private void recordLoad(long nanos, boolean success) {
+            loads.incrementAndGet();
+            if (!success) {
+                loadFailures.incrementAndGet();
+            }
+            loadTimeNanos.addAndGet(nanos);
+        }
+
+        public long getHits() {
+            return hits.get();
+        }
+
+        public long getMisses() {
+            return misses.get();
+        }
+
+        public long getEvictions() {
+            return evictions.get();
+        }
+
+        public long getLoads() {
+            return loads.get();
+        }
+
+        public long getLoadFailures() {
+            return loadFailures.get();
+        }
+
+        /**
+         * @return the average time spent loading an entry from TeamForge, in milliseconds.
+         */
+        public long getAverageLoadTimeMs() {
+            long n = loads.get();
+            return n == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(loadTimeNanos.get() / n);
+        }
+
+        @Override
+        public String toString() {
+            return "hits: " + getHits() + ", misses: " + getMisses() + ", evictions: " + getEvictions()
+                    + ", loads: " + getLoads() + " (" + getLoadFailures() + " failed, "
+                    + getAverageLoadTimeMs() + " ms average)";
         }
-    return userPermSet;
     }
 }
@@ -19,6 +19,8 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Logger;
 
 import static hudson.Util.fixNull;
@@ -36,6 +38,11 @@ public class CNAuthorizationStrategy extends AuthorizationStrategy {
     private Collection<String> adminGroups;
     private int mAuthCacheTimeoutMin;
     private volatile ACL rootACL;
+    /**
+     * ACLs of jobs bound to a TeamForge project, by project id.
+     */
+    private transient volatile ConcurrentMap<String, ACL> projectACLs;
+    private transient volatile ACL authenticatedUserACL;
 
     private static Logger log = Logger.getLogger("CNAuthorizationStrategy");
 
@@ -61,6 +68,8 @@ public class CNAuthorizationStrategy extends AuthorizationStrategy {
         this.adminUsers = new ArrayList<String>(adminUsers);
         this.adminGroups = new ArrayList<String>(adminGroups);
         mAuthCacheTimeoutMin = max(0,permCacheTimeoutMin); // can't be negative
+        // the cache outlives the strategy, so drop what was computed under the old settings
+        CNAuthorizationCache.getInstance().clear();
         this.rootACL = new CNRootACL(this.adminUsers, this.adminGroups, 
                                      this.readUsers, this.readGroups);
     }
@@ -128,12 +137,12 @@ public class CNAuthorizationStrategy extends AuthorizationStrategy {
      * @return the default ACL.
      */
     @Override
-    public ACL getRootACL() {
-        if (this.rootACL == null) {
+    public CNRootACL getRootACL() {
+        if (!(this.rootACL instanceof CNRootACL)) {
             this.rootACL = new CNRootACL(this.adminUsers, this.adminGroups, 
                                          this.readUsers, this.readGroups);
         }
-        return this.rootACL;
+        return (CNRootACL) this.rootACL;
     }
 
     /**
@@ -146,15 +155,32 @@ public class CNAuthorizationStrategy extends AuthorizationStrategy {
         if (capp != null) {
             String projectId = capp.getProjectId();
             if (projectId != null && !projectId.equals("")) {
-                return new CNRootACL(this.adminUsers, this.adminGroups, 
-                                     this.readUsers, this.readGroups, 
-                                     new CNProjectACL(projectId));
+                ConcurrentMap<String, ACL> acls = this.projectACLs;
+                if (acls == null) {
+                    this.projectACLs = acls = new ConcurrentHashMap<String, ACL>();
+                }
+                ACL acl = acls.get(projectId);
+                if (acl == null) {
+                    acl = getRootACL().wrap(new CNProjectACL(projectId));
+                    acls.put(projectId, acl);
+                }
+                return acl;
             }
         }
 
         // for jobs that are not associated with any project, we'll make it configuratble by any authenticated user
-        return new CNRootACL(this.adminUsers, this.adminGroups,
-            this.readUsers, this.readGroups, new CNAuthenticatedUserACL());
+        ACL acl = this.authenticatedUserACL;
+        if (acl == null) {
+            this.authenticatedUserACL = acl = getRootACL().wrap(new CNAuthenticatedUserACL());
+        }
+        return acl;
+    }
+
+    /**
+     * Drops the cached per-job ACLs, called when a job's project binding changes.
+     */
+    public void clearProjectACLs() {
+        this.projectACLs = null;
     }
 
     @Override
@@ -237,5 +263,12 @@ public class CNAuthorizationStrategy extends AuthorizationStrategy {
         public FormValidation doCheckAuthCacheTimeoutMin(@QueryParameter String value) {
             return CNFormFieldValidator.numberCheck(value, true, true, false);
         }
+
+        /**
+         * @return the authorization cache counters, for the configuration screen.
+         */
+        public CNAuthorizationCache.Statistics getAuthCacheStatistics() {
+            return CNAuthorizationCache.getStatistics();
+        }
     }
 }
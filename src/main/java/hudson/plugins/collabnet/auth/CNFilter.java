@@ -3,7 +3,13 @@ package hudson.plugins.collabnet.auth;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
 
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
@@ -35,6 +41,27 @@ import com.collabnet.ce.webservices.CollabNetApp;
 public class CNFilter implements Filter {
     private static Logger log = Logger.getLogger("CNFilter");
 
+    /**
+     * SSO token logins in progress, by username and token. A linked application page makes
+     * many requests with the same one-time token at once; only the first one logs in, and the
+     * others that arrive while it does share its outcome. A login is dropped from here as soon
+     * as it completes, so a token cannot be replayed afterwards.
+     */
+    private static final ConcurrentMap<String, TokenLogin> ssoLogins = new ConcurrentHashMap<String, TokenLogin>();
+
+    /**
+     * Paths of static resources, relative to the context path. These requests never carry
+     * SSO parameters and are not worth a redirect to CTF, so the filter lets them through.
+     */
+    private static final Pattern STATIC_RESOURCE = Pattern.compile(
+            "/(static|adjuncts|images|css|scripts|plugin)/.*|/favicon\\.ico");
+
+    /**
+     * SSO settings of the current security realm. Realms are replaced, not modified, when the
+     * security configuration is saved, so the snapshot is renewed whenever the realm changes.
+     */
+    private static volatile SsoSettings ssoSettings = new SsoSettings(null);
+
     public void init(FilterConfig filterConfig) {
     }
 
@@ -52,45 +79,90 @@ public class CNFilter implements Filter {
     public void doFilter(ServletRequest request, ServletResponse response,
                          FilterChain chain) throws IOException, ServletException {
 
-        if (Hudson.getInstance().isUseSecurity()) {
-            // check if we're in the CollabNetSecurity Realm
-            SecurityRealm securityRealm = Hudson.getInstance().getSecurityRealm();
-            if (securityRealm instanceof CollabNetSecurityRealm) {
-                CollabNetSecurityRealm cnRealm = (CollabNetSecurityRealm) securityRealm;
-                boolean enableSSOFromCTF = cnRealm.getEnableSSOAuthFromCTF();
-                boolean enableSSOToCTF = cnRealm.getEnableSSOAuthToCTF();
-
-                Authentication auth = Hudson.getAuthentication2();
-
-                if (enableSSOFromCTF) {
-                    HttpServletRequest httpRequest = (HttpServletRequest) request;
-                    // first detect if we are accessing Jenkins through CTF
-                    String username = request.getParameter("sfUsername");
-                    if (username != null) {
-                        // 'sfUsername' is used for CTF linked apps. if present make sure match the authenticated user
-                        if (!username.equals(auth.getName())) {
-                            auth.setAuthenticated(false);
-                        }
-                    }
+        // static resources are let through before the security realm is even looked at
+        if (isStaticResource((HttpServletRequest) request)) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        SsoSettings settings = getSsoSettings();
+        // check if we're in the CollabNetSecurity Realm
+        if (settings.enableSSOFromCTF || settings.enableSSOToCTF) {
+            CollabNetSecurityRealm securityRealm = settings.realm;
+            boolean enableSSOFromCTF = settings.enableSSOFromCTF;
+            boolean enableSSOToCTF = settings.enableSSOToCTF;
 
-                    if (!auth.isAuthenticated() || "anonymous".equals(CommonUtil.getUsername(auth.getPrincipal()))) {
-                        loginHudsonUsingCTFSSO((CollabNetSecurityRealm)securityRealm, httpRequest);
+            Authentication auth = Hudson.getAuthentication2();
+
+            if (enableSSOFromCTF) {
+                HttpServletRequest httpRequest = (HttpServletRequest) request;
+                // first detect if we are accessing Jenkins through CTF
+                String username = request.getParameter("sfUsername");
+                if (username != null) {
+                    // 'sfUsername' is used for CTF linked apps. if present make sure match the authenticated user
+                    if (!username.equals(auth.getName())) {
+                        auth.setAuthenticated(false);
                     }
                 }
 
-                if (enableSSOToCTF && auth instanceof CNAuthentication) {
-                    CNAuthentication cnauth = (CNAuthentication) auth;
-                    if (!cnauth.isCNAuthed()) {
-                        loginToCTF(cnauth, (CollabNetSecurityRealm)securityRealm,
-                            (HttpServletRequest) request, (HttpServletResponse) response);
-                        return;
-                    }
+                if (!auth.isAuthenticated() || "anonymous".equals(CommonUtil.getUsername(auth.getPrincipal()))) {
+                    loginHudsonUsingCTFSSO((CollabNetSecurityRealm)securityRealm, httpRequest);
+                }
+            }
+
+            if (enableSSOToCTF && auth instanceof CNAuthentication) {
+                CNAuthentication cnauth = (CNAuthentication) auth;
+                if (!cnauth.isCNAuthed()) {
+                    loginToCTF(cnauth, (CollabNetSecurityRealm)securityRealm,
+                        (HttpServletRequest) request, (HttpServletResponse) response);
+                    return;
                 }
             }
         }
         chain.doFilter(request, response);
     }
 
+    private static SsoSettings getSsoSettings() {
+        SecurityRealm securityRealm = Hudson.getInstance().getSecurityRealm();
+        SsoSettings settings = ssoSettings;
+        if (settings.source != securityRealm) {
+            ssoSettings = settings = new SsoSettings(securityRealm);
+        }
+        return settings;
+    }
+
+    private static boolean isStaticResource(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        String contextPath = request.getContextPath();
+        if (path == null) {
+            return false;
+        }
+        if (contextPath != null && path.startsWith(contextPath)) {
+            path = path.substring(contextPath.length());
+        }
+        return STATIC_RESOURCE.matcher(path).matches();
+    }
+
+    /**
+     * Immutable snapshot of the SSO flags of a security realm.
+     */
+    private static final class SsoSettings {
+        private final SecurityRealm source;
+        /**
+         * The realm, or null if it is not a {@link CollabNetSecurityRealm}.
+         */
+        private final CollabNetSecurityRealm realm;
+        private final boolean enableSSOFromCTF;
+        private final boolean enableSSOToCTF;
+
+        private SsoSettings(SecurityRealm source) {
+            this.source = source;
+            this.realm = source instanceof CollabNetSecurityRealm ? (CollabNetSecurityRealm) source : null;
+            this.enableSSOFromCTF = realm != null && realm.getEnableSSOAuthFromCTF();
+            this.enableSSOToCTF = realm != null && realm.getEnableSSOAuthToCTF();
+        }
+    }
+
     /**
      * Catch SSO data from CollabNet if data is present, and 
      * automatically login.  Used when the Jenkins server is setup as a 
@@ -110,15 +182,9 @@ public class CNFilter implements Filter {
         Authentication auth = null;
         boolean logoff = false;
         if (username != null && token != null) {
-            CollabNetApp ca = new CollabNetApp(url, username);
-            try {
-                ca.loginWithToken(token);
-                auth = new CNAuthentication(username, ca);
-            } catch (Exception re) {
-                // login failed, but continue
-                log.severe("Login failed with RemoteException: " + 
-                           re.getMessage());
-                logoff = true; 
+            auth = loginWithToken(url, username, token);
+            if (auth == null) {
+                logoff = true;
             }
         } else {
             logoff = true;
@@ -136,6 +202,77 @@ public class CNFilter implements Filter {
         SecurityContextHolder.getContext().setAuthentication(auth);
     }
     
+    /**
+     * Logs in with a CTF one-time token, or waits for the login of another request that
+     * carried the same username and token and is still in progress.
+     *
+     * @return an authentication of this request's own, or null if the login failed.
+     */
+    Authentication loginWithToken(final String url, final String username, final String token) {
+        Callable<CNAuthentication> login = new Callable<CNAuthentication>() {
+            public CNAuthentication call() throws Exception {
+                return login(url, username, token);
+            }
+        };
+        String key = url + '\n' + username + '\n' + token;
+        TokenLogin created = new TokenLogin(login);
+        TokenLogin existing = ssoLogins.putIfAbsent(key, created);
+        CNAuthentication auth;
+        if (existing != null) {
+            auth = existing.await();
+        } else {
+            try {
+                auth = created.await();
+            } finally {
+                ssoLogins.remove(key, created);
+            }
+        }
+        // every request, and so every session, gets its own copy
+        return auth == null ? null : auth.copy();
+    }
+
+    /**
+     * Logs in to TeamForge with a one-time token.
+     */
+    CNAuthentication login(String url, String username, String token) throws IOException {
+        CollabNetApp ca = new CollabNetApp(url, username);
+        ca.loginWithToken(token);
+        CNAuthentication auth = new CNAuthentication(username, ca);
+        auth.startBackgroundLoads();
+        return auth;
+    }
+
+    /**
+     * One SSO token login, run by the first request that needs it.
+     */
+    private static final class TokenLogin {
+        private final FutureTask<CNAuthentication> task;
+
+        private TokenLogin(Callable<CNAuthentication> login) {
+            this.task = new FutureTask<CNAuthentication>(login);
+        }
+
+        /**
+         * Runs the login unless another request already did, and waits for it.
+         *
+         * @return the authentication, or null if the login failed.
+         */
+        private CNAuthentication await() {
+            task.run(); // no-op unless this is the first caller
+            try {
+                return task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException e) {
+                // login failed, but continue
+                log.severe("Login failed with RemoteException: " +
+                           e.getCause().getMessage());
+                return null;
+            }
+        }
+    }
+
     /**
      * Redirect to the CollabNet Server to login there, and then 
      * redirect back to our original location.
@@ -0,0 +1,87 @@
+package hudson.plugins.collabnet.auth;
+
+import hudson.security.Permission;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Immutable set of permissions a user holds on a project, with everything they imply
+ * worked out up front.
+ *
+ * <p>
+ * Every known {@link Permission} gets a bit. When the set is built, the bit of each permission
+ * is set if the permission or anything in its {@link Permission#impliedBy} chain was granted,
+ * so {@link #hasPermission(Permission)} is a single bit test. Permissions registered after the
+ * set was built fall back to walking the chain.
+ */
+public final class CNPermissionSet {
+    /**
+     * Bit index of every permission seen so far. Indices are never reassigned.
+     */
+    private static final ConcurrentMap<Permission, Integer> INDEX = new ConcurrentHashMap<Permission, Integer>();
+
+    public static final CNPermissionSet EMPTY = new CNPermissionSet(Collections.<Permission>emptySet());
+
+    private final Set<Permission> granted;
+    private final BitSet implied = new BitSet();
+    /**
+     * Permissions with an index below this were expanded into {@link #implied}.
+     */
+    private final int indexed;
+
+    /**
+     * @param granted the permissions given directly by the user's roles.
+     */
+    public CNPermissionSet(Set<Permission> granted) {
+        this.granted = Collections.unmodifiableSet(new HashSet<Permission>(granted));
+        synchronized (INDEX) {
+            for (Permission p : Permission.getAll()) {
+                if (!INDEX.containsKey(p)) {
+                    INDEX.put(p, INDEX.size());
+                }
+            }
+            this.indexed = INDEX.size();
+        }
+        for (Map.Entry<Permission, Integer> e : INDEX.entrySet()) {
+            if (e.getValue() < indexed && isImplied(e.getKey())) {
+                implied.set(e.getValue());
+            }
+        }
+    }
+
+    /**
+     * @return the permissions given directly, without the ones they imply.
+     */
+    public Set<Permission> getGranted() {
+        return granted;
+    }
+
+    /**
+     * @return true if the permission, or one that implies it, was granted.
+     */
+    public boolean hasPermission(Permission permission) {
+        if (permission == null) {
+            return false;
+        }
+        Integer i = INDEX.get(permission);
+        if (i != null && i < indexed) {
+            return implied.get(i);
+        }
+        return isImplied(permission);
+    }
+
+    private boolean isImplied(Permission permission) {
+        for (; permission != null; permission = permission.impliedBy) {
+            if (granted.contains(permission)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -2,7 +2,11 @@ package hudson.plugins.collabnet.auth;
 
 import com.collabnet.ce.webservices.CTFList;
 import com.collabnet.ce.webservices.CTFRole;
+import hudson.ExtensionListListener;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
 import hudson.model.AbstractProject;
+import hudson.model.Descriptor;
 import hudson.model.Hudson;
 import hudson.model.Item;
 import hudson.plugins.collabnet.util.CommonUtil;
@@ -15,7 +19,10 @@ import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.logging.Logger;
 
@@ -49,18 +56,16 @@ public class CNProjectACL extends ACL {
             }
             CNAuthentication cnAuth = (CNAuthentication) a;
             String username = CommonUtil.getUsername(cnAuth.getPrincipal());
-            Set<Permission> userPerms = cnAuth.getUserProjectPermSet(username, projectId);
-            for(; permission!=null; permission=permission.impliedBy) {
-                if (userPerms.contains(permission)) {
-                    return true;
-                }
-            }
+            return cnAuth.getUserProjectPermissions(username, projectId).hasPermission(permission);
         }
         return false;
     }
 
     public static class CollabNetRoles {
-        private static Collection<CollabNetRole> roles = Collections.emptyList();
+        /**
+         * The current registry, or null until it is first needed or after plugins changed.
+         */
+        private static volatile Registry registry;
 
         public static final CollabNetRole HUDSON_READ_ROLE = new CollabNetRole("Hudson Read", "Allows users " +
                                     "read-access to Jenkins jobs.",
@@ -76,6 +81,41 @@ public class CNProjectACL extends ACL {
                                     + "delete builds.",
                                     Item.DELETE);
 
+        /**
+         * Builds the registry once plugins are up, and drops it whenever the set of
+         * extensions changes, e.g. when the promoted builds plugin is installed.
+         */
+        @Initializer(after = InitMilestone.EXTENSIONS_AUGMENTED)
+        public static void init() {
+            Hudson.getInstance().getExtensionList(Descriptor.class).addListener(new ExtensionListListener() {
+                @Override
+                public void onChange() {
+                    registry = null;
+                }
+            });
+            getRegistry();
+        }
+
+        /**
+         * Replaces the registry until plugins change, for tests that run without Jenkins.
+         */
+        static void setRegistry(Registry r) {
+            registry = r;
+        }
+
+        private static Registry getRegistry() {
+            Registry r = registry;
+            if (r == null) {
+                synchronized (CollabNetRoles.class) {
+                    r = registry;
+                    if (r == null) {
+                        registry = r = new Registry(createRoles());
+                    }
+                }
+            }
+            return r;
+        }
+
         /**
          * Get the applicable Jenkins roles matching a set of user role names
          *
@@ -85,7 +125,7 @@ public class CNProjectACL extends ACL {
         public static Collection<CollabNetRole> getMatchingRoles(CTFList<CTFRole> userRoleSet) {
             Collection<CollabNetRole> matchRoles = new ArrayList<CollabNetRole>();
             for (CollabNetRole role : getAllRoles()) {
-                if (userRoleSet.getTitles().contains(role.getName())) {
+                if (userRoleSet.containsTitle(role.getName())) {
                     matchRoles.add(role);
                 }
             }
@@ -96,49 +136,62 @@ public class CNProjectACL extends ACL {
          * @return all roles.  Lazily initialized.
          */
         public static Collection<CollabNetRole> getAllRoles() {
-            if (CollabNetRoles.roles.isEmpty()) {
-                roles = new ArrayList<CollabNetRole>();
-                roles.add(HUDSON_READ_ROLE);
-                roles.add(HUDSON_BUILD_ROLE);
-                roles.add(HUDSON_CONFIGURE_ROLE);
-                roles.add(HUDSON_DELETE_ROLE);
-                // add build promotion as a permission, if the build promotion
-                // plugin is present.
-                if (Hudson.getInstance().getPlugin("promoted-builds") != null) {
-                    // check if we have the PROMOTE permission
-                    Field promote = null;
-                    Field[] promotionFields = Promotion.class.getFields();
-                    for (Field field: promotionFields) {
-                        if (field.getName().equals("PROMOTE")) {
-                            promote = field;
-                            break;
-                        }
-                    }
-                    Permission promotePermission = null;
-                    if (promote != null) {
-                        try {
-                            promotePermission = (Permission) promote.get(null);
-                        } catch (IllegalAccessException iae) {}
-                    }
+            return getRegistry().roles;
+        }
 
-                    roles.add(new CollabNetRole("Hudson Promote",
-                                            "Allow users to " +
-                                            "promote builds.",
-                                            promotePermission!=null ? new Permission[]{promotePermission} : new Permission[0] ));
+        private static List<CollabNetRole> createRoles() {
+            List<CollabNetRole> roles = new ArrayList<CollabNetRole>();
+            roles.add(HUDSON_READ_ROLE);
+            roles.add(HUDSON_BUILD_ROLE);
+            roles.add(HUDSON_CONFIGURE_ROLE);
+            roles.add(HUDSON_DELETE_ROLE);
+            // add build promotion as a permission, if the build promotion
+            // plugin is present.
+            if (Hudson.getInstance().getPlugin("promoted-builds") != null) {
+                // check if we have the PROMOTE permission
+                Field promote = null;
+                Field[] promotionFields = Promotion.class.getFields();
+                for (Field field: promotionFields) {
+                    if (field.getName().equals("PROMOTE")) {
+                        promote = field;
+                        break;
+                    }
                 }
+                Permission promotePermission = null;
+                if (promote != null) {
+                    try {
+                        promotePermission = (Permission) promote.get(null);
+                    } catch (IllegalAccessException iae) {}
+                }
+
+                roles.add(new CollabNetRole("Hudson Promote",
+                                        "Allow users to " +
+                                        "promote builds.",
+                                        promotePermission!=null ? new Permission[]{promotePermission} : new Permission[0] ));
             }
-            return CollabNetRoles.roles;
+            return roles;
         }
 
         /**
          * @return an ordered List of Role names.
          */
         public static List<String> getNames() {
-            List<String> names = new ArrayList<String>();
-            for (CollabNetRole role: CollabNetRoles.getAllRoles()) {
-                names.add(role.getName());
-            }
-            return names;
+            return getRegistry().names;
+        }
+
+        /**
+         * @return the role with the given name, or null if there is none.
+         */
+        public static CollabNetRole getRole(String name) {
+            return getRegistry().byName.get(name);
+        }
+
+        /**
+         * @return the Jenkins permissions granted by the given role.
+         */
+        public static Set<Permission> getPermissions(CollabNetRole role) {
+            Set<Permission> permissions = getRegistry().permissions.get(role);
+            return permissions != null ? permissions : Collections.<Permission>emptySet();
         }
 
         /**
@@ -151,16 +204,7 @@ public class CNProjectACL extends ACL {
          *         null if none would.
          */
         public static CollabNetRole getGrantingRole(Permission permission) {
-            Collection<Permission> implyingPermissions = 
-                CollabNetRoles.expandPermissions(permission);
-            for (CollabNetRole role: CollabNetRoles.getAllRoles()) {
-                for (Permission p: implyingPermissions) {
-                    if (role.hasPermission(p)) {
-                        return role;
-                    }
-                }
-            }
-            return null;
+            return getRegistry().getGrantingRole(permission);
         }
 
         /**
@@ -171,16 +215,65 @@ public class CNProjectACL extends ACL {
          * @param permission
          * @return the collection of implied permissions.
          */
-        private static Collection<Permission> expandPermissions(Permission 
+        static Collection<Permission> expandPermissions(Permission 
                                                                 permission) {
             Collection<Permission> permissions = new ArrayList<Permission>();
             for(Permission p = permission; p != null; 
-                p = permission.impliedBy) {
+                p = p.impliedBy) {
                 permissions.add(p);
             }
             return permissions;
         }
 
+        /**
+         * Immutable snapshot of the roles and the look-up tables derived from them.
+         */
+        static final class Registry {
+            final List<CollabNetRole> roles;
+            final List<String> names;
+            final Map<String, CollabNetRole> byName = new HashMap<String, CollabNetRole>();
+            final Map<CollabNetRole, Set<Permission>> permissions = new HashMap<CollabNetRole, Set<Permission>>();
+            /**
+             * Granting role of every permission known when the registry was built, null values included.
+             */
+            private final Map<Permission, CollabNetRole> grantingRoles = new HashMap<Permission, CollabNetRole>();
+
+            Registry(List<CollabNetRole> roles) {
+                this.roles = Collections.unmodifiableList(roles);
+                List<String> names = new ArrayList<String>();
+                for (CollabNetRole role : roles) {
+                    names.add(role.getName());
+                    byName.put(role.getName(), role);
+                    permissions.put(role, Collections.unmodifiableSet(new HashSet<Permission>(role.getPermissions())));
+                }
+                this.names = Collections.unmodifiableList(names);
+                for (Permission p : Permission.getAll()) {
+                    grantingRoles.put(p, findGrantingRole(p));
+                }
+            }
+
+            CollabNetRole getGrantingRole(Permission permission) {
+                CollabNetRole role = grantingRoles.get(permission);
+                if (role == null && !grantingRoles.containsKey(permission)) {
+                    // registered after the registry was built
+                    role = findGrantingRole(permission);
+                }
+                return role;
+            }
+
+            private CollabNetRole findGrantingRole(Permission permission) {
+                Collection<Permission> implyingPermissions = expandPermissions(permission);
+                for (CollabNetRole role : roles) {
+                    Set<Permission> granted = permissions.get(role);
+                    for (Permission p : implyingPermissions) {
+                        if (granted.contains(p)) {
+                            return role;
+                        }
+                    }
+                }
+                return null;
+            }
+        }
     }
 
 }
@@ -8,6 +8,8 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.logging.Logger;
 
 /**
@@ -16,6 +18,7 @@ import java.util.logging.Logger;
  * will wrap another ACL and extend those permissions.
  */
 public class CNRootACL extends ACL {
+    // declared as collections since older configurations persisted them as lists
     private Collection<String> adminUsers;
     private Collection<String> adminGroups;
     private Collection<String> readUsers;
@@ -36,6 +39,14 @@ public class CNRootACL extends ACL {
                      Collection<String> readUsers, 
                      Collection<String> readGroups, 
                      ACL innerACL) {
+        this(toSet(adminUsers), toSet(adminGroups), toSet(readUsers), toSet(readGroups), innerACL);
+    }
+
+    private CNRootACL(Set<String> adminUsers,
+                      Set<String> adminGroups,
+                      Set<String> readUsers,
+                      Set<String> readGroups,
+                      ACL innerACL) {
         this.adminUsers = adminUsers;
         this.adminGroups = adminGroups;
         this.readUsers = readUsers;
@@ -43,6 +54,36 @@ public class CNRootACL extends ACL {
         this.innerACL = innerACL;
     }
 
+    /**
+     * A plain {@link HashSet}, which is never modified once built, since the sets are
+     * saved with the strategy and JDK wrapper classes do not serialize cleanly.
+     */
+    private static Set<String> toSet(Collection<String> c) {
+        if (c == null) {
+            return new HashSet<String>();
+        }
+        return new HashSet<String>(c);
+    }
+
+    /**
+     * Turns the lists of an ACL loaded from disk into hash sets.
+     */
+    private Object readResolve() {
+        return new CNRootACL(adminUsers, adminGroups, readUsers, readGroups, innerACL);
+    }
+
+    /**
+     * Returns an ACL with the same users and groups as this one that
+     * extends the given ACL. The user and group sets are shared, not copied.
+     *
+     * @param innerACL the ACL to extend
+     * @return the new ACL
+     */
+    public CNRootACL wrap(ACL innerACL) {
+        return new CNRootACL((Set<String>) this.adminUsers, (Set<String>) this.adminGroups,
+                             (Set<String>) this.readUsers, (Set<String>) this.readGroups, innerACL);
+    }
+
     /**
      * If the user is included in the admins or readUsers sets, check
      * whether the permission is granted via those.  If the permission
@@ -28,8 +28,12 @@ public class CollabNetAuthManager implements AuthenticationManager {
         String username = authentication.getName();
         String password = (String) authentication.getCredentials();
         try {
-            CollabNetApp cna = new CollabNetApp(this.getCollabNetUrl(), username, password);
-            return new CNAuthentication(authentication.getName(), cna);
+            // always verify the password against TeamForge instead of reusing a cached session
+            CollabNetApp cna = new CollabNetApp(this.getCollabNetUrl(), username);
+            cna.loginWithPassword(password);
+            CNAuthentication auth = new CNAuthentication(authentication.getName(), cna);
+            auth.startBackgroundLoads();
+            return auth;
         } catch (IOException re) {
             throw new BadCredentialsException("Failed to log into " + 
                                               this.getCollabNetUrl() + ": " + 
@@ -13,8 +13,10 @@ import hudson.Launcher;
 import hudson.model.*;
 import hudson.plugins.collabnet.AbstractTeamForgeNotifier;
 import hudson.plugins.collabnet.ConnectionFactory;
+import hudson.plugins.collabnet.util.CNFileUploader;
 import hudson.plugins.collabnet.util.CNFormFieldValidator;
 import hudson.plugins.collabnet.util.CNHudsonUtil;
+import hudson.plugins.collabnet.util.CNUploadExecutor;
 import hudson.plugins.collabnet.util.CommonUtil;
 import hudson.remoting.VirtualChannel;
 import hudson.tasks.BuildStepMonitor;
@@ -23,11 +25,18 @@ import hudson.util.FormValidation;
 import jakarta.activation.MimetypesFileTypeMap;
 import org.jenkinsci.remoting.RoleChecker;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
 
 import java.io.File;
 import java.io.IOException;
 import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
 /**
@@ -50,6 +59,13 @@ public class CNDocumentUploader extends AbstractTeamForgeNotifier {
     private String description;
     private FilePattern[] file_patterns;
     private boolean includeBuildLog;    
+    private boolean sync;
+    private boolean prune;
+
+    /**
+     * What happened to one file.
+     */
+    private enum UploadResult { UPLOADED, UNCHANGED, DELETED, FAILED }
 
     /**
      * Creates a new CNDocumentUploader object.
@@ -90,9 +106,16 @@ public class CNDocumentUploader extends AbstractTeamForgeNotifier {
      * @param message A string to print to the console.
      */
     private void logConsole(String message) {
-        if (this.listener != null) {
+        this.logConsole(this.listener, message);
+    }
+
+    /**
+     * Log a message to the given listener, for uploads running in parallel.
+     */
+    private void logConsole(TaskListener listener, String message) {
+        if (listener != null) {
             message = "Digital.ai Document Uploader: " + message;
-            this.listener.getLogger().println(message);
+            listener.getLogger().println(message);
         }
     }
 
@@ -105,12 +128,19 @@ public class CNDocumentUploader extends AbstractTeamForgeNotifier {
      * @param exception the exception containing the stack trace to log
      */
     private void logConsole(String message, Exception exception) {
-        if (this.listener != null) {
+        this.logConsole(this.listener, message, exception);
+    }
+
+    /**
+     * Log a message and a stack trace to the given listener, for uploads running in parallel.
+     */
+    private void logConsole(TaskListener listener, String message, Exception exception) {
+        if (listener != null) {
             message = "Digital.ai Document Uploader: " + message;
-            this.listener.getLogger().println(message);
+            listener.getLogger().println(message);
 
             // now print the stack trace
-            exception.printStackTrace(this.listener.error("error"));
+            exception.printStackTrace(listener.error("error"));
         }
     }
 
@@ -157,6 +187,30 @@ public class CNDocumentUploader extends AbstractTeamForgeNotifier {
         return this.includeBuildLog;
     }
 
+    /**
+     * @return true if only the files added or changed since the last build are uploaded.
+     */
+    public boolean isSync() {
+        return this.sync;
+    }
+
+    @DataBoundSetter
+    public void setSync(boolean sync) {
+        this.sync = sync;
+    }
+
+    /**
+     * @return true if, in sync mode, the documents whose file is gone from the workspace are deleted.
+     */
+    public boolean isPrune() {
+        return this.prune;
+    }
+
+    @DataBoundSetter
+    public void setPrune(boolean prune) {
+        this.prune = prune;
+    }
+
     @Override
     public BuildStepMonitor getRequiredMonitorService() {
         return BuildStepMonitor.BUILD;
@@ -208,8 +262,9 @@ public class CNDocumentUploader extends AbstractTeamForgeNotifier {
             this.logoff();
             return false;
         }
-        int numUploaded = this.uploadFiles(folder, build, listener);
-        build.addAction(this.createAction(numUploaded, folder));
+        Map<UploadResult, Integer> counts = this.uploadAll(folder, build, listener);
+        build.addAction(this.createAction(counts.get(UploadResult.UPLOADED), counts.get(UploadResult.UNCHANGED),
+                                          counts.get(UploadResult.DELETED), folder));
         try {
             this.cna.logoff();
         } catch (RemoteException re) {
@@ -219,12 +274,16 @@ public class CNDocumentUploader extends AbstractTeamForgeNotifier {
     }
 
     private Action createAction(int numUploaded, CTFDocumentFolder folder) {
+        return this.createAction(numUploaded, 0, 0, folder);
+    }
+
+    private Action createAction(int numUploaded, int numUnchanged, int numDeleted, CTFDocumentFolder folder) {
         String displaymsg = "Download from Digital.ai Documents";
         return new CnduResultAction(displaymsg, 
                                     IMAGE_URL + "CollabNetDocuments.png", 
                                     "console",
                                     folder.getURL(),
-                                    numUploaded);
+                                    numUploaded, numUnchanged, numDeleted);
     }
 
     /**
@@ -234,20 +293,40 @@ public class CNDocumentUploader extends AbstractTeamForgeNotifier {
      * @param build the current Jenkins build.
      * @return the number of files successfully uploaded.
      */
-    public int uploadFiles(CTFDocumentFolder folder, AbstractBuild<?, ?> build, BuildListener listener)
+    public int uploadFiles(final CTFDocumentFolder folder, final AbstractBuild<?, ?> build, BuildListener listener)
+            throws IOException, InterruptedException {
+        return this.uploadAll(folder, build, listener).get(UploadResult.UPLOADED);
+    }
+
+    /**
+     * Upload files matching the file patterns to the Document Service and, in sync mode,
+     * prune the documents whose file is gone.
+     *
+     * @return how many files ended up with each result.
+     */
+    private Map<UploadResult, Integer> uploadAll(final CTFDocumentFolder folder, final AbstractBuild<?, ?> build,
+                                                 BuildListener listener)
             throws IOException, InterruptedException {
-        int numUploaded = 0;
+        Map<UploadResult, Integer> counts = new EnumMap<UploadResult, Integer>(UploadResult.class);
+        for (UploadResult r : UploadResult.values()) {
+            counts.put(r, 0);
+        }
+        // pruning is only safe if every pattern could be searched
+        boolean complete = true;
         String path = this.getInterpreted(build, this.getUploadPath());
         this.logConsole("Uploading files to project '" + this.getProject() +
                  "', folder '" + path + "' on host '" + 
                  this.getCollabNetUrl() + "' as user '" + this.getUsername() 
                  + "'.");
+        // collect the files first, so that they can be uploaded in parallel
+        Map<String, FilePath> uploadFilePaths = new LinkedHashMap<String, FilePath>();
         for (FilePattern uninterp_fp : this.getFilePatterns()) {
             String file_pattern;
             try {
                 file_pattern = uninterp_fp.interpret(build,listener);
             } catch (IllegalArgumentException e) {
                 this.logConsole("File pattern " + uninterp_fp + " contained a bad env var.  Skipping.");
+                complete = false;
                 continue;
             }
             if (file_pattern.equals("")) {
@@ -255,26 +334,51 @@ public class CNDocumentUploader extends AbstractTeamForgeNotifier {
                 continue;
             }
 
-            FilePath[] filePaths = this.getFilePaths(build, file_pattern);
-            for (FilePath uploadFilePath : filePaths) {
-                CTFFile file = this.uploadFile(uploadFilePath);
-                if (file == null) {
-                    this.logConsole("Failed to upload " + uploadFilePath.getName() + ".");
-                    continue;
+            FilePath[] matches = this.getFilePaths(build, file_pattern);
+            if (matches == null) {
+                complete = false;
+                continue;
+            }
+            for (FilePath uploadFilePath : matches) {
+                // a later match would update the document of an earlier one, so only the last one counts
+                if (uploadFilePaths.remove(uploadFilePath.getName()) != null) {
+                    this.logConsole(uploadFilePath.getName() + " was matched more than once.  Uploading "
+                            + uploadFilePath.getRemote() + ".");
                 }
-                try {
-                    CTFDocument doc = this.updateOrCreateDoc(folder, file,
-                                                   uploadFilePath.getName(),
-                                                   CNDocumentUploader.
-                                                   getMimeType(uploadFilePath),
-                                                   build);
-                    this.logConsole("Uploaded " + uploadFilePath.getName() + " -> " + doc.getURL());
-                    numUploaded++;
-                } catch (IOException re) {
-                    logConsole("Upload file failed: " + re.getMessage());
-                    this.log("updateOrCreateDoc", re);
+                uploadFilePaths.put(uploadFilePath.getName(), uploadFilePath);
+            }
+        }
+        // look up the existing documents once rather than once per file
+        final Map<String, CTFDocument> existingDocs = getDocumentsByTitle(folder);
+        final DocumentManifest manifest = this.isSync() ? DocumentManifest.load(build.getParent()) : null;
+        List<CNUploadExecutor.Task<UploadResult>> tasks = new ArrayList<CNUploadExecutor.Task<UploadResult>>();
+        for (final FilePath uploadFilePath : uploadFilePaths.values()) {
+            tasks.add(new CNUploadExecutor.Task<UploadResult>() {
+                public UploadResult call(TaskListener listener) throws IOException, InterruptedException {
+                    return syncFile(listener, folder, existingDocs, manifest, uploadFilePath, build);
                 }
+            });
+        }
+        for (UploadResult r : CNUploadExecutor.runAll(tasks, listener)) {
+            r = r != null ? r : UploadResult.FAILED;
+            counts.put(r, counts.get(r) + 1);
+        }
+        if (manifest != null) {
+            if (this.isPrune()) {
+                if (complete) {
+                    counts.put(UploadResult.DELETED, this.prune(folder, existingDocs, manifest, uploadFilePaths));
+                } else {
+                    this.logConsole("Not all file patterns could be searched.  Not deleting any document.");
+                }
+            }
+            try {
+                manifest.save();
+            } catch (IOException ioe) {
+                this.logConsole("Could not save the document manifest: " + ioe.getMessage());
             }
+            this.logConsole("Uploaded " + counts.get(UploadResult.UPLOADED) + ", skipped "
+                    + counts.get(UploadResult.UNCHANGED) + " unchanged, deleted "
+                    + counts.get(UploadResult.DELETED) + " document(s).");
         }
         if (this.getIncludeBuildLog()) {
             CTFFile file = this.uploadBuildLog(build);
@@ -282,21 +386,137 @@ public class CNDocumentUploader extends AbstractTeamForgeNotifier {
                 this.logConsole("Failed to upload " + build.getLogFile().getName() + ".");
             } else {
                 try {
-                    CTFDocument docId = this.updateOrCreateDoc(folder, file,
+                    CTFDocument docId = this.updateOrCreateDoc(folder, existingDocs, file,
                                                    build.getLogFile().getName(),
                                                    CNDocumentUploader.
                                                    getMimeType(build.
                                                                getLogFile()),
                                                    build);
                     this.logConsole("Uploaded " + build.getLogFile().getName() + " -> " + docId.getURL());
-                    numUploaded++;
+                    counts.put(UploadResult.UPLOADED, counts.get(UploadResult.UPLOADED) + 1);
                 } catch (RemoteException re) {
                     logConsole("Upload log failed: " + re.getMessage(), re);
                     this.log("updateOrCreateDoc", re);
                 }
             }
         }
-        return numUploaded;
+        return counts;
+    }
+
+    /**
+     * Uploads one file as a document. In sync mode, a file that is the same as when its
+     * document was last uploaded is left alone: size, modification time and path are
+     * compared first, and the file is only read for its digest when they differ. The digest
+     * is computed where the file is, while it is uploaded if there is none to compare with.
+     *
+     * @param listener where to log, which is not the build log while uploads run in parallel
+     * @param manifest the files of earlier uploads if {@link #isSync()}, otherwise null
+     * @return what happened to the file.
+     */
+    private UploadResult syncFile(TaskListener listener, CTFDocumentFolder folder,
+                                  Map<String, CTFDocument> existingDocs, DocumentManifest manifest,
+                                  FilePath uploadFilePath, AbstractBuild<?, ?> build)
+            throws IOException, InterruptedException {
+        String name = uploadFilePath.getName();
+        String path = uploadFilePath.getRemote();
+        long size = 0;
+        long lastModified = 0;
+        DocumentManifest.Entry recorded = null;
+        if (manifest != null) {
+            recorded = manifest.get(folder, name, existingDocs.get(name));
+            size = uploadFilePath.length();
+            lastModified = uploadFilePath.lastModified();
+            if (recorded != null && recorded.matches(path, size, lastModified)) {
+                logConsole(listener, name + " did not change since it was uploaded.  Skipping.");
+                return UploadResult.UNCHANGED;
+            }
+        }
+        CNFileUploader.Result upload = uploadFile(listener, uploadFilePath, manifest != null,
+                recorded == null ? null : recorded.sha256);
+        if (upload == null) {
+            logConsole(listener, "Failed to upload " + name + ".");
+            return UploadResult.FAILED;
+        }
+        String digest = upload.getSha256();
+        if (upload.isUnchanged()) {
+            // only a recorded digest can make a file unchanged, so there is always an entry
+            if (recorded != null) {
+                manifest.put(folder, name,
+                        new DocumentManifest.Entry(path, size, lastModified, digest, recorded.documentId));
+            }
+            logConsole(listener, name + " did not change since it was uploaded.  Skipping.");
+            return UploadResult.UNCHANGED;
+        }
+        CTFFile file = new CTFFile(cna, upload.getFileId());
+        try {
+            CTFDocument doc = updateOrCreateDoc(folder, existingDocs, file, name,
+                                           CNDocumentUploader.getMimeType(uploadFilePath),
+                                           build);
+            logConsole(listener, "Uploaded " + name + " -> " + doc.getURL());
+            if (manifest != null) {
+                manifest.put(folder, name,
+                        new DocumentManifest.Entry(path, size, lastModified, digest, doc.getId()));
+            }
+            return UploadResult.UPLOADED;
+        } catch (IOException re) {
+            logConsole(listener, "Upload file failed: " + re.getMessage());
+            log("updateOrCreateDoc", re);
+            return UploadResult.FAILED;
+        }
+    }
+
+    /**
+     * Deletes the documents this job uploaded to the folder whose file no longer matches
+     * the file patterns. Documents the job did not upload are never touched.
+     *
+     * @param uploadFilePaths the files that matched in this build, by name
+     * @return the number of documents deleted.
+     */
+    private int prune(CTFDocumentFolder folder, Map<String, CTFDocument> existingDocs,
+                      DocumentManifest manifest, Map<String, FilePath> uploadFilePaths) {
+        int numDeleted = 0;
+        for (Map.Entry<String, String> e : manifest.getDocumentIds(folder).entrySet()) {
+            String name = e.getKey();
+            if (uploadFilePaths.containsKey(name)) {
+                continue;
+            }
+            CTFDocument doc = existingDocs.get(name);
+            if (doc != null && doc.getId().equals(e.getValue())) {
+                try {
+                    doc.delete();
+                    existingDocs.remove(name);
+                    this.logConsole("Deleted " + name + ", whose file is gone from the workspace.");
+                    numDeleted++;
+                } catch (IOException re) {
+                    this.logConsole("Could not delete " + name + ": " + re.getMessage());
+                    this.log("delete", re);
+                    // keep the entry to try again next time
+                    continue;
+                }
+            }
+            manifest.remove(folder, name);
+        }
+        return numDeleted;
+    }
+
+    /**
+     * Lists the documents of the folder once, for {@link #updateOrCreateDoc}.
+     *
+     * @return the documents by title; the first one wins if titles repeat.
+     */
+    private Map<String, CTFDocument> getDocumentsByTitle(CTFDocumentFolder folder) {
+        Map<String, CTFDocument> docs = new ConcurrentHashMap<String, CTFDocument>();
+        try {
+            for (CTFDocument doc : folder.getDocuments()) {
+                if (doc != null && doc.getTitle() != null && !docs.containsKey(doc.getTitle())) {
+                    docs.put(doc.getTitle(), doc);
+                }
+            }
+        } catch (IOException re) {
+            this.logConsole("Could not list the documents of the folder: " + re.getMessage());
+            this.log("getDocuments", re);
+        }
+        return docs;
     }
 
     /**
@@ -305,7 +525,7 @@ public class CNDocumentUploader extends AbstractTeamForgeNotifier {
      * @param build The Jenkins build.
      * @param pattern An ant-style pattern.
      * @return an array of FilePaths which match this pattern in the 
-     *         Jenkins workspace.
+     *         Jenkins workspace, or null if the workspace could not be searched.
      */
     private FilePath[] getFilePaths(AbstractBuild<?, ?> build, 
                                     String pattern) {
@@ -327,9 +547,11 @@ public class CNDocumentUploader extends AbstractTeamForgeNotifier {
         } catch (IOException ioe) {
             this.logConsole("Could not list workspace due to IOException: "
                      + ioe.getMessage());
+            return null;
         } catch (InterruptedException ie) {
             this.logConsole("Could not list workspace due to " +
                      "InterruptedException: " + ie.getMessage());
+            return null;
         }
         logEntry += " : found " + uploadFilePaths.length + " entry(ies)";
         logConsole(logEntry);
@@ -343,6 +565,8 @@ public class CNDocumentUploader extends AbstractTeamForgeNotifier {
      *
      * @param folder of the folder where the document will be
      *                 created/updated. 
+     * @param existingDocs the documents of the folder by title, updated
+     *                 with the document if it is created.
      * @param file of the already upload build log.
      * @param fileName name of the uploaded file.
      * @param mimeType of the uploaded file.
@@ -350,19 +574,23 @@ public class CNDocumentUploader extends AbstractTeamForgeNotifier {
      * @return the docId associated with the new/updated document.
      * @throws RemoteException
      */
-    private CTFDocument updateOrCreateDoc(CTFDocumentFolder folder, CTFFile file,
-                                     String fileName, String mimeType, 
+    private CTFDocument updateOrCreateDoc(CTFDocumentFolder folder, Map<String, CTFDocument> existingDocs,
+                                     CTFFile file, String fileName, String mimeType,
                                      AbstractBuild<?, ?> build) 
         throws IOException, InterruptedException {
-        CTFDocument doc = folder.getDocuments().byTitle(fileName);
+        CTFDocument doc = existingDocs.get(fileName);
         if (doc != null) {
             doc.update(file);
             return doc;
         } else {
-            return folder.createDocument(fileName,
+            doc = folder.createDocument(fileName,
                                this.getInterpreted(build, this.getDescription()),
                                "", "Final", false, fileName,
                                mimeType, file, null, null);
+            if (doc != null) {
+                existingDocs.put(fileName, doc);
+            }
+            return doc;
         }
     }
 
@@ -429,66 +657,36 @@ public class CNDocumentUploader extends AbstractTeamForgeNotifier {
     }
 
     /**
-     * Upload the build log to the collabnet server.
+     * Upload a workspace file to the collabnet server.
      *
+     * @param listener where to log, which is not the build log while uploads run in parallel
      * @param filePath the path of file to upload
-     * @return the id associated with the file upload.
+     * @param digest whether the digest of the file is wanted
+     * @param recordedDigest the digest of the last upload of the file; if it did not change, it
+     *                       is not uploaded again
+     * @return the id associated with the file upload, and the digest.
      */
-    private CTFFile uploadFile(FilePath filePath) {
+    private CNFileUploader.Result uploadFile(TaskListener listener, FilePath filePath, boolean digest,
+                                             String recordedDigest) throws InterruptedException {
         if (this.cna == null) {
-            this.logConsole("Cannot call uploadFile, not logged in!");
+            this.logConsole(listener, "Cannot call uploadFile, not logged in!");
             return null;
         }
 
         try {
             // must upload to same session so temp file will be available later for creation of document
-            String id = filePath.act(new RemoteFileUploader(getCollabNetUrl(), getUsername(), cna.getSessionId()));
-            return new CTFFile(cna,id);
+            CNFileUploader.Result upload = filePath.act(new CNFileUploader(getCollabNetUrl(), getUsername(),
+                    cna.getSessionId(), digest, recordedDigest));
+            upload.printLog(listener);
+            return upload;
         } catch (RemoteException re) {
-            this.logConsole("upload file failed", re);
+            this.logConsole(listener, "upload file failed", re);
         } catch (IOException ioe) {
-            this.logConsole("Could not upload file due to IOException: " + ioe.getMessage(), ioe);
-        } catch (InterruptedException ie) {
-            this.logConsole("Could not upload file due to InterruptedException: " + ie.getMessage());
+            this.logConsole(listener, "Could not upload file due to IOException: " + ioe.getMessage(), ioe);
         }
         return null;
     }
 
-    /**
-     * Private class that can perform upload function.
-     */
-    private static class RemoteFileUploader implements FileCallable<String> {
-
-        private String mUrl;
-        private String mUsername;
-        private String mSessionId;
-
-        /**
-         * Constructor. Needs to have old sessionId, since the uploaded file is only available to the same session.
-         * @param url collabnet url
-         * @param username collabnet username
-         * @param sessionId collabnet sessionId
-         */
-        public RemoteFileUploader(String url, String username, String sessionId) {
-            mUrl = url;
-            mUsername = username;
-            mSessionId = sessionId;
-        }
-
-        /**
-         * @see FileCallable#invoke(File, VirtualChannel)
-         */
-        public String invoke(File f, VirtualChannel channel) throws IOException {
-            CollabNetApp cnApp = CNHudsonUtil.recreateCollabNetApp(mUrl, mUsername, mSessionId);
-            return cnApp.upload(f).getId();
-        }
-
-        @Override
-        public void checkRoles(RoleChecker arg0) throws SecurityException {
-            // TODO Auto-generated method stub
-        }
-    }
-
     /**
      * Log out of the collabnet server.   Invalidates the cna object.
      */
@@ -11,9 +11,20 @@ public class CnduResultAction implements Action {
     private String resultUrl;
     private String cnfrUrl;
     private int numFiles = 0;
+    private int numUnchanged = 0;
+    private int numDeleted = 0;
     
     public CnduResultAction(String display, String icon, String resultUrl,
 				 String cnfrUrl, int numFiles) {
+	this(display, icon, resultUrl, cnfrUrl, numFiles, 0, 0);
+    }
+
+    /**
+     * @param numUnchanged number of files skipped because they did not change since their last upload.
+     * @param numDeleted number of documents deleted because their file is gone.
+     */
+    public CnduResultAction(String display, String icon, String resultUrl,
+				 String cnfrUrl, int numFiles, int numUnchanged, int numDeleted) {
 	this.display = display;
 	if (icon != null) {
 	    this.icon = icon;
@@ -23,6 +34,8 @@ public class CnduResultAction implements Action {
 	this.resultUrl = resultUrl;
 	this.cnfrUrl = cnfrUrl;
 	this.numFiles = numFiles;
+	this.numUnchanged = numUnchanged;
+	this.numDeleted = numDeleted;
     }
     
     public String getDisplayName() {
@@ -59,7 +72,15 @@ public class CnduResultAction implements Action {
         return this.numFiles;
     }
 
+    public int getNumUnchanged() {
+        return this.numUnchanged;
+    }
+
+    public int getNumDeleted() {
+        return this.numDeleted;
+    }
+
     public boolean isSuccess() {
-	return (this.getNumFiles() > 0);
+	return (this.getNumFiles() > 0 || this.getNumUnchanged() > 0 || this.getNumDeleted() > 0);
     }
 }
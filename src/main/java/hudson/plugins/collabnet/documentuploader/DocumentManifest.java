@@ -0,0 +1,145 @@
+package hudson.plugins.collabnet.documentuploader;
+
+import com.collabnet.ce.webservices.CTFDocument;
+import com.collabnet.ce.webservices.CTFDocumentFolder;
+import hudson.model.Job;
+import hudson.plugins.collabnet.util.CNJobRecords;
+import org.json.simple.JSONObject;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The workspace files a job synchronized to Digital.ai Documents, kept in the job directory:
+ * for each document, the path, size, modification time and SHA-256 digest of the file it
+ * was last uploaded from.
+ *
+ * <p>
+ * An entry only counts while its document is still in the folder: a document deleted or
+ * replaced on TeamForge by someone else is uploaded again.
+ *
+ * @see CNDocumentUploader#isSync()
+ */
+class DocumentManifest extends CNJobRecords<DocumentManifest.Entry> {
+    private static final String FILE_NAME = "collabnet-document-manifest.json";
+
+    /**
+     * What is known of the file a document was uploaded from.
+     */
+    static final class Entry {
+        final String path;
+        final long size;
+        final long lastModified;
+        final String sha256;
+        final String documentId;
+
+        Entry(String path, long size, long lastModified, String sha256, String documentId) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.sha256 = sha256;
+            this.documentId = documentId;
+        }
+
+        /**
+         * @return true if the file looks the same without reading it.
+         */
+        boolean matches(String path, long size, long lastModified) {
+            return this.path.equals(path) && this.size == size && this.lastModified == lastModified;
+        }
+    }
+
+    private DocumentManifest(File file) {
+        super(file);
+    }
+
+    /**
+     * Reads the manifest of a job. A missing or unreadable file gives an empty manifest,
+     * so everything is uploaded again.
+     */
+    static DocumentManifest load(Job<?, ?> job) {
+        return load(new File(job.getRootDir(), FILE_NAME));
+    }
+
+    /**
+     * Reads the manifest kept in a file, see {@link #load(Job)}.
+     */
+    static DocumentManifest load(File file) {
+        DocumentManifest m = new DocumentManifest(file);
+        m.load();
+        return m;
+    }
+
+    @Override
+    protected Entry fromJSON(JSONObject o) {
+        Object path = o.get("path");
+        Object size = o.get("size");
+        Object mtime = o.get("mtime");
+        Object sha256 = o.get("sha256");
+        Object documentId = o.get("documentId");
+        if (!(path instanceof String) || !(size instanceof Number) || !(mtime instanceof Number)
+                || !(sha256 instanceof String) || !(documentId instanceof String)) {
+            return null;
+        }
+        return new Entry((String) path, ((Number) size).longValue(), ((Number) mtime).longValue(),
+                (String) sha256, (String) documentId);
+    }
+
+    @Override
+    protected JSONObject toJSON(Entry e) {
+        JSONObject o = new JSONObject();
+        o.put("path", e.path);
+        o.put("size", e.size);
+        o.put("mtime", e.lastModified);
+        o.put("sha256", e.sha256);
+        o.put("documentId", e.documentId);
+        return o;
+    }
+
+    @Override
+    protected String idOf(Entry e) {
+        return e.documentId;
+    }
+
+    /**
+     * @param doc the document of that name now in the folder, if any
+     * @return what was recorded when the document was last uploaded, or null.
+     */
+    Entry get(CTFDocumentFolder folder, String name, CTFDocument doc) {
+        Entry e = getRecord(key(folder, name));
+        if (e == null || doc == null || !doc.getId().equals(e.documentId)) {
+            return null;
+        }
+        return e;
+    }
+
+    /**
+     * Records the file a document was just uploaded from.
+     */
+    void put(CTFDocumentFolder folder, String name, Entry e) {
+        putRecord(key(folder, name), e);
+    }
+
+    void remove(CTFDocumentFolder folder, String name) {
+        removeRecord(key(folder, name));
+    }
+
+    /**
+     * @return the ids of the documents recorded in the folder, by name.
+     */
+    Map<String, String> getDocumentIds(CTFDocumentFolder folder) {
+        String prefix = folder.getId() + "/";
+        Map<String, String> ids = new HashMap<String, String>();
+        for (Map.Entry<String, Entry> e : getRecords().entrySet()) {
+            if (e.getKey().startsWith(prefix)) {
+                ids.put(e.getKey().substring(prefix.length()), e.getValue().documentId);
+            }
+        }
+        return ids;
+    }
+
+    private static String key(CTFDocumentFolder folder, String name) {
+        return folder.getId() + "/" + name;
+    }
+}
@@ -7,28 +7,35 @@ import com.collabnet.ce.webservices.CTFReleaseFile;
 import com.collabnet.ce.webservices.CollabNetApp;
 import hudson.Extension;
 import hudson.FilePath;
-import hudson.FilePath.FileCallable;
 import hudson.Launcher;
 import hudson.model.AbstractBuild;
 import hudson.model.BuildListener;
 import hudson.model.Result;
+import hudson.model.TaskListener;
 import hudson.plugins.collabnet.AbstractTeamForgeNotifier;
 import hudson.plugins.collabnet.ConnectionFactory;
 import hudson.plugins.collabnet.documentuploader.FilePattern;
+import hudson.plugins.collabnet.util.CNFileUploader;
 import hudson.plugins.collabnet.util.CNFormFieldValidator;
 import hudson.plugins.collabnet.util.CNHudsonUtil;
+import hudson.plugins.collabnet.util.CNUploadExecutor;
 import hudson.plugins.collabnet.util.ComboBoxUpdater;
-import hudson.remoting.VirtualChannel;
 import hudson.tasks.BuildStepMonitor;
 import hudson.util.ComboBoxModel;
 import hudson.util.FormValidation;
 import io.jenkins.cli.shaded.org.apache.commons.io.FilenameUtils;
-import org.jenkinsci.remoting.RoleChecker;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
-import java.io.File;
 import java.io.IOException;
-import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 /**
  * Jenkins plugin to update files from the Jenkins workspace
  * to the CollabNet File Release System.
@@ -49,6 +56,12 @@ public class CNFileRelease extends AbstractTeamForgeNotifier {
     private boolean overwrite;
     private FilePattern[] file_patterns;
     private String description = "";
+    private boolean skipUnchanged;
+
+    /**
+     * What happened to one file.
+     */
+    private enum UploadResult { UPLOADED, UNCHANGED, SKIPPED, FAILED }
     /**
      * Creates a new CNFileRelease object.
      *
@@ -87,20 +100,28 @@ public class CNFileRelease extends AbstractTeamForgeNotifier {
      * @param message A string to print to the console.
      */
     private void logConsole(String message) {
-        if (this.listener != null) {
+        this.logConsole(this.listener, message);
+    }
+
+    /**
+     * Log a message to the given listener, for uploads running in parallel.
+     */
+    private void logConsole(TaskListener listener, String message) {
+        if (listener != null) {
             message = "Digital.ai FileRelease: " + message;
-            this.listener.getLogger().println(message);
+            listener.getLogger().println(message);
         }
     }
 
     /**
-     * Convenience method to log RemoteExceptions.
+     * Convenience method to log exceptions.
      *
+     * @param listener where to log.
      * @param methodName in progress on when this exception occurred.
-     * @param re The RemoteException that was thrown.
+     * @param re The exception that was thrown.
      */
-    private void log(String methodName, RemoteException re) {
-        this.logConsole(methodName + " failed due to " + re.getClass().getName() +
+    private void log(TaskListener listener, String methodName, IOException re) {
+        this.logConsole(listener, methodName + " failed due to " + re.getClass().getName() +
                 ": " + re.getMessage());
     }
     /**
@@ -121,6 +142,18 @@ public class CNFileRelease extends AbstractTeamForgeNotifier {
     public boolean isOverwrite() {
         return this.overwrite;
     }
+    /**
+     * @return whether files whose content did not change since they were last uploaded are left alone.
+     */
+    public boolean isSkipUnchanged() {
+        return this.skipUnchanged;
+    }
+
+    @DataBoundSetter
+    public void setSkipUnchanged(boolean skipUnchanged) {
+        this.skipUnchanged = skipUnchanged;
+    }
+
     /**
      * @return the ant-style file patterns.
      */
@@ -167,8 +200,8 @@ public class CNFileRelease extends AbstractTeamForgeNotifier {
             return false;
         }
         // now that we have the releaseId, we can do the upload.
-        int numUploaded = this.uploadFiles(build, release);
-        build.addAction(this.createAction(numUploaded, release));
+        Map<UploadResult, Integer> counts = this.uploadAll(build, release);
+        build.addAction(this.createAction(counts.get(UploadResult.UPLOADED), counts.get(UploadResult.UNCHANGED), release));
         this.logoff();
         return true;
     }
@@ -179,12 +212,23 @@ public class CNFileRelease extends AbstractTeamForgeNotifier {
      * @return CnfrResultAction.
      */
     public CnfrResultAction createAction(int numUploaded, CTFRelease release) {
+        return createAction(numUploaded, 0, release);
+    }
+
+    /**
+     * Get the ResultAction for this build.
+     *
+     * @param numUploaded count
+     * @param numUnchanged number of files skipped because they did not change
+     * @return CnfrResultAction.
+     */
+    public CnfrResultAction createAction(int numUploaded, int numUnchanged, CTFRelease release) {
         String displaymsg = "Download from Digital.ai File Release System";
         return new CnfrResultAction(displaymsg,
                 IMAGE_URL + "CollabNetFrs.png",
                 "console",
                 release.getUrl(),
-                numUploaded);
+                numUploaded, numUnchanged);
     }
     /**
      * Upload the files which match the file patterns to the given
@@ -197,12 +241,24 @@ public class CNFileRelease extends AbstractTeamForgeNotifier {
      * @throws InterruptedException If interrupted when upload files
      */
     public int uploadFiles(AbstractBuild<?, ?> build, CTFRelease release) throws IOException, InterruptedException {
-        int numUploaded = 0;
+        return this.uploadAll(build, release).get(UploadResult.UPLOADED);
+    }
+
+    /**
+     * Upload the files which match the file patterns to the given release.
+     *
+     * @return how many files ended up with each result.
+     * @throws IOException if the files already in the release cannot be listed, since
+     *         they could not be skipped or replaced
+     */
+    private Map<UploadResult, Integer> uploadAll(AbstractBuild<?, ?> build, final CTFRelease release)
+            throws IOException, InterruptedException {
         this.logConsole("Uploading file to project '" + this.getProject() +
                 "', package '" + this.getPkg() + "', release '" +
                 this.getRelease() + "' on host '" + this.getCollabNetUrl() +
                 "' as user '" + this.getUsername() + "'.");
-        // upload files
+        // collect the files first, so that they can be uploaded in parallel
+        Map<String, FilePath> uploadFilePaths = new LinkedHashMap<String, FilePath>();
         for (FilePattern uninterp_fp : this.getFilePatterns()) {
             String file_pattern;
             try {
@@ -216,85 +272,126 @@ public class CNFileRelease extends AbstractTeamForgeNotifier {
                 // skip empty fields
                 continue;
             }
-            FilePath[] filePaths = this.getFilePaths(build, file_pattern);
-            for (FilePath uploadFilePath : filePaths) {
-                // check if a file already exists
-                CTFReleaseFile file = null;
-                try {
-                    file = release.getFileByTitle(uploadFilePath.getName());
-                } catch (RemoteException re) {
-                    this.log("find file", re);
+            for (FilePath uploadFilePath : this.getFilePaths(build, file_pattern)) {
+                String name = uploadFilePath.getName();
+                if (uploadFilePaths.containsKey(name) && !this.isOverwrite()) {
+                    // the first one is uploaded, the others would find it already there
+                    this.logConsole("File " + name + " was matched more than once and overwrite "
+                            + "is set to false.  Skipping " + uploadFilePath.getRemote() + ".");
+                    continue;
                 }
-                if (file != null) {
-                    if (this.isOverwrite()) {
-                        // delete existing file
-                        try {
-                            file.delete();
-                            this.logConsole("Deleted previously uploaded file: " +
-                                    uploadFilePath.getName());
-                        } catch (RemoteException re) {
-                            this.log("delete file", re);
-                        }
-                    } else {
-                        this.logConsole("File " + uploadFilePath.getName() +
-                                " already exists in the file release " +
-                                "system and overwrite is set to false.  " +
-                                "Skipping.");
-                        continue;
+                uploadFilePaths.put(name, uploadFilePath);
+            }
+        }
+        // look up the existing files once rather than once per file
+        final Map<String, CTFReleaseFile> existingFiles = new HashMap<String, CTFReleaseFile>();
+        final ReleaseFileDigests digests = this.isSkipUnchanged() ? ReleaseFileDigests.load(build.getParent()) : null;
+        if (!uploadFilePaths.isEmpty()) {
+            try {
+                Set<String> fileIds = new HashSet<String>();
+                for (CTFReleaseFile file : release.getFiles()) {
+                    if (file != null && !existingFiles.containsKey(file.getTitle())) {
+                        existingFiles.put(file.getTitle(), file);
+                    }
+                    if (file != null) {
+                        fileIds.add(file.getId());
                     }
                 }
-                try {
-                    CTFFile f = new CTFFile(cna,uploadFilePath.act(
-                            new RemoteFrsFileUploader(getCollabNetUrl(), getUsername(), cna.getSessionId())
-                    ));
-                    CTFReleaseFile rf = release.addFile(uploadFilePath.getName(), getMimeType(uploadFilePath), f);
-                    this.logConsole("Uploaded file " + uploadFilePath.getName() + " -> " + rf.getURL());
-                    numUploaded++;
-                } catch (RemoteException re) {
-                    this.log("upload file", re);
-                } catch (IOException ioe) {
-                    this.logConsole("Could not upload file due to IOException: "
-                            + ioe.toString());
-                    ioe.printStackTrace(this.listener.error("error"));
-                } catch (InterruptedException ie) {
-                    this.logConsole("Could not upload file due to " +
-                            "InterruptedException: " + ie.getMessage());
+                if (digests != null) {
+                    // the files deleted from the release since
+                    digests.retain(release, fileIds);
                 }
-
+            } catch (IOException ioe) {
+                // without the existing files, every file would be uploaded again as a new one
+                throw new IOException("Could not list the files of release '" + this.getRelease() + "': "
+                        + ioe.getMessage(), ioe);
+            }
+        }
+        List<CNUploadExecutor.Task<UploadResult>> tasks = new ArrayList<CNUploadExecutor.Task<UploadResult>>();
+        for (final FilePath uploadFilePath : uploadFilePaths.values()) {
+            tasks.add(new CNUploadExecutor.Task<UploadResult>() {
+                public UploadResult call(TaskListener listener) throws IOException, InterruptedException {
+                    return uploadFile(listener, release, uploadFilePath, existingFiles.get(uploadFilePath.getName()),
+                            digests);
+                }
+            });
+        }
+        Map<UploadResult, Integer> counts = new EnumMap<UploadResult, Integer>(UploadResult.class);
+        for (UploadResult r : UploadResult.values()) {
+            counts.put(r, 0);
+        }
+        for (UploadResult r : CNUploadExecutor.runAll(tasks, this.listener)) {
+            r = r != null ? r : UploadResult.FAILED;
+            counts.put(r, counts.get(r) + 1);
+        }
+        if (digests != null) {
+            try {
+                digests.save();
+            } catch (IOException ioe) {
+                this.logConsole("Could not save the digests of the uploaded files: " + ioe.getMessage());
+            }
+            if (counts.get(UploadResult.UNCHANGED) > 0) {
+                this.logConsole("Skipped " + counts.get(UploadResult.UNCHANGED) + " unchanged file(s).");
             }
         }
-        return numUploaded;
+        return counts;
     }
+
     /**
-     * Private class that can perform upload function.
+     * Uploads one file to the release, replacing or keeping the file of the same name
+     * depending on {@link #isOverwrite()}.
+     *
+     * @param listener where to log, which is not the build log while uploads run in parallel
+     * @param file the file of the same name already in the release, if any
+     * @param digests the digests of earlier uploads if {@link #isSkipUnchanged()}, otherwise null
+     * @return what happened to the file.
      */
-    private static class RemoteFrsFileUploader implements FileCallable<String> {
-        private String mServerUrl;
-        private String mUsername;
-        private String mSessionId;
-        /**
-         * Constructor. Needs to have old sessionId, since the uploaded file is only available to the same session.
-         * @param serverUrl collabnet serverUrl
-         * @param username collabnet username
-         * @param sessionId collabnet sessionId
-         */
-        public RemoteFrsFileUploader(String serverUrl, String username, String sessionId) {
-            mServerUrl = serverUrl;
-            mUsername = username;
-            mSessionId = sessionId;
+    private UploadResult uploadFile(TaskListener listener, CTFRelease release, FilePath uploadFilePath,
+                                    CTFReleaseFile file, ReleaseFileDigests digests)
+            throws IOException, InterruptedException {
+        if (file != null && !this.isOverwrite()) {
+            this.logConsole(listener, "File " + uploadFilePath.getName() +
+                    " already exists in the file release " +
+                    "system and overwrite is set to false.  " +
+                    "Skipping.");
+            return UploadResult.SKIPPED;
         }
-        /**
-         * @see FileCallable#invoke(File, VirtualChannel)
-         */
-        public String invoke(File f, VirtualChannel channel) throws IOException {
-            CollabNetApp cnApp = CNHudsonUtil.recreateCollabNetApp(mServerUrl, mUsername, mSessionId);
-            return cnApp.upload(f).getId();
-        }
-        @Override
-        public void checkRoles(RoleChecker arg0) throws SecurityException {
-            // TODO Auto-generated method stub
+        try {
+            // hashed where the file is, while it is uploaded; only the id and the digest come back
+            CNFileUploader.Result upload = uploadFilePath.act(new CNFileUploader(getCollabNetUrl(), getUsername(),
+                    cna.getSessionId(), digests != null,
+                    digests != null && file != null ? digests.get(release, file) : null));
+            upload.printLog(listener);
+            if (upload.isUnchanged()) {
+                this.logConsole(listener, "File " + uploadFilePath.getName() +
+                        " did not change since it was uploaded.  Skipping.");
+                return UploadResult.UNCHANGED;
+            }
+            if (file != null) {
+                // delete existing file
+                try {
+                    file.delete();
+                    this.logConsole(listener, "Deleted previously uploaded file: " +
+                            uploadFilePath.getName());
+                } catch (IOException re) {
+                    this.log(listener, "delete file", re);
+                }
+            }
+            CTFFile f = new CTFFile(cna, upload.getFileId());
+            CTFReleaseFile rf = release.addFile(uploadFilePath.getName(), getMimeType(uploadFilePath), f);
+            this.logConsole(listener, "Uploaded file " + uploadFilePath.getName() + " -> " + rf.getURL());
+            if (digests != null && rf != null) {
+                digests.put(release, rf, upload.getSha256());
+            }
+            return UploadResult.UPLOADED;
+        } catch (IOException ioe) {
+            this.logConsole(listener, "Could not upload file due to IOException: "
+                    + ioe.toString());
+            ioe.printStackTrace(listener.error("error"));
         }
+        return UploadResult.FAILED;
     }
+
     /**
      * Return the filepaths in the workspace which match the pattern.
      *
@@ -11,9 +11,18 @@ public class CnfrResultAction implements Action {
     private String resultUrl;
     private String cnfrUrl;
     private int numFiles = 0;
+    private int numUnchanged = 0;
     
     public CnfrResultAction(String display, String icon, String resultUrl,
 				 String cnfrUrl, int numFiles) {
+	this(display, icon, resultUrl, cnfrUrl, numFiles, 0);
+    }
+
+    /**
+     * @param numUnchanged number of files skipped because they did not change since their last upload.
+     */
+    public CnfrResultAction(String display, String icon, String resultUrl,
+				 String cnfrUrl, int numFiles, int numUnchanged) {
 	this.display = display;
 	if (icon != null) {
 	    this.icon = icon;
@@ -23,6 +32,7 @@ public class CnfrResultAction implements Action {
 	this.resultUrl = resultUrl;
 	this.cnfrUrl = cnfrUrl;
 	this.numFiles = numFiles;
+	this.numUnchanged = numUnchanged;
     }
     
     public String getDisplayName() {
@@ -59,7 +69,11 @@ public class CnfrResultAction implements Action {
         return this.numFiles;
     }
 
+    public int getNumUnchanged() {
+        return this.numUnchanged;
+    }
+
     public boolean isSuccess() {
-	return (this.getNumFiles() > 0);
+	return (this.getNumFiles() > 0 || this.getNumUnchanged() > 0);
     }
 }
@@ -0,0 +1,115 @@
+package hudson.plugins.collabnet.filerelease;
+
+import com.collabnet.ce.webservices.CTFRelease;
+import com.collabnet.ce.webservices.CTFReleaseFile;
+import hudson.model.Job;
+import hudson.plugins.collabnet.util.CNJobRecords;
+import org.json.simple.JSONObject;
+
+import java.io.File;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * SHA-256 digests of the files a job uploaded to the File Release System, kept in the job
+ * directory, so that {@link CNFileRelease} can tell whether a file changed since its last upload.
+ *
+ * <p>
+ * A digest only counts while the release file it was recorded for is still there: a file
+ * replaced on TeamForge by someone else gets a new id, and is uploaded again.
+ */
+class ReleaseFileDigests extends CNJobRecords<ReleaseFileDigests.Digest> {
+    private static final String FILE_NAME = "collabnet-release-digests.json";
+
+    /**
+     * The digest of a file, and the release file it was uploaded as.
+     */
+    static final class Digest {
+        final String fileId;
+        final String sha256;
+
+        Digest(String fileId, String sha256) {
+            this.fileId = fileId;
+            this.sha256 = sha256;
+        }
+    }
+
+    private ReleaseFileDigests(File file) {
+        super(file);
+    }
+
+    /**
+     * Reads the digests of a job. A missing or unreadable file gives no digests.
+     */
+    static ReleaseFileDigests load(Job<?, ?> job) {
+        return load(new File(job.getRootDir(), FILE_NAME));
+    }
+
+    /**
+     * Reads the digests kept in a file, see {@link #load(Job)}.
+     */
+    static ReleaseFileDigests load(File file) {
+        ReleaseFileDigests d = new ReleaseFileDigests(file);
+        d.load();
+        return d;
+    }
+
+    @Override
+    protected Digest fromJSON(JSONObject o) {
+        Object fileId = o.get("fileId");
+        Object sha256 = o.get("sha256");
+        if (!(fileId instanceof String) || !(sha256 instanceof String)) {
+            return null;
+        }
+        return new Digest((String) fileId, (String) sha256);
+    }
+
+    @Override
+    protected JSONObject toJSON(Digest d) {
+        JSONObject o = new JSONObject();
+        o.put("fileId", d.fileId);
+        o.put("sha256", d.sha256);
+        return o;
+    }
+
+    @Override
+    protected String idOf(Digest d) {
+        return d.fileId;
+    }
+
+    /**
+     * @return the digest recorded when this release file was uploaded, or null.
+     */
+    String get(CTFRelease release, CTFReleaseFile releaseFile) {
+        Digest d = getRecord(key(release, releaseFile.getTitle()));
+        if (d == null || !releaseFile.getId().equals(d.fileId)) {
+            return null;
+        }
+        return d.sha256;
+    }
+
+    /**
+     * Records the digest of a file just uploaded.
+     */
+    void put(CTFRelease release, CTFReleaseFile releaseFile, String digest) {
+        putRecord(key(release, releaseFile.getTitle()), new Digest(releaseFile.getId(), digest));
+    }
+
+    /**
+     * Forgets the digests of the files no longer in the release.
+     *
+     * @param fileIds the ids of every file now in the release
+     */
+    void retain(CTFRelease release, Set<String> fileIds) {
+        String prefix = release.getId() + "/";
+        for (Map.Entry<String, Digest> e : getRecords().entrySet()) {
+            if (e.getKey().startsWith(prefix) && !fileIds.contains(e.getValue().fileId)) {
+                removeRecord(e.getKey());
+            }
+        }
+    }
+
+    private static String key(CTFRelease release, String title) {
+        return release.getId() + "/" + title;
+    }
+}
@@ -3,7 +3,7 @@ package hudson.plugins.collabnet.orchestrate;
 import hudson.model.Run;
 import hudson.model.TaskListener;
 import hudson.plugins.collabnet.orchestrate.BuildNotifier.OptionalWebhook;
-import hudson.plugins.collabnet.util.CNFormFieldValidator;
+import hudson.plugins.collabnet.util.CNHttpTransport;
 import hudson.plugins.collabnet.util.Helper;
 import net.sf.json.JSONObject;
 import org.apache.http.client.methods.CloseableHttpResponse;
@@ -72,11 +72,10 @@ public class PushNotification {
     }
 
     private int send(String webhookUrl, String token, String buildData, TaskListener listener) throws IOException {
-        CloseableHttpClient client = null;
         CloseableHttpResponse response = null;
         int status = 0;
         try {
-            client = CNFormFieldValidator.getHttpClient();
+            CloseableHttpClient client = CNHttpTransport.getHttpClient();
             HttpPost httpPost = new HttpPost(webhookUrl);
             StringEntity entity = new StringEntity(buildData);
             httpPost.setEntity(entity);
@@ -94,9 +93,6 @@ public class PushNotification {
             if(response != null) {
                 response.close();
             }
-            if(client != null) {
-                client.close();
-            }
         }
         return status;
     }
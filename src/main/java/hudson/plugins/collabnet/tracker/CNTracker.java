@@ -29,9 +29,6 @@ import org.kohsuke.stapler.QueryParameter;
 
 import java.io.IOException;
 import java.rmi.RemoteException;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.List;
 import java.util.logging.Logger;
 
 import static hudson.model.Result.SUCCESS;
@@ -302,6 +299,9 @@ public class CNTracker extends AbstractTeamForgeNotifier {
                 }
             }
             return true;
+        } catch (CollabNetApp.CollabNetAppException e) {
+            // a later page of a lazily fetched list failed
+            throw e.toIOException();
         } finally {
             logoff();
         }
@@ -329,14 +329,14 @@ public class CNTracker extends AbstractTeamForgeNotifier {
             return null;
         }
         String title = this.getInterpreted(build, this.getTitle());
-        List<CTFArtifact> r = tracker.getArtifactsByTitle(title);
-        Collections.sort(r, new Comparator<CTFArtifact>() {
-            public int compare(CTFArtifact o1, CTFArtifact o2) {
-                return o2.getLastModifiedDate().compareTo(o1.getLastModifiedDate());
+        // keep the most recently modified match; no need to hold or sort the whole list
+        CTFArtifact latest = null;
+        for (CTFArtifact a : tracker.getArtifactsByTitle(title)) {
+            if (latest == null || a.getLastModifiedDate().compareTo(latest.getLastModifiedDate()) > 0) {
+                latest = a;
             }
-        });
-        if (r.size()>0) return r.get(0);
-        return null;
+        }
+        return latest;
     }
     
     /**
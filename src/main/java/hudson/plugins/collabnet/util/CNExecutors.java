@@ -0,0 +1,74 @@
+package hudson.plugins.collabnet.util;
+
+import hudson.plugins.collabnet.CollabNetPlugin;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thread pools owned by the plugin, so that calls to TeamForge never tie up the threads of
+ * the {@link jenkins.util.Timer} pool that all of Jenkins shares.
+ *
+ * <p>
+ * Every pool has a fixed number of threads, which go away when idle. The pools are created
+ * lazily and shut down by {@link CollabNetPlugin#stop()}.
+ */
+public final class CNExecutors {
+    /**
+     * Number of threads for background refreshes and loads.
+     */
+    public static final int BACKGROUND_THREADS = Math.max(1,
+            Integer.getInteger(CollabNetPlugin.class.getName() + ".backgroundThreads", 4));
+
+    private static final List<ExecutorService> pools = new ArrayList<ExecutorService>();
+    private static ExecutorService background;
+
+    /**
+     * As a utility class, CNExecutors should never be instantiated.
+     */
+    private CNExecutors() {}
+
+    /**
+     * Runs refreshes and loads that nobody waits for, or that only a request thread waits for.
+     * A task running here must never wait for another task of this pool.
+     *
+     * @return the shared background pool.
+     */
+    public static synchronized ExecutorService background() {
+        if (background == null) {
+            background = newPool("CollabNet background", BACKGROUND_THREADS);
+        }
+        return background;
+    }
+
+    /**
+     * Creates a pool that is shut down with the plugin.
+     *
+     * @param name the name of the threads
+     * @param threads the maximum number of threads; further tasks wait in line
+     */
+    public static synchronized ExecutorService newPool(String name, int threads) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new NamingThreadFactory(new DaemonThreadFactory(), name));
+        pool.allowCoreThreadTimeOut(true);
+        pools.add(pool);
+        return pool;
+    }
+
+    /**
+     * Stops every pool, interrupting the tasks still running.
+     */
+    public static synchronized void shutdown() {
+        for (ExecutorService pool : pools) {
+            pool.shutdownNow();
+        }
+        pools.clear();
+        background = null;
+    }
+}
@@ -0,0 +1,172 @@
+package hudson.plugins.collabnet.util;
+
+import com.collabnet.ce.webservices.CTFFile;
+import com.collabnet.ce.webservices.CollabNetApp;
+import hudson.FilePath.FileCallable;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import hudson.util.StreamTaskListener;
+import jenkins.MasterToSlaveFileCallable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Uploads a workspace file where the file is, so that the file itself never goes over the
+ * channel. Needs the session of the build, since the uploaded file is only available to
+ * the same session.
+ *
+ * <p>
+ * If asked for, the SHA-256 digest of the file comes back with the upload. When the digest
+ * of the last upload is known, the file is hashed first and left alone if it did not change;
+ * otherwise it is hashed while it is sent, and read only once.
+ *
+ * <p>
+ * No listener is sent to the node: what the upload reports comes back with the result,
+ * see {@link Result#printLog(TaskListener)}.
+ */
+public class CNFileUploader extends MasterToSlaveFileCallable<CNFileUploader.Result> {
+    private static final long serialVersionUID = 1L;
+
+    private final String mUrl;
+    private final String mUsername;
+    private final String mSessionId;
+    private final boolean mDigest;
+    private final String mRecordedDigest;
+
+    /**
+     * @param url collabnet url
+     * @param username collabnet username
+     * @param sessionId collabnet sessionId
+     * @param digest whether the digest of the file is wanted
+     * @param recordedDigest the digest of the last upload of the file, or null
+     */
+    public CNFileUploader(String url, String username, String sessionId,
+                          boolean digest, String recordedDigest) {
+        mUrl = url;
+        mUsername = username;
+        mSessionId = sessionId;
+        mDigest = digest || recordedDigest != null;
+        mRecordedDigest = recordedDigest;
+    }
+
+    /**
+     * What comes back from the node the file is on.
+     */
+    public static final class Result implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String fileId;
+        private final String sha256;
+        private final boolean unchanged;
+        private final String log;
+
+        private Result(String fileId, String sha256, boolean unchanged, String log) {
+            this.fileId = fileId;
+            this.sha256 = sha256;
+            this.unchanged = unchanged;
+            this.log = log;
+        }
+
+        static Result uploaded(String fileId, String sha256, String log) {
+            return new Result(fileId, sha256, false, log);
+        }
+
+        static Result unchanged(String sha256) {
+            return new Result(null, sha256, true, "");
+        }
+
+        /**
+         * Copies what the upload reported on the node, such as its throughput.
+         */
+        public void printLog(TaskListener listener) {
+            listener.getLogger().print(log);
+        }
+
+        /**
+         * @return true if the file still has the recorded digest and was not uploaded.
+         *         Only ever the case when a recorded digest was given.
+         */
+        public boolean isUnchanged() {
+            return unchanged;
+        }
+
+        /**
+         * @return the id of the uploaded file, or null if the file was not uploaded,
+         *         see {@link #isUnchanged()}.
+         */
+        public String getFileId() {
+            return fileId;
+        }
+
+        /**
+         * @return the digest of the file as lower case hex, or null if it was not asked for.
+         */
+        public String getSha256() {
+            return sha256;
+        }
+    }
+
+    /**
+     * @see FileCallable#invoke(File, VirtualChannel)
+     */
+    public Result invoke(File f, VirtualChannel channel) throws IOException {
+        String sha256 = null;
+        MessageDigest md = null;
+        if (mRecordedDigest != null) {
+            sha256 = digest(f);
+            if (sha256.equals(mRecordedDigest)) {
+                return Result.unchanged(sha256);
+            }
+        } else if (mDigest) {
+            md = newDigest();
+        }
+        CollabNetApp cnApp = CNHudsonUtil.recreateCollabNetApp(mUrl, mUsername, mSessionId);
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        CTFFile file = cnApp.upload(f, new StreamTaskListener(log, StandardCharsets.UTF_8), md);
+        if (file == null) {
+            throw new IOException("Failed to upload " + f.getName());
+        }
+        return Result.uploaded(file.getId(), md == null ? sha256 : toHex(md), log.toString("UTF-8"));
+    }
+
+    /**
+     * Reads the file through a fixed-size buffer, whatever its size.
+     *
+     * @return the SHA-256 digest of the file as lower case hex.
+     */
+    public static String digest(File f) throws IOException {
+        MessageDigest md = newDigest();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = new FileInputStream(f)) {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                md.update(buffer, 0, n);
+            }
+        }
+        return toHex(md);
+    }
+
+    private static MessageDigest newDigest() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String toHex(MessageDigest md) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : md.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
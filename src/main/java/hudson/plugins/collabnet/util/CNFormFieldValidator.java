@@ -7,19 +7,14 @@ import com.collabnet.ce.webservices.CTFScmRepository;
 import com.collabnet.ce.webservices.CTFTracker;
 import com.collabnet.ce.webservices.CollabNetApp;
 import hudson.plugins.collabnet.auth.CNAuthentication;
-import hudson.plugins.collabnet.CtfSoapHttpSender;
 import hudson.util.FormValidation;
 import hudson.util.Secret;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
 import org.kohsuke.stapler.StaplerRequest;
 
 import java.io.IOException;
-import java.security.KeyManagementException;
-import java.security.KeyStoreException;
-import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -77,9 +72,8 @@ public abstract class CNFormFieldValidator {
      * Returns form validation that represents the validity of the URL.
      */
     public static FormValidation checkUrl(String url) {
-        CloseableHttpClient httpClient = null;
         try {
-            httpClient = getHttpClient();
+            CloseableHttpClient httpClient = CNHttpTransport.getHttpClient();
             HttpGet httpGet = new HttpGet(url);
             CloseableHttpResponse r = httpClient.execute(httpGet);
             try {
@@ -98,28 +92,6 @@ public abstract class CNFormFieldValidator {
             }
         } catch (Exception e) {
             return FormValidation.error(e,"Failed to connect to "+url+" : "+e.getMessage());
-        } finally {
-            if (httpClient != null) {
-                try {
-                    httpClient.close();
-                } catch (IOException e) {
-                    // ignore
-                }
-            }
-        }
-    }
-
-    public static CloseableHttpClient getHttpClient()
-            throws KeyManagementException, NoSuchAlgorithmException, KeyStoreException {
-        if (CollabNetApp.areSslErrorsIgnored()) {
-            // finally create the HttpClient using HttpClient factory methods and assign the ssl socket factory
-            return HttpClients
-                    .custom()
-                    .setSSLSocketFactory(CtfSoapHttpSender.tryCreateAcceptAllSslSocketFactory())
-                    .build();
-        }
-        else {
-            return HttpClients.createDefault();
         }
     }
 
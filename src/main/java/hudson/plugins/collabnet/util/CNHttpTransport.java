@@ -0,0 +1,259 @@
+package hudson.plugins.collabnet.util;
+
+import com.collabnet.ce.webservices.CollabNetApp;
+import hudson.plugins.collabnet.CollabNetPlugin;
+import hudson.plugins.collabnet.CtfSoapHttpSender;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.BasicHttpClientConnectionManager;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.glassfish.jersey.apache.connector.ApacheClientProperties;
+import org.glassfish.jersey.apache.connector.ApacheConnectorProvider;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.ClientProperties;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Plugin-wide pooled HTTP transport used for every TeamForge REST call.
+ *
+ * <p>
+ * Connections are kept alive and shared between the raw {@link CloseableHttpClient} used for
+ * the login/token handshake and the Jersey client used by {@link Helper#request}, so a build
+ * does not pay a fresh TCP connect and TLS handshake per call. The pool is created lazily and
+ * torn down by {@link CollabNetPlugin#stop()}.
+ *
+ * <p>
+ * The clients handed out by this class are shared: callers must close the responses they
+ * obtain, but never the client itself. Only {@link #newHttpClient()} creates a client that
+ * its caller owns.
+ */
+public final class CNHttpTransport {
+    private static final Logger logger = Logger.getLogger(CNHttpTransport.class.getName());
+
+    private static final String PROPERTY_PREFIX = CollabNetPlugin.class.getName() + ".";
+
+    /**
+     * Maximum number of pooled connections across all TeamForge hosts.
+     */
+    public static final int MAX_CONNECTIONS = Integer.getInteger(PROPERTY_PREFIX + "maxConnections", 50);
+
+    /**
+     * Maximum number of pooled connections to a single TeamForge host.
+     */
+    public static final int MAX_CONNECTIONS_PER_ROUTE =
+            Integer.getInteger(PROPERTY_PREFIX + "maxConnectionsPerRoute", 20);
+
+    /**
+     * Timeout in milliseconds to establish a connection.
+     */
+    public static final int CONNECT_TIMEOUT_MS = Integer.getInteger(PROPERTY_PREFIX + "connectTimeoutMs", 30000);
+
+    /**
+     * Timeout in milliseconds to wait for data once connected.
+     */
+    public static final int SOCKET_TIMEOUT_MS = Integer.getInteger(PROPERTY_PREFIX + "socketTimeoutMs", 300000);
+
+    /**
+     * Idle connections older than this many seconds are evicted from the pool.
+     */
+    public static final int IDLE_TIMEOUT_SEC = Integer.getInteger(PROPERTY_PREFIX + "idleConnectionTimeoutSec", 60);
+
+    /**
+     * The pools, by whether they ignore SSL errors, see {@link CollabNetApp#areSslErrorsIgnored()}.
+     * That setting can change at any time, and a pool cannot be rebuilt while other requests
+     * use it, so each setting has a pool of its own.
+     */
+    private static final Pool[] pools = new Pool[2];
+
+    /**
+     * As a utility class, CNHttpTransport should never be instantiated.
+     */
+    private CNHttpTransport() {}
+
+    /**
+     * A connection pool and the clients that share it.
+     */
+    private static final class Pool {
+        final boolean sslErrorsIgnored;
+        PoolingHttpClientConnectionManager connectionManager;
+        CloseableHttpClient httpClient;
+        volatile Client jerseyClient;
+
+        Pool(boolean sslErrorsIgnored) {
+            this.sslErrorsIgnored = sslErrorsIgnored;
+        }
+
+        void shutdown() {
+            if (jerseyClient != null) {
+                jerseyClient.close();
+                jerseyClient = null;
+            }
+            if (httpClient != null) {
+                try {
+                    httpClient.close();
+                } catch (IOException e) {
+                    logger.log(Level.FINE, "Failed to close the shared http client", e);
+                }
+                httpClient = null;
+            }
+            if (connectionManager != null) {
+                connectionManager.shutdown();
+                connectionManager = null;
+            }
+        }
+    }
+
+    /**
+     * @return the pool for the current SSL setting, creating it if necessary.
+     */
+    private static synchronized Pool getPool() {
+        boolean ignored = CollabNetApp.areSslErrorsIgnored();
+        int i = ignored ? 1 : 0;
+        if (pools[i] == null) {
+            pools[i] = new Pool(ignored);
+        }
+        return pools[i];
+    }
+
+    /**
+     * @return the shared connection pool, creating it if necessary.
+     */
+    public static PoolingHttpClientConnectionManager getConnectionManager() {
+        return getConnectionManager(getPool());
+    }
+
+    private static PoolingHttpClientConnectionManager getConnectionManager(Pool pool) {
+        synchronized (CNHttpTransport.class) {
+            if (pool.connectionManager == null) {
+                pool.connectionManager = new PoolingHttpClientConnectionManager(
+                        getSocketFactoryRegistry(pool.sslErrorsIgnored));
+                pool.connectionManager.setMaxTotal(MAX_CONNECTIONS);
+                pool.connectionManager.setDefaultMaxPerRoute(MAX_CONNECTIONS_PER_ROUTE);
+                pool.connectionManager.setValidateAfterInactivity(2000);
+            }
+            return pool.connectionManager;
+        }
+    }
+
+    /**
+     * @return the shared HTTP client. Do not close it.
+     */
+    public static CloseableHttpClient getHttpClient() {
+        Pool pool = getPool();
+        synchronized (CNHttpTransport.class) {
+            if (pool.httpClient == null) {
+                pool.httpClient = HttpClients.custom()
+                        .setConnectionManager(getConnectionManager(pool))
+                        .setConnectionManagerShared(true)
+                        .setDefaultRequestConfig(getRequestConfig())
+                        .setUserAgent("CollabNet Jenkins Plugin")
+                        .evictExpiredConnections()
+                        .evictIdleConnections(IDLE_TIMEOUT_SEC, TimeUnit.SECONDS)
+                        .build();
+            }
+            return pool.httpClient;
+        }
+    }
+
+    /**
+     * Creates a client with a single connection of its own, for a request that would hold a
+     * pooled connection for a long time, or that runs where nothing shuts the pool down, like
+     * an upload from an agent.
+     *
+     * @return a new client. The caller must close it.
+     */
+    public static CloseableHttpClient newHttpClient() {
+        return HttpClients.custom()
+                .setConnectionManager(new BasicHttpClientConnectionManager(
+                        getSocketFactoryRegistry(CollabNetApp.areSslErrorsIgnored())))
+                .setDefaultRequestConfig(getRequestConfig())
+                .setUserAgent("CollabNet Jenkins Plugin")
+                .build();
+    }
+
+    /**
+     * The Jersey client is thread safe and immutable once built, so a single instance serves
+     * every model object. Concurrency towards one host is bounded by
+     * {@link #MAX_CONNECTIONS_PER_ROUTE}; callers beyond that wait for a pooled connection.
+     *
+     * @return the shared Jersey client. Do not close it.
+     */
+    public static Client getJerseyClient() {
+        Pool pool = getPool();
+        Client c = pool.jerseyClient;
+        if (c == null) {
+            synchronized (CNHttpTransport.class) {
+                c = pool.jerseyClient;
+                if (c == null) {
+                    pool.jerseyClient = c = ClientBuilder.newClient(getJerseyConfig(pool));
+                }
+            }
+        }
+        return c;
+    }
+
+    /**
+     * @return the Jersey configuration that routes requests through the given pool.
+     */
+    private static ClientConfig getJerseyConfig(Pool pool) {
+        ClientConfig config = new ClientConfig();
+        config.connectorProvider(new ApacheConnectorProvider());
+        config.property(ApacheClientProperties.CONNECTION_MANAGER, getConnectionManager(pool));
+        config.property(ApacheClientProperties.CONNECTION_MANAGER_SHARED, true);
+        config.property(ApacheClientProperties.REQUEST_CONFIG, getRequestConfig());
+        config.property(ClientProperties.CONNECT_TIMEOUT, CONNECT_TIMEOUT_MS);
+        config.property(ClientProperties.READ_TIMEOUT, SOCKET_TIMEOUT_MS);
+        return config;
+    }
+
+    private static Registry<ConnectionSocketFactory> getSocketFactoryRegistry(boolean sslErrorsIgnored) {
+        SSLConnectionSocketFactory sslSocketFactory = null;
+        if (sslErrorsIgnored) {
+            sslSocketFactory = CtfSoapHttpSender.tryCreateAcceptAllSslSocketFactory();
+            if (sslSocketFactory == null) {
+                logger.warning("Unable to create an SSL socket factory that ignores SSL errors, "
+                        + "certificates will be validated");
+            }
+        }
+        if (sslSocketFactory == null) {
+            sslSocketFactory = SSLConnectionSocketFactory.getSocketFactory();
+        }
+        return RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", sslSocketFactory)
+                .build();
+    }
+
+    private static RequestConfig getRequestConfig() {
+        return RequestConfig.custom()
+                .setConnectTimeout(CONNECT_TIMEOUT_MS)
+                .setConnectionRequestTimeout(CONNECT_TIMEOUT_MS)
+                .setSocketTimeout(SOCKET_TIMEOUT_MS)
+                .build();
+    }
+
+    /**
+     * Closes the shared clients and every pooled connection. A later call to
+     * {@link #getHttpClient()} or {@link #getJerseyClient()} will create a new pool.
+     */
+    public static synchronized void shutdown() {
+        for (int i = 0; i < pools.length; i++) {
+            if (pools[i] != null) {
+                pools[i].shutdown();
+                pools[i] = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package hudson.plugins.collabnet.util;
+
+import hudson.util.AtomicFileWriter;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Records a job keeps about what it uploaded to TeamForge, by key, in a JSON file in its
+ * job directory. Each record names the TeamForge object it was made for, see {@link #idOf}.
+ *
+ * <p>
+ * Builds of the same job may run at the same time, so {@link #save()} does not write what
+ * was loaded: it reads the file again and applies only the changes of this build. A record
+ * this build removed stays removed unless another build recorded a different object for it
+ * since.
+ *
+ * <p>
+ * A missing or unreadable file holds no records, and a malformed record is ignored: what
+ * it was about is uploaded again.
+ *
+ * @param <R> the type of the records
+ */
+public abstract class CNJobRecords<R> {
+    private static final Logger logger = Logger.getLogger(CNJobRecords.class.getName());
+
+    /**
+     * One lock per file, held while it is read or rewritten.
+     */
+    private static final ConcurrentMap<File, Object> LOCKS = new ConcurrentHashMap<File, Object>();
+
+    private final File file;
+    private final Map<String, R> records = new ConcurrentHashMap<String, R>();
+    /**
+     * The records written by this build.
+     */
+    private final Map<String, R> added = new ConcurrentHashMap<String, R>();
+    /**
+     * The records this build removed, with the id of the object they were made for.
+     */
+    private final Map<String, String> removed = new ConcurrentHashMap<String, String>();
+
+    protected CNJobRecords(File file) {
+        this.file = file.getAbsoluteFile();
+    }
+
+    /**
+     * @return the record read from its JSON form, or null if it is malformed.
+     */
+    protected abstract R fromJSON(JSONObject o);
+
+    protected abstract JSONObject toJSON(R record);
+
+    /**
+     * @return the id of the TeamForge object a record was made for.
+     */
+    protected abstract String idOf(R record);
+
+    /**
+     * Reads the records in the file; called once, right after construction.
+     */
+    protected final void load() {
+        synchronized (lock()) {
+            records.putAll(read());
+        }
+    }
+
+    /**
+     * @return the records, by key. They cannot be modified through this map.
+     */
+    protected final Map<String, R> getRecords() {
+        return Collections.unmodifiableMap(records);
+    }
+
+    protected final R getRecord(String key) {
+        return records.get(key);
+    }
+
+    protected final void putRecord(String key, R record) {
+        records.put(key, record);
+        added.put(key, record);
+        removed.remove(key);
+    }
+
+    protected final void removeRecord(String key) {
+        R record = records.remove(key);
+        added.remove(key);
+        String id = record == null ? null : idOf(record);
+        if (id != null) {
+            removed.put(key, id);
+        }
+    }
+
+    /**
+     * Writes the changes of this build over what the file holds now, so that another build
+     * saving in between loses nothing.
+     */
+    public final void save() throws IOException {
+        synchronized (lock()) {
+            Map<String, R> current = read();
+            for (Map.Entry<String, String> e : removed.entrySet()) {
+                R old = current.get(e.getKey());
+                if (old != null && e.getValue().equals(idOf(old))) {
+                    current.remove(e.getKey());
+                }
+            }
+            current.putAll(added);
+            JSONObject data = new JSONObject();
+            for (Map.Entry<String, R> e : current.entrySet()) {
+                data.put(e.getKey(), toJSON(e.getValue()));
+            }
+            AtomicFileWriter w = new AtomicFileWriter(file.toPath(), StandardCharsets.UTF_8);
+            try {
+                w.write(data.toJSONString());
+                w.commit();
+            } finally {
+                w.abort();
+            }
+        }
+    }
+
+    private Object lock() {
+        Object lock = LOCKS.get(file);
+        if (lock == null) {
+            Object created = new Object();
+            lock = LOCKS.putIfAbsent(file, created);
+            if (lock == null) {
+                lock = created;
+            }
+        }
+        return lock;
+    }
+
+    /**
+     * @return the well-formed records in the file, or none if it is missing or unreadable.
+     */
+    private Map<String, R> read() {
+        Map<String, R> r = new HashMap<String, R>();
+        if (!file.exists()) {
+            return r;
+        }
+        Object data;
+        try (Reader in = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            data = new JSONParser().parse(in);
+        } catch (IOException | ParseException e) {
+            logger.log(Level.WARNING, "Unable to read " + file, e);
+            return r;
+        }
+        if (!(data instanceof JSONObject)) {
+            logger.warning("Ignoring " + file + ", which does not hold a JSON object");
+            return r;
+        }
+        JSONObject o = (JSONObject) data;
+        for (Object key : o.keySet()) {
+            Object value = o.get(key);
+            R record = value instanceof JSONObject ? fromJSON((JSONObject) value) : null;
+            if (record == null) {
+                logger.warning("Ignoring the malformed record " + key + " in " + file);
+            } else {
+                r.put(key.toString(), record);
+            }
+        }
+        return r;
+    }
+}
@@ -0,0 +1,162 @@
+package hudson.plugins.collabnet.util;
+
+import hudson.plugins.collabnet.CollabNetPlugin;
+
+import javax.ws.rs.core.HttpHeaders;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Bounded cache of the bodies of TeamForge GET responses that carried an {@code ETag} or a
+ * {@code Last-Modified} header, so that asking for them again is a conditional request
+ * answered with {@code 304 Not Modified} when nothing changed.
+ *
+ * <p>
+ * Only the raw bytes are kept; every hit is parsed afresh, so callers never share a parsed
+ * object. Responses are kept per user, since what TeamForge returns depends on who is asking.
+ * The least recently used responses are dropped beyond {@link #MAX_ENTRIES} responses or
+ * {@link #MAX_BYTES} bytes.
+ *
+ * @see com.collabnet.ce.webservices.CollabNetApp#getJSON
+ */
+public final class CNResponseCache {
+    /**
+     * Maximum number of responses kept.
+     */
+    public static final int MAX_ENTRIES = Integer.getInteger(
+            CollabNetPlugin.class.getName() + ".responseCacheMaxEntries", 1000);
+
+    /**
+     * Maximum number of bytes of response bodies kept. A larger body is not cached.
+     */
+    public static final long MAX_BYTES = Long.getLong(
+            CollabNetPlugin.class.getName() + ".responseCacheMaxBytes", 16L * 1024 * 1024);
+
+    /**
+     * In access order, least recently used first.
+     */
+    private static final LinkedHashMap<String, Entry> responses = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private static long totalBytes;
+
+    /**
+     * As a utility class, CNResponseCache should never be instantiated.
+     */
+    private CNResponseCache() {}
+
+    /**
+     * @return the cache key of a request made by the given user.
+     */
+    public static String key(String username, String url, Map<String, String> queryParam) {
+        StringBuilder key = new StringBuilder().append(username).append('\n').append(url);
+        if (queryParam != null) {
+            // sorted, so that the same parameters always give the same key
+            for (Map.Entry<String, String> e : new TreeMap<String, String>(queryParam).entrySet()) {
+                key.append('\n').append(e.getKey()).append('=').append(e.getValue());
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * @return the cached response, or null.
+     */
+    public static Entry get(String key) {
+        synchronized (responses) {
+            return responses.get(key);
+        }
+    }
+
+    /**
+     * @return true if a response with these headers can be revalidated, and so is worth caching.
+     */
+    public static boolean isCacheable(String eTag, String lastModified) {
+        return MAX_ENTRIES > 0 && MAX_BYTES > 0 && (eTag != null || lastModified != null);
+    }
+
+    /**
+     * Caches a response body if it can be revalidated, that is if it has an ETag or a
+     * Last-Modified date, and if it fits. The array must not be modified afterwards.
+     */
+    public static void put(String key, String eTag, String lastModified, byte[] body) {
+        if (body == null || !isCacheable(eTag, lastModified)) {
+            return;
+        }
+        synchronized (responses) {
+            remove(key);
+            if (body.length > MAX_BYTES) {
+                return;
+            }
+            responses.put(key, new Entry(eTag, lastModified, body));
+            totalBytes += body.length;
+            Iterator<Entry> eldest = responses.values().iterator();
+            while (responses.size() > MAX_ENTRIES || totalBytes > MAX_BYTES) {
+                totalBytes -= eldest.next().body.length;
+                eldest.remove();
+            }
+        }
+    }
+
+    private static void remove(String key) {
+        Entry old = responses.remove(key);
+        if (old != null) {
+            totalBytes -= old.body.length;
+        }
+    }
+
+    /**
+     * @return the number of bytes of response bodies currently cached.
+     */
+    public static long getTotalBytes() {
+        synchronized (responses) {
+            return totalBytes;
+        }
+    }
+
+    /**
+     * Drops every cached response.
+     */
+    public static void clear() {
+        synchronized (responses) {
+            responses.clear();
+            totalBytes = 0;
+        }
+    }
+
+    public static final class Entry {
+        private final String eTag;
+        private final String lastModified;
+        private final byte[] body;
+
+        private Entry(String eTag, String lastModified, byte[] body) {
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.body = body;
+        }
+
+        /**
+         * @return a new stream over the cached body, to be parsed by the caller.
+         */
+        public InputStream getBody() {
+            return new ByteArrayInputStream(body);
+        }
+
+        /**
+         * @return the headers that make a request for this response conditional.
+         */
+        public Map<String, String> getConditionalHeaders() {
+            Map<String, String> headers = new HashMap<String, String>();
+            if (eTag != null) {
+                headers.put(HttpHeaders.IF_NONE_MATCH, eTag);
+            }
+            if (lastModified != null) {
+                headers.put(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+            }
+            return headers;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package hudson.plugins.collabnet.util;
+
+import hudson.Functions;
+import hudson.model.TaskListener;
+import hudson.plugins.collabnet.CollabNetPlugin;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import hudson.util.StreamTaskListener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the uploads of a build step a few at a time.
+ *
+ * <p>
+ * Each task logs to its own buffer, and once every task is done the buffers are copied to the
+ * build log in the order the tasks were given. The console therefore reads the same as if the
+ * uploads had run one after another, and a log that cannot be copied costs no result.
+ */
+public final class CNUploadExecutor {
+    /**
+     * Maximum number of uploads running at the same time for one build step.
+     */
+    public static final int CONCURRENCY = Math.max(1,
+            Integer.getInteger(CollabNetPlugin.class.getName() + ".uploadConcurrency", 4));
+
+    /**
+     * One upload.
+     */
+    public interface Task<V> {
+        /**
+         * @param listener where the task logs; it is buffered until the earlier tasks are done.
+         * @return the result of the task, handed back by {@link #runAll}.
+         */
+        V call(TaskListener listener) throws IOException, InterruptedException;
+    }
+
+    /**
+     * As a utility class, CNUploadExecutor should never be instantiated.
+     */
+    private CNUploadExecutor() {}
+
+    /**
+     * Runs the tasks, at most {@link #CONCURRENCY} at a time, and waits for all of them.
+     *
+     * @param listener the build log
+     * @return the result of every task, in order. A task that failed gets null; its exception
+     *         is printed to its log.
+     * @throws InterruptedException if the build was interrupted. The running tasks are interrupted too.
+     */
+    public static <V> List<V> runAll(List<? extends Task<V>> tasks, TaskListener listener)
+            throws InterruptedException {
+        List<V> results = new ArrayList<V>();
+        int threads = Math.min(CONCURRENCY, tasks.size());
+        if (threads <= 1) {
+            for (Task<V> task : tasks) {
+                results.add(call(task, listener));
+            }
+            return results;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads,
+                new NamingThreadFactory(new DaemonThreadFactory(), "CollabNet upload"));
+        try {
+            List<Future<V>> futures = new ArrayList<Future<V>>();
+            List<ByteArrayOutputStream> logs = new ArrayList<ByteArrayOutputStream>();
+            for (final Task<V> task : tasks) {
+                ByteArrayOutputStream log = new ByteArrayOutputStream();
+                final TaskListener taskListener = new StreamTaskListener(log, StandardCharsets.UTF_8);
+                logs.add(log);
+                futures.add(pool.submit(new Callable<V>() {
+                    public V call() throws Exception {
+                        return CNUploadExecutor.call(task, taskListener);
+                    }
+                }));
+            }
+            List<Throwable> failures = new ArrayList<Throwable>();
+            for (Future<V> future : futures) {
+                V result = null;
+                Throwable failure = null;
+                try {
+                    result = future.get();
+                } catch (ExecutionException e) {
+                    failure = e.getCause();
+                }
+                results.add(result);
+                failures.add(failure);
+            }
+            for (int i = 0; i < logs.size(); i++) {
+                try {
+                    listener.getLogger().write(logs.get(i).toByteArray());
+                } catch (IOException e) {
+                    Functions.printStackTrace(e, listener.error("could not copy the upload log"));
+                }
+                if (failures.get(i) != null) {
+                    Functions.printStackTrace(failures.get(i), listener.error("upload failed"));
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return results;
+    }
+
+    private static <V> V call(Task<V> task, TaskListener listener) throws InterruptedException {
+        try {
+            return task.call(listener);
+        } catch (IOException | RuntimeException e) {
+            Functions.printStackTrace(e, listener.error("upload failed"));
+            return null;
+        }
+    }
+}
@@ -30,6 +30,8 @@ public abstract class ComboBoxUpdater {
                 return toModel(cna.getProjects());
             } catch (IOException re) {
                 CommonUtil.logRE(log, "getProjectList", re);
+            } catch (CollabNetApp.CollabNetAppException re) {
+                CommonUtil.logRE(log, "getProjectList", re.toIOException());
             }
         }
         return EMPTY_MODEL;
@@ -44,7 +46,7 @@ public abstract class ComboBoxUpdater {
         CTFProject p = cna.getProjectByTitle(project);
         if (p==null)    return EMPTY_MODEL;
 
-        return toModel(p.getPackages());
+        return fill(p.getPackages());
     }
 
     public static ComboBoxModel getReleases(CollabNetApp cna, String project, String rpackage) throws IOException {
@@ -66,7 +68,7 @@ public abstract class ComboBoxUpdater {
      */
     public static ComboBoxModel getReleaseList(CTFPackage pkg) throws IOException {
         if (pkg == null)  return EMPTY_MODEL;
-        return toModel(pkg.getReleases());
+        return fill(pkg.getReleases());
     }
 
     /**
@@ -77,10 +79,14 @@ public abstract class ComboBoxUpdater {
         if (p == null)  return EMPTY_MODEL;
 
         ComboBoxModel cbm = new ComboBoxModel();
-        for (CTFPackage pkg : p.getPackages()) {
-            for (CTFRelease r : pkg.getReleases()) {
-                cbm.add(r.getTitle());
+        try {
+            for (CTFPackage pkg : p.getPackages()) {
+                for (CTFRelease r : pkg.getReleases()) {
+                    cbm.add(r.getTitle());
+                }
             }
+        } catch (CollabNetApp.CollabNetAppException e) {
+            throw e.toIOException();
         }
         return cbm;
     }
@@ -89,7 +95,7 @@ public abstract class ComboBoxUpdater {
         if (cna==null)  return EMPTY_MODEL;
         CTFProject p =  cna.getProjectByTitle(project);
         if (p==null)    return EMPTY_MODEL;
-        return toModel(p.getScmRepositories());
+        return fill(p.getScmRepositories());
     }
 
     public static ComboBoxModel toModel(Collection<? extends ObjectWithTitle> list) {
@@ -99,12 +105,24 @@ public abstract class ComboBoxUpdater {
         return r;
     }
 
+    /**
+     * {@link #toModel} for a list that may be fetched lazily, reporting a page that
+     * could not be fetched as the {@link IOException} it is.
+     */
+    private static ComboBoxModel fill(Collection<? extends ObjectWithTitle> list) throws IOException {
+        try {
+            return toModel(list);
+        } catch (CollabNetApp.CollabNetAppException e) {
+            throw e.toIOException();
+        }
+    }
+
     /**
      * @return a list of trackers which has been sanitized.
      */
     public static ComboBoxModel getTrackerList(CTFProject p) throws IOException {
         if (p!=null)
-            return toModel(p.getTrackers());
+            return fill(p.getTrackers());
         return EMPTY_MODEL;
     }
 
@@ -112,7 +130,7 @@ public abstract class ComboBoxUpdater {
         if (cna!=null) {
             CTFProject p = cna.getProjectByTitle(project);
             if (p==null)    return EMPTY_MODEL;
-            return toModel(p.getMembers());
+            return fill(p.getMembers());
         }
         return EMPTY_MODEL;
     }
@@ -126,6 +144,8 @@ public abstract class ComboBoxUpdater {
                 return toModel(p.getMembers());
             } catch (IOException re) {
                 CommonUtil.logRE(log, "getUserList", re);
+            } catch (CollabNetApp.CollabNetAppException re) {
+                CommonUtil.logRE(log, "getUserList", re.toIOException());
             }
         }
         return EMPTY_MODEL;
@@ -28,8 +28,6 @@ import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 
 import javax.ws.rs.HttpMethod;
-import javax.ws.rs.client.Client;
-import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.Invocation;
 import javax.ws.rs.client.WebTarget;
@@ -45,21 +43,10 @@ import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import javax.net.ssl.SSLContext;
-import javax.net.ssl.TrustManager;
-import javax.net.ssl.X509TrustManager;
-import java.security.KeyManagementException;
-import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
-import java.security.cert.CertificateException;
-import java.security.cert.X509Certificate;
-
 public class Helper {
 
     static Logger logger = Logger.getLogger(Helper.class.getName());
 
-    private static Client client = null;
-
     private static final String CONTENT_TYPE = "Content-Type";
 
     private static final String X_AUTH_TOKEN = "Authorization";
@@ -71,40 +58,17 @@ public class Helper {
      */
     private static String LOG_MESSAGE_PREFIX = "TeamForge Build Notifier - ";
 
-    public Helper() {
-        client = ClientBuilder.newBuilder().sslContext(getContext()).build();
-    }
-
-    private  static SSLContext getContext() {
-        SSLContext sslContext = null;
-        try {
-            sslContext = SSLContext.getInstance("TLS");
-            sslContext.init(null, new TrustManager[]{new X509TrustManager() {
-                public void checkClientTrusted(X509Certificate[] x509Certificates, String s) throws CertificateException {
-                }
-
-                public void checkServerTrusted(X509Certificate[] x509Certificates, String s) throws CertificateException {
-                }
-
-                public X509Certificate[] getAcceptedIssuers() {
-                    return new X509Certificate[0];
-                }
-            }}, new SecureRandom());
-        } catch (NoSuchAlgorithmException e) {
-            throw new Error(e);
-        } catch (KeyManagementException e) {
-            throw new Error(e);
-        }
-        return sslContext;
-    }
+    /**
+     * As a utility class, Helper should never be instantiated.
+     */
+    private Helper() {}
 
     public static String getToken(URL ctfUrl, String ctfUserName, String ctfPassword) throws IOException {
         String end_point = ctfUrl.toString() + "/oauth/auth/token";
-        CloseableHttpClient httpClient = null;
         CloseableHttpResponse response = null;
         String ctfSessionId = null;
         try {
-            httpClient = CNFormFieldValidator.getHttpClient();
+            CloseableHttpClient httpClient = CNHttpTransport.getHttpClient();
             HttpPost post = new HttpPost(end_point);
             List<NameValuePair> params = new ArrayList<>();
             params.add(new BasicNameValuePair("client_id", "api-client"));
@@ -132,9 +96,6 @@ public class Helper {
             if (response != null) {
                 response.close();
             }
-            if (httpClient != null) {
-                httpClient.close();
-            }
         }
         return ctfSessionId;
     }
@@ -147,10 +108,9 @@ public class Helper {
     public static String getOneTimeToken(URL ctfUrl, String accessToken) throws IOException {
         String oneTimeToken = null;
         String end_point = ctfUrl.toString() + CTFConstants.FOUNDATION_URL + "auth/oneTimeToken";
-        CloseableHttpClient httpClient = null;
         CloseableHttpResponse response = null;
         try {
-            httpClient = CNFormFieldValidator.getHttpClient();
+            CloseableHttpClient httpClient = CNHttpTransport.getHttpClient();
             HttpGet get = new HttpGet(end_point);
             get.setHeader("Accept", "application/json");
             get.setHeader("Authorization", "Bearer " + accessToken);
@@ -170,9 +130,6 @@ public class Helper {
             if (response != null) {
                 response.close();
             }
-            if (httpClient != null) {
-                httpClient.close();
-            }
         }
         return oneTimeToken;
     }
@@ -186,10 +143,9 @@ public class Helper {
     public static String getSessionId(URL ctfUrl, String oneTimeToken) throws IOException {
         String sessionId = null;
         String end_point = ctfUrl.toString() + CTFConstants.FOUNDATION_URL + "auth/sessionId/" + oneTimeToken;
-        CloseableHttpClient httpClient = null;
         CloseableHttpResponse response = null;
         try {
-            httpClient = CNFormFieldValidator.getHttpClient();
+            CloseableHttpClient httpClient = CNHttpTransport.getHttpClient();
             HttpGet get = new HttpGet(end_point);
             response = httpClient.execute(get);
             if (response.getStatusLine().getStatusCode() < 300) {
@@ -207,9 +163,6 @@ public class Helper {
             if (response != null) {
                 response.close();
             }
-            if (httpClient != null) {
-                httpClient.close();
-            }
         }
         return sessionId;
     }
@@ -218,17 +171,16 @@ public class Helper {
                                          TaskListener listener)
             throws
             IOException {
-        CloseableHttpClient client = null;
         CloseableHttpResponse response = null;
         String token = null;
         try {
-            client = CNFormFieldValidator.getHttpClient();
+            CloseableHttpClient httpClient = CNHttpTransport.getHttpClient();
             HttpPost httpPost = new HttpPost(webhookUrl);
             StringEntity entity = new StringEntity(getLoginData(webhookUsername, webhookPassword).toString());
             httpPost.setEntity(entity);
             httpPost.setHeader("Accept", "application/json");
             httpPost.setHeader("Content-type", "application/json");
-            response = client.execute(httpPost);
+            response = httpClient.execute(httpPost);
             if (response.getStatusLine().getStatusCode() == 200) {
                 String result = EntityUtils.toString(response.getEntity());
                 JSONObject data = ((JSONObject) new JSONParser().parse(result));
@@ -243,9 +195,6 @@ public class Helper {
             if (response != null) {
                 response.close();
             }
-            if (client != null) {
-                client.close();
-            }
         }
         return token;
     }
@@ -337,10 +286,9 @@ public class Helper {
     public static JSONObject getUserData(String url, String sessionId, String username) throws IOException {
         JSONObject data = null;
         String end_point = url + CTFConstants.FOUNDATION_URL + "users/by-username/" + username;
-        CloseableHttpClient httpClient = null;
         CloseableHttpResponse response = null;
         try {
-            httpClient = CNFormFieldValidator.getHttpClient();
+            CloseableHttpClient httpClient = CNHttpTransport.getHttpClient();
             HttpGet get = new HttpGet(end_point);
             List<NameValuePair> params = new ArrayList<>();
             get.setHeader("Accept", "application/json");
@@ -359,18 +307,23 @@ public class Helper {
             if (response != null) {
                 response.close();
             }
-            if (httpClient != null) {
-                httpClient.close();
-            }
         }
         return data;
     }
 
     public static Response request(String url, String tfSessionId, String payload, String method,
                                    Map<String, String> queryParam) throws IOException {
+        return request(url, tfSessionId, payload, method, queryParam, null);
+    }
+
+    /**
+     * @param headers extra request headers, such as the conditional headers from {@link CNResponseCache}.
+     */
+    public static Response request(String url, String tfSessionId, String payload, String method,
+                                   Map<String, String> queryParam, Map<String, String> headers) throws IOException {
         Response response = null;
         try {
-            WebTarget webTarget = client.target(url);
+            WebTarget webTarget = CNHttpTransport.getJerseyClient().target(url);
             if (queryParam != null && queryParam.size() > 0) {
                 for (String key : queryParam.keySet()) {
                     String value = queryParam.get(key);
@@ -382,6 +335,11 @@ public class Helper {
             if (StringUtils.isNotEmpty(tfSessionId)) {
                 builder.header(X_AUTH_TOKEN, "Bearer " + tfSessionId);
             }
+            if (headers != null) {
+                for (Map.Entry<String, String> header : headers.entrySet()) {
+                    builder.header(header.getKey(), header.getValue());
+                }
+            }
             String requestContent = StringUtils.isNotEmpty(payload) ? payload : EMPTY_STRING;
             if (HttpMethod.POST.equals(method)) {
                 builder.header(CONTENT_TYPE, MediaType.APPLICATION_JSON);
@@ -0,0 +1,87 @@
+package com.collabnet.ce.webservices;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ParseException;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CTFJsonStreamTest {
+    private final List<JSONObject> items = new ArrayList<JSONObject>();
+
+    private CTFJsonStream.Items parse(String json) throws IOException, ParseException {
+        return CTFJsonStream.parseItems(new StringReader(json), new CTFJsonStream.ItemHandler() {
+            public void item(JSONObject item) {
+                items.add(item);
+            }
+        });
+    }
+
+    @Test
+    public void itemsAreHandedOverInOrder() throws Exception {
+        CTFJsonStream.Items r = parse("{\"items\":[{\"id\":\"a\"},{\"id\":\"b\"},{\"id\":\"c\"}],\"total\":7}");
+        assertEquals(3, r.count);
+        assertEquals(7, r.total);
+        assertEquals(3, items.size());
+        assertEquals("a", items.get(0).get("id"));
+        assertEquals("b", items.get(1).get("id"));
+        assertEquals("c", items.get(2).get("id"));
+    }
+
+    @Test
+    public void nestedValuesAreKept() throws Exception {
+        parse("{\"items\":[{\"id\":\"a\",\"user\":{\"name\":\"x\",\"roles\":[1,{\"r\":2}]},\"n\":null,\"ok\":true}]}");
+        JSONObject item = items.get(0);
+        JSONObject user = (JSONObject) item.get("user");
+        assertEquals("x", user.get("name"));
+        JSONArray roles = (JSONArray) user.get("roles");
+        assertEquals(2, roles.size());
+        assertEquals(1L, roles.get(0));
+        assertEquals(2L, ((JSONObject) roles.get(1)).get("r"));
+        assertTrue(item.containsKey("n"));
+        assertEquals(Boolean.TRUE, item.get("ok"));
+    }
+
+    @Test
+    public void elementsThatAreNotObjectsAreCountedButSkipped() throws Exception {
+        CTFJsonStream.Items r = parse("{\"items\":[{\"id\":\"a\"},null,\"s\",[1],{\"id\":\"b\"}]}");
+        assertEquals(5, r.count);
+        assertEquals(2, items.size());
+        assertEquals("b", items.get(1).get("id"));
+    }
+
+    @Test
+    public void totalIsOnlyReadAtTheTopLevel() throws Exception {
+        CTFJsonStream.Items r = parse("{\"meta\":{\"total\":5},\"items\":[{\"total\":3}]}");
+        assertEquals(-1, r.total);
+        assertEquals(1, r.count);
+        assertEquals(3L, items.get(0).get("total"));
+    }
+
+    @Test
+    public void itemsOutsideTheTopLevelAreIgnored() throws Exception {
+        CTFJsonStream.Items r = parse("{\"data\":{\"items\":[{\"id\":\"a\"}]},\"total\":0}");
+        assertEquals(0, r.count);
+        assertEquals(0, r.total);
+        assertTrue(items.isEmpty());
+    }
+
+    @Test
+    public void emptyAndMissingItems() throws Exception {
+        assertEquals(0, parse("{\"items\":[]}").count);
+        assertEquals(0, parse("{}").count);
+        assertTrue(items.isEmpty());
+    }
+
+    @Test(expected = ParseException.class)
+    public void truncatedDocumentFails() throws Exception {
+        parse("{\"items\":[{\"id\":\"a\"},{\"id\":");
+    }
+}
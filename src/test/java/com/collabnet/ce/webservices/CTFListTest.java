@@ -0,0 +1,146 @@
+package com.collabnet.ce.webservices;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CTFListTest {
+    private static class Item implements ObjectWithTitle {
+        private final String id, title;
+
+        Item(String id, String title) {
+            this.id = id;
+            this.title = title;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public String getId() {
+            return id;
+        }
+    }
+
+    /**
+     * Counts how many items were pulled out of it.
+     */
+    private static class CountingIterator implements Iterator<Item> {
+        private final Iterator<Item> delegate;
+        int pulled;
+
+        CountingIterator(Item... items) {
+            delegate = Arrays.asList(items).iterator();
+        }
+
+        public boolean hasNext() {
+            return delegate.hasNext();
+        }
+
+        public Item next() {
+            pulled++;
+            return delegate.next();
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private final Item a = new Item("id1", "a");
+    private final Item b = new Item("id2", "b");
+    private final Item c = new Item("id3", "c");
+
+    @Test
+    public void lookUps() {
+        CTFList<Item> list = new CTFList<Item>(Arrays.asList(a, b, c));
+        assertSame(b, list.byTitle("b"));
+        assertSame(c, list.byId("id3"));
+        assertTrue(list.containsTitle("a"));
+        assertNull(list.byTitle("d"));
+        assertNull(list.byId("id4"));
+    }
+
+    @Test
+    public void firstOfRepeatedTitlesWins() {
+        Item a2 = new Item("id4", "a");
+        CTFList<Item> list = new CTFList<Item>(Arrays.asList(a, a2));
+        assertSame(a, list.byTitle("a"));
+        assertSame(a2, list.byId("id4"));
+    }
+
+    @Test
+    public void lookUpsOnlyPullWhatTheyNeed() {
+        CountingIterator source = new CountingIterator(a, b, c);
+        CTFList<Item> list = new CTFList<Item>(source);
+        assertSame(b, list.byTitle("b"));
+        assertEquals(2, source.pulled);
+        // items pulled after the indexes were built are indexed too
+        assertSame(c, list.byId("id3"));
+        assertEquals(3, source.pulled);
+        assertSame(a, list.byId("id1"));
+        assertEquals(3, list.size());
+    }
+
+    @Test
+    public void iterationIsLazy() {
+        CountingIterator source = new CountingIterator(a, b, c);
+        CTFList<Item> list = new CTFList<Item>(source);
+        assertFalse(list.isEmpty());
+        assertEquals(1, source.pulled);
+        assertSame(a, list.iterator().next());
+        assertEquals(1, source.pulled);
+        assertEquals(3, list.size());
+        assertEquals(3, source.pulled);
+    }
+
+    @Test
+    public void removeInvalidatesTheIndexes() {
+        CTFList<Item> list = new CTFList<Item>(Arrays.asList(a, b));
+        assertSame(a, list.byTitle("a"));
+        list.remove(a);
+        assertNull(list.byTitle("a"));
+        assertNull(list.byId("id1"));
+        assertSame(b, list.byTitle("b"));
+    }
+
+    @Test
+    public void addInvalidatesTheIndexes() {
+        CTFList<Item> list = new CTFList<Item>(Arrays.asList(a));
+        assertNull(list.byTitle("c"));
+        list.add(c);
+        assertSame(c, list.byTitle("c"));
+        assertSame(c, list.byId("id3"));
+    }
+
+    @Test
+    public void setInvalidatesTheIndexes() {
+        CTFList<Item> list = new CTFList<Item>(Arrays.asList(a, b));
+        assertSame(a, list.byId("id1"));
+        list.set(0, c);
+        assertNull(list.byId("id1"));
+        assertSame(c, list.byTitle("c"));
+    }
+
+    @Test
+    public void iteratorRemoveInvalidatesTheIndexes() {
+        CTFList<Item> list = new CTFList<Item>(new CountingIterator(a, b, c));
+        assertSame(a, list.byTitle("a"));
+        for (Iterator<Item> it = list.iterator(); it.hasNext();) {
+            if (it.next() == b) {
+                it.remove();
+            }
+        }
+        assertNull(list.byTitle("b"));
+        List<String> titles = list.getTitles();
+        assertEquals(Arrays.asList("a", "c"), titles);
+    }
+}
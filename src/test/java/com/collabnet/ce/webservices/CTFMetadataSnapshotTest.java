@@ -0,0 +1,117 @@
+package com.collabnet.ce.webservices;
+
+import org.json.simple.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CTFMetadataSnapshotTest {
+    private static final String URL = "https://ctf.example.com";
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File file;
+
+    @Before
+    public void setUp() {
+        file = new File(tmp.getRoot(), "collabnet-metadata.json");
+        CTFProjectCache.clear();
+        // forget what earlier tests cached
+        CTFProjectCache.snapshot();
+    }
+
+    @After
+    public void tearDown() {
+        CTFProjectCache.clear();
+    }
+
+    private static JSONObject project(String id, String title) {
+        JSONObject p = new JSONObject();
+        p.put("id", id);
+        p.put("title", title);
+        p.put("path", "projects." + id);
+        p.put("description", "not kept");
+        return p;
+    }
+
+    @Test
+    public void roundTrip() throws Exception {
+        CTFProjectCache.put(URL, "alice", "Sample", project("proj1001", "Sample"));
+        CTFProjectCache.put(URL, "bob", "Other", project("proj1002", "Other"));
+        CTFProjectCache.put(URL, "alice", "Nowhere", null);
+        CTFMetadataSnapshot.save(file);
+        assertTrue(file.exists());
+
+        CTFProjectCache.clear();
+        CTFMetadataSnapshot.load(file);
+        CTFProjectCache.Entry e = CTFProjectCache.get(URL, "alice", "Sample");
+        assertNotNull(e);
+        assertEquals("proj1001", e.data.get("id"));
+        assertEquals("Sample", e.data.get("title"));
+        assertEquals("projects.proj1001", e.data.get("path"));
+        assertNull("only identifying fields are kept", e.data.get("description"));
+        assertTrue("checked against the server on first use", e.claimRevalidation());
+        assertEquals("proj1002", CTFProjectCache.get(URL, "bob", "Other").data.get("id"));
+        assertNull("missing projects are not kept", CTFProjectCache.get(URL, "alice", "Nowhere"));
+    }
+
+    @Test
+    public void unchangedCacheIsNotWrittenAgain() throws Exception {
+        CTFProjectCache.put(URL, "alice", "Sample", project("proj1001", "Sample"));
+        CTFMetadataSnapshot.save(file);
+        assertTrue(file.delete());
+        CTFMetadataSnapshot.save(file);
+        assertFalse(file.exists());
+
+        CTFProjectCache.put(URL, "alice", "Other", project("proj1002", "Other"));
+        CTFMetadataSnapshot.save(file);
+        assertTrue(file.exists());
+    }
+
+    @Test
+    public void restoredEntriesDoNotReplaceFresherOnes() throws Exception {
+        CTFProjectCache.put(URL, "alice", "Sample", project("proj1001", "Sample"));
+        CTFMetadataSnapshot.save(file);
+        CTFProjectCache.put(URL, "alice", "Sample", project("proj1003", "Sample"));
+        CTFMetadataSnapshot.load(file);
+        CTFProjectCache.Entry e = CTFProjectCache.get(URL, "alice", "Sample");
+        assertEquals("proj1003", e.data.get("id"));
+        assertFalse(e.claimRevalidation());
+    }
+
+    @Test
+    public void unreadableSnapshotsAreIgnored() throws Exception {
+        // the cache key of alice's "Sample", as it appears in the file
+        String key = "\"" + URL + "\\nalice\\nSample\"";
+        for (String content : new String[] {"{not json", "null", "[1,2]",
+                "{\"version\":2,\"projects\":[{\"key\":" + key + ",\"project\":{\"id\":\"proj1001\",\"title\":\"Sample\"}}]}",
+                "{\"version\":1,\"projects\":3}",
+                "{\"version\":1,\"projects\":[3,{\"key\":" + key + "},{\"key\":" + key + ",\"project\":[]},"
+                        + "{\"key\":" + key + ",\"project\":{\"id\":\"proj1001\"}}]}"}) {
+            Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+            CTFMetadataSnapshot.load(file);
+            assertNull(content, CTFProjectCache.get(URL, "alice", "Sample"));
+        }
+        CTFMetadataSnapshot.load(new File(tmp.getRoot(), "missing.json"));
+
+        // the same entry is restored from a well-formed snapshot
+        String content = "{\"version\":1,\"projects\":[3,{\"key\":" + key
+                + ",\"project\":{\"id\":\"proj1001\",\"title\":\"Sample\"}}]}";
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        CTFMetadataSnapshot.load(file);
+        assertEquals("proj1001", CTFProjectCache.get(URL, "alice", "Sample").data.get("id"));
+    }
+}
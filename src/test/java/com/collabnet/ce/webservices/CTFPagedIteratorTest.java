@@ -0,0 +1,171 @@
+package com.collabnet.ce.webservices;
+
+import org.json.simple.JSONObject;
+import org.junit.Test;
+
+import javax.ws.rs.HttpMethod;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static com.collabnet.ce.webservices.CTFPagedIterator.PAGE_SIZE;
+import static com.collabnet.ce.webservices.CTFPagedIterator.isLastPage;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CTFPagedIteratorTest {
+    /**
+     * Serves a list of {@code size} items the way a TeamForge server configured by the
+     * fields would, and records the offsets asked for.
+     */
+    private static class FakeServer extends CollabNetApp {
+        final List<Integer> offsets = new ArrayList<Integer>();
+        final int size;
+        /**
+         * Largest page the server returns, whatever {@code count} says.
+         */
+        int maxCount = Integer.MAX_VALUE;
+        boolean reportTotal = true;
+        boolean ignoreOffset;
+        int failAtOffset = -1;
+
+        FakeServer(int size) {
+            super("http://ctf.example.com");
+            this.size = size;
+        }
+
+        @Override
+        CTFJsonStream.Items getItems(String endPoint, Map<String, String> queryParam, String description,
+                                     CTFJsonStream.ItemHandler handler) throws IOException {
+            int offset = Integer.parseInt(queryParam.get("offset"));
+            int count = Integer.parseInt(queryParam.get("count"));
+            offsets.add(offset);
+            if (offset == failAtOffset) {
+                throw new IOException("boom");
+            }
+            int from = ignoreOffset ? 0 : offset;
+            int to = ignoreOffset ? size : Math.min(size, from + Math.min(count, maxCount));
+            for (int i = from; i < to; i++) {
+                JSONObject item = new JSONObject();
+                item.put("id", "item" + i);
+                handler.item(item);
+            }
+            return new CTFJsonStream.Items(Math.max(0, to - from), reportTotal ? size : -1);
+        }
+    }
+
+    private static CTFPagedIterator<String> list(FakeServer app) throws IOException {
+        return new CTFPagedIterator<String>(app, "http://ctf.example.com/list", null, HttpMethod.GET,
+                null, "the test list") {
+            @Override
+            protected String create(JSONObject item) {
+                return (String) item.get("id");
+            }
+        };
+    }
+
+    private static List<String> drain(CTFPagedIterator<String> it) {
+        List<String> r = new ArrayList<String>();
+        while (it.hasNext()) {
+            r.add(it.next());
+        }
+        return r;
+    }
+
+    private static void assertItems(int size, List<String> items) {
+        assertEquals(size, items.size());
+        for (int i = 0; i < size; i++) {
+            assertEquals("item" + i, items.get(i));
+        }
+    }
+
+    @Test
+    public void lastPage() {
+        assertTrue("empty page", isLastPage(0, -1, 0));
+        assertTrue("more than asked for", isLastPage(PAGE_SIZE + 1, -1, PAGE_SIZE + 1));
+        assertTrue("total reached", isLastPage(10, 10, 10));
+        assertFalse("total not reached", isLastPage(PAGE_SIZE, 2 * PAGE_SIZE, PAGE_SIZE));
+        assertFalse("short page without a total", isLastPage(10, -1, 10));
+        assertFalse("full page without a total", isLastPage(PAGE_SIZE, -1, PAGE_SIZE));
+    }
+
+    @Test
+    public void walksAllPagesAndStopsAtTheTotal() throws Exception {
+        FakeServer app = new FakeServer(2 * PAGE_SIZE + 5);
+        assertItems(2 * PAGE_SIZE + 5, drain(list(app)));
+        assertEquals(Arrays.asList(0, PAGE_SIZE, 2 * PAGE_SIZE), app.offsets);
+    }
+
+    @Test
+    public void cappedPagesWithoutTotalEndOnAnEmptyPage() throws Exception {
+        FakeServer app = new FakeServer(25);
+        app.maxCount = 10;
+        app.reportTotal = false;
+        assertItems(25, drain(list(app)));
+        assertEquals(Arrays.asList(0, 10, 20, 25), app.offsets);
+    }
+
+    @Test
+    public void cappedPagesWithTotalNeedNoExtraRequest() throws Exception {
+        FakeServer app = new FakeServer(25);
+        app.maxCount = 10;
+        assertItems(25, drain(list(app)));
+        assertEquals(Arrays.asList(0, 10, 20), app.offsets);
+    }
+
+    @Test
+    public void serverIgnoringTheOffsetIsNotReadTwice() throws Exception {
+        FakeServer app = new FakeServer(30);
+        app.ignoreOffset = true;
+        app.reportTotal = false;
+        assertItems(30, drain(list(app)));
+        assertEquals(Arrays.asList(0, 30), app.offsets);
+    }
+
+    @Test
+    public void emptyList() throws Exception {
+        FakeServer app = new FakeServer(0);
+        app.reportTotal = false;
+        assertFalse(list(app).hasNext());
+        assertEquals(Arrays.asList(0), app.offsets);
+    }
+
+    @Test
+    public void laterPagesAreOnlyFetchedWhenNeeded() throws Exception {
+        FakeServer app = new FakeServer(3 * PAGE_SIZE);
+        CTFPagedIterator<String> it = list(app);
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            it.next();
+        }
+        assertEquals(Arrays.asList(0), app.offsets);
+        assertTrue(it.hasNext());
+        assertEquals(Arrays.asList(0, PAGE_SIZE), app.offsets);
+    }
+
+    @Test
+    public void failureOnALaterPageIsRethrown() throws Exception {
+        FakeServer app = new FakeServer(2 * PAGE_SIZE);
+        app.failAtOffset = PAGE_SIZE;
+        CTFPagedIterator<String> it = list(app);
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            it.next();
+        }
+        try {
+            it.hasNext();
+            fail();
+        } catch (CollabNetApp.CollabNetAppException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("the test list"));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void failureOnTheFirstPageIsThrownByTheConstructor() throws Exception {
+        FakeServer app = new FakeServer(10);
+        app.failAtOffset = 0;
+        list(app);
+    }
+}
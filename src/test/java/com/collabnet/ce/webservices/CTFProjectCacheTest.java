@@ -0,0 +1,147 @@
+package com.collabnet.ce.webservices;
+
+import hudson.model.Descriptor;
+import hudson.model.Job;
+import hudson.model.JobProperty;
+import hudson.plugins.collabnet.auth.CNAuthProjectProperty;
+import hudson.plugins.collabnet.documentuploader.FilePattern;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static com.collabnet.ce.webservices.CTFPagedIterator.PAGE_SIZE;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CTFProjectCacheTest {
+    /**
+     * Answers project look-ups with {@link #titles}, whatever the title filter says, and
+     * records every request.
+     */
+    private static class FakeServer extends CollabNetApp {
+        final List<Map<String, String>> requests = new ArrayList<Map<String, String>>();
+        List<String> titles = Collections.emptyList();
+        long total = -1;
+
+        FakeServer() {
+            super("http://ctf.example.com");
+        }
+
+        @Override
+        CTFJsonStream.Items getItems(String endPoint, Map<String, String> queryParam, String description,
+                                     CTFJsonStream.ItemHandler handler) throws IOException {
+            requests.add(queryParam);
+            for (String title : titles) {
+                JSONObject item = new JSONObject();
+                item.put("id", "proj-" + title);
+                item.put("title", title);
+                handler.item(item);
+            }
+            return new CTFJsonStream.Items(titles.size(), total);
+        }
+    }
+
+    @Before
+    public void setUp() {
+        CTFProjectCache.clear();
+    }
+
+    @Test
+    public void resolvedProjectIsLookedUpOnce() throws Exception {
+        FakeServer app = new FakeServer();
+        app.titles = Arrays.asList("Sample", "Sample project");
+        CTFProject p = app.getProjectByTitle("Sample project");
+        assertNotNull(p);
+        assertEquals("proj-Sample project", p.getId());
+        assertEquals("Sample project", app.requests.get(0).get("title"));
+
+        assertEquals("proj-Sample project", app.getProjectByTitle("Sample project").getId());
+        assertEquals(1, app.requests.size());
+    }
+
+    @Test
+    public void missingProjectIsRemembered() throws Exception {
+        FakeServer app = new FakeServer();
+        assertNull(app.getProjectByTitle("Nowhere"));
+        assertNull(app.getProjectByTitle("Nowhere"));
+        assertEquals(1, app.requests.size());
+    }
+
+    @Test
+    public void catalogueIsNotPagedThrough() throws Exception {
+        // a server ignoring the title filter returns a full page of other projects
+        FakeServer app = new FakeServer();
+        List<String> titles = new ArrayList<String>();
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            titles.add("Other " + i);
+        }
+        app.titles = titles;
+        app.total = 10 * PAGE_SIZE;
+        assertNull(app.getProjectByTitle("Sample project"));
+        assertEquals(1, app.requests.size());
+        assertEquals("0", app.requests.get(0).get("offset"));
+    }
+
+    @Test
+    public void snapshotRestoresResolvedProjectsOnly() throws Exception {
+        FakeServer app = new FakeServer();
+        app.titles = Collections.singletonList("Sample");
+        app.getProjectByTitle("Sample");
+        app.getProjectByTitle("Nowhere");
+        JSONArray snapshot = CTFProjectCache.snapshot();
+        assertEquals(1, snapshot.size());
+        assertNull("nothing changed since", CTFProjectCache.snapshot());
+
+        CTFProjectCache.clear();
+        CTFProjectCache.restore(snapshot);
+        CTFProjectCache.Entry e = CTFProjectCache.get(app.getServerUrl(), app.getUsername(), "Sample");
+        assertNotNull(e);
+        assertEquals("proj-Sample", e.data.get("id"));
+        assertTrue("revalidated once", e.claimRevalidation());
+        assertFalse(e.claimRevalidation());
+    }
+
+    @Test
+    public void onlyCollabNetSavesClearTheCache() throws Exception {
+        FakeServer app = new FakeServer();
+        app.titles = Collections.singletonList("Sample");
+        app.getProjectByTitle("Sample");
+        CTFProjectCache.ConfigListener listener = new CTFProjectCache.ConfigListener();
+
+        listener.onChange(createMock(Descriptor.class), null);
+        listener.onChange(job(), null);
+        app.getProjectByTitle("Sample");
+        assertEquals("unrelated saves", 1, app.requests.size());
+
+        listener.onChange(job(createMock(CNAuthProjectProperty.class)), null);
+        app.getProjectByTitle("Sample");
+        assertEquals("job with a CollabNet property", 2, app.requests.size());
+
+        listener.onChange(createMock(FilePattern.DescriptorImpl.class), null);
+        app.getProjectByTitle("Sample");
+        assertEquals("CollabNet global configuration", 3, app.requests.size());
+    }
+
+    private static Job<?, ?> job(JobProperty<?>... properties) {
+        Job job = createMock(Job.class);
+        List list = new ArrayList();
+        Collections.addAll(list, properties);
+        expect(job.getAllProperties()).andReturn(list).anyTimes();
+        replay(job);
+        return job;
+    }
+}
@@ -0,0 +1,135 @@
+package com.collabnet.ce.webservices;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.collabnet.ce.webservices.CTFSessionCache.SESSION_TTL_MS;
+import static org.junit.Assert.assertEquals;
+
+public class CTFSessionCacheTest {
+    private static final String URL = "https://ctf.example.com";
+
+    /**
+     * Hands out session1, session2, ... without TeamForge, holding every login until
+     * {@link #gate} opens if it is set.
+     */
+    private static class FakeTokens implements CTFSessionCache.TokenSource {
+        final AtomicInteger logins = new AtomicInteger();
+        volatile CountDownLatch gate;
+
+        public String getToken(String url, String username, String password) throws IOException {
+            int n = logins.incrementAndGet();
+            CountDownLatch g = gate;
+            if (g != null) {
+                try {
+                    g.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return "session" + n;
+        }
+    }
+
+    private CTFSessionCache.TokenSource original;
+    private FakeTokens tokens;
+
+    @Before
+    public void setUp() {
+        original = CTFSessionCache.tokenSource;
+        tokens = new FakeTokens();
+        CTFSessionCache.tokenSource = tokens;
+        CTFSessionCache.clear();
+    }
+
+    @After
+    public void tearDown() {
+        CTFSessionCache.tokenSource = original;
+        CTFSessionCache.clear();
+    }
+
+    @Test
+    public void sessionIsReused() throws Exception {
+        assertEquals("session1", CTFSessionCache.getSessionId(URL, "alice", "pw"));
+        assertEquals("session1", CTFSessionCache.getSessionId(URL, "alice", "pw"));
+        assertEquals("session2", CTFSessionCache.getSessionId(URL, "bob", "pw"));
+        assertEquals(2, tokens.logins.get());
+    }
+
+    @Test(timeout = 10000)
+    public void refreshStartsAtThreeQuartersOfTheTtl() throws Exception {
+        CTFSessionCache.getSessionId(URL, "alice", "pw");
+        CTFSessionCache.Entry e = CTFSessionCache.getEntry(URL, "alice");
+        assertEquals(SESSION_TTL_MS * 3 / 4, e.refreshAt - e.createdAt, 1);
+        assertEquals(SESSION_TTL_MS, e.expiresAt - e.createdAt);
+
+        // past the refresh point, but not expired
+        e.refreshAt = 0;
+        tokens.gate = new CountDownLatch(1);
+        assertEquals("served without waiting for the refresh", "session1",
+                CTFSessionCache.getSessionId(URL, "alice", "pw"));
+        assertEquals("only one refresh", "session1", CTFSessionCache.getSessionId(URL, "alice", "pw"));
+        tokens.gate.countDown();
+        while (!"session2".equals(CTFSessionCache.getSessionId(URL, "alice", "pw"))) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, tokens.logins.get());
+    }
+
+    @Test(timeout = 10000)
+    public void racingReloginsShareOneLogin() throws Exception {
+        final String stale = CTFSessionCache.getSessionId(URL, "alice", "pw");
+        tokens.gate = new CountDownLatch(1);
+        final int threads = 8;
+        final CyclicBarrier start = new CyclicBarrier(threads);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> results = new ArrayList<Future<String>>();
+            for (int i = 0; i < threads; i++) {
+                results.add(pool.submit(new Callable<String>() {
+                    public String call() throws Exception {
+                        start.await();
+                        return CTFSessionCache.relogin(URL, "alice", "pw", stale);
+                    }
+                }));
+            }
+            // let every thread reach the login in progress before it completes
+            Thread.sleep(200);
+            tokens.gate.countDown();
+            for (Future<String> r : results) {
+                assertEquals("session2", r.get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(2, tokens.logins.get());
+
+        // the new session being rejected in turn logs in again
+        assertEquals("session3", CTFSessionCache.relogin(URL, "alice", "pw", "session2"));
+    }
+
+    @Test
+    public void passwordMismatchForcesAFreshLogin() throws Exception {
+        assertEquals("session1", CTFSessionCache.getSessionId(URL, "alice", "pw1"));
+        assertEquals("session2", CTFSessionCache.getSessionId(URL, "alice", "pw2"));
+        assertEquals(2, tokens.logins.get());
+        // the cache now holds the second login, so the first password logs in again
+        assertEquals("session3", CTFSessionCache.getSessionId(URL, "alice", "pw1"));
+        // a relogin never hands a session to the wrong password either
+        assertEquals("session4", CTFSessionCache.relogin(URL, "alice", "pw2", "session1"));
+        assertEquals(4, tokens.logins.get());
+        assertEquals("session4", CTFSessionCache.getEntry(URL, "alice").sessionId);
+    }
+}
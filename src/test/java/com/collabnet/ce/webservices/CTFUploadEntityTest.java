@@ -0,0 +1,132 @@
+package com.collabnet.ce.webservices;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.http.impl.io.ChunkedInputStream;
+import org.apache.http.impl.io.ChunkedOutputStream;
+import org.apache.http.impl.io.HttpTransportMetricsImpl;
+import org.apache.http.impl.io.SessionInputBufferImpl;
+import org.apache.http.impl.io.SessionOutputBufferImpl;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CTFUploadEntityTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File file(String name, int size) throws Exception {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        File f = tmp.newFile(name);
+        Files.write(f.toPath(), content);
+        return f;
+    }
+
+    private static byte[] write(CTFUploadEntity entity) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        entity.writeTo(out);
+        return out.toByteArray();
+    }
+
+    private static String boundary(CTFUploadEntity entity) {
+        String type = entity.getContentType().getValue();
+        assertTrue(type, type.startsWith("multipart/form-data; boundary="));
+        return type.substring("multipart/form-data; boundary=".length());
+    }
+
+    /**
+     * Checks that the body is the file between the multipart header and trailer.
+     */
+    private static void assertFramed(CTFUploadEntity entity, String fileName, byte[] content, byte[] body) {
+        String boundary = boundary(entity);
+        byte[] header = ("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + fileName + "\"\r\n"
+                + "Content-Type: application/octet-stream\r\n"
+                + "\r\n").getBytes(StandardCharsets.UTF_8);
+        byte[] trailer = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8);
+        assertEquals(header.length + content.length + trailer.length, body.length);
+        assertArrayEquals(header, Arrays.copyOfRange(body, 0, header.length));
+        assertArrayEquals(content, Arrays.copyOfRange(body, header.length, header.length + content.length));
+        assertArrayEquals(trailer, Arrays.copyOfRange(body, header.length + content.length, body.length));
+    }
+
+    @Test
+    public void bodyIsChunkedMultipart() throws Exception {
+        File f = file("build.log", 10);
+        CTFUploadEntity entity = new CTFUploadEntity(f, null);
+        assertTrue(entity.isChunked());
+        assertTrue(entity.isRepeatable());
+        assertEquals(-1, entity.getContentLength());
+        assertFramed(entity, "build.log", Files.readAllBytes(f.toPath()), write(entity));
+        assertEquals(10, entity.getBytesSent());
+    }
+
+    @Test
+    public void fileSpanningManyBuffersIsCopiedAndDigested() throws Exception {
+        for (int size : new int[] {0, CTFUploadEntity.BUFFER_SIZE, 3 * CTFUploadEntity.BUFFER_SIZE + 17}) {
+            File f = file("artifact" + size + ".zip", size);
+            byte[] content = Files.readAllBytes(f.toPath());
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            CTFUploadEntity entity = new CTFUploadEntity(f, digest);
+
+            assertFramed(entity, f.getName(), content, write(entity));
+            assertEquals(size, entity.getBytesSent());
+            byte[] sha256 = MessageDigest.getInstance("SHA-256").digest(content);
+            assertArrayEquals(sha256, digest.digest());
+
+            // a retry sends the same body and starts the digest over
+            assertFramed(entity, f.getName(), content, write(entity));
+            assertArrayEquals(sha256, digest.digest());
+        }
+    }
+
+    @Test
+    public void bodySurvivesChunkedTransferEncoding() throws Exception {
+        File f = file("big.bin", 2 * CTFUploadEntity.BUFFER_SIZE + 5);
+        CTFUploadEntity entity = new CTFUploadEntity(f, null);
+
+        ByteArrayOutputStream wire = new ByteArrayOutputStream();
+        SessionOutputBufferImpl outBuffer = new SessionOutputBufferImpl(new HttpTransportMetricsImpl(), 8192);
+        outBuffer.bind(wire);
+        ChunkedOutputStream chunked = new ChunkedOutputStream(2048, outBuffer);
+        entity.writeTo(chunked);
+        chunked.close();
+        outBuffer.flush();
+
+        SessionInputBufferImpl inBuffer = new SessionInputBufferImpl(new HttpTransportMetricsImpl(), 8192);
+        inBuffer.bind(new ByteArrayInputStream(wire.toByteArray()));
+        try (InputStream in = new ChunkedInputStream(inBuffer)) {
+            assertFramed(entity, "big.bin", Files.readAllBytes(f.toPath()), IOUtils.toByteArray(in));
+        }
+    }
+
+    @Test
+    public void contentStreamsTheSameBody() throws Exception {
+        File f = file("report.html", 2 * CTFUploadEntity.BUFFER_SIZE + 5);
+        CTFUploadEntity entity = new CTFUploadEntity(f, null);
+        try (InputStream in = entity.getContent()) {
+            assertArrayEquals(write(entity), IOUtils.toByteArray(in));
+        }
+    }
+
+    @Test
+    public void quotesInTheFileNameAreEscaped() throws Exception {
+        File f = file("a\"b.txt", 3);
+        CTFUploadEntity entity = new CTFUploadEntity(f, null);
+        assertFramed(entity, "a%22b.txt", Files.readAllBytes(f.toPath()), write(entity));
+    }
+}
@@ -0,0 +1,251 @@
+package hudson.plugins.collabnet.auth;
+
+import com.collabnet.ce.webservices.CTFList;
+import com.collabnet.ce.webservices.CTFProject;
+import com.collabnet.ce.webservices.CTFRole;
+import com.collabnet.ce.webservices.CollabNetApp;
+import hudson.model.Item;
+import hudson.plugins.collabnet.auth.CNProjectACL.CollabNetRoles;
+import hudson.security.Permission;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CNAuthorizationCacheTest {
+    private static final long TIMEOUT = 60 * 1000L;
+
+    /**
+     * Serves {@link #granted} instead of asking TeamForge, optionally holding every load
+     * until {@link #gate} opens.
+     */
+    private static class TestCache extends CNAuthorizationCache {
+        final AtomicInteger loads = new AtomicInteger();
+        volatile Set<Permission> granted = Collections.<Permission>singleton(Item.READ);
+        volatile CountDownLatch gate;
+
+        TestCache(int maxEntries) {
+            super(maxEntries);
+        }
+
+        @Override
+        long getCacheTimeoutMs() {
+            return TIMEOUT;
+        }
+
+        @Override
+        Set<Permission> loadUserProjectPermSet(CollabNetApp conn, String username, String projectId) {
+            loads.incrementAndGet();
+            CountDownLatch g = gate;
+            if (g != null) {
+                try {
+                    g.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return granted;
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void racingLookupsShareOneLoad() throws Exception {
+        final TestCache cache = new TestCache(100);
+        cache.gate = new CountDownLatch(1);
+        final int threads = 8;
+        final CyclicBarrier start = new CyclicBarrier(threads);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<CNPermissionSet>> results = new ArrayList<Future<CNPermissionSet>>();
+            for (int i = 0; i < threads; i++) {
+                results.add(pool.submit(new Callable<CNPermissionSet>() {
+                    public CNPermissionSet call() throws Exception {
+                        start.await();
+                        return cache.getUserProjectPermissions("alice", "proj1001");
+                    }
+                }));
+            }
+            // let every lookup reach the load in progress before it completes
+            Thread.sleep(200);
+            cache.gate.countDown();
+            for (Future<CNPermissionSet> r : results) {
+                assertTrue(r.get().hasPermission(Item.READ));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, cache.loads.get());
+    }
+
+    @Test(timeout = 10000)
+    public void staleEntryIsServedWhileReloading() throws Exception {
+        TestCache cache = new TestCache(100);
+        CNPermissionSet first = cache.getUserProjectPermissions("alice", "proj1001");
+        assertFalse(first.hasPermission(Item.BUILD));
+
+        // past the refresh point, but not expired
+        cache.getEntry("alice", "proj1001").refreshAt = 0;
+        cache.gate = new CountDownLatch(1);
+        cache.granted = new HashSet<Permission>(Arrays.asList(Item.READ, Item.BUILD));
+
+        assertSame("served without waiting for the reload", first, cache.getUserProjectPermissions("alice", "proj1001"));
+        cache.gate.countDown();
+        while (!cache.getUserProjectPermissions("alice", "proj1001").hasPermission(Item.BUILD)) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, cache.loads.get());
+    }
+
+    @Test
+    public void expiryNeverExceedsTimeout() {
+        TestCache cache = new TestCache(1000);
+        for (int i = 0; i < 200; i++) {
+            long before = System.currentTimeMillis();
+            cache.getUserProjectPermissions("alice", "proj" + i);
+            long after = System.currentTimeMillis();
+            CNAuthorizationCache.Entry e = cache.getEntry("alice", "proj" + i);
+            assertTrue(e.expiresAt + " > " + (after + TIMEOUT), e.expiresAt <= after + TIMEOUT);
+            // shortened by at most the jitter, 10% of the timeout
+            assertTrue(e.expiresAt >= before + TIMEOUT * 9 / 10);
+            assertTrue(e.refreshAt < e.expiresAt);
+        }
+        assertEquals(200, cache.loads.get());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedDownToTargetSize() {
+        TestCache cache = new TestCache(10);
+        for (int i = 0; i < 10; i++) {
+            cache.getUserProjectPermissions("alice", "proj" + i);
+            cache.getEntry("alice", "proj" + i).lastAccess = 1000 + i;
+        }
+        cache.getEntry("alice", "proj0").lastAccess = 2000;
+        long evictions = CNAuthorizationCache.getStatistics().getEvictions();
+
+        cache.getUserProjectPermissions("alice", "proj10");
+
+        // 11 entries, brought down to 90% of 10
+        assertEquals(9, cache.size());
+        assertEquals(2, CNAuthorizationCache.getStatistics().getEvictions() - evictions);
+        assertFalse(cache.isCached("alice", "proj1"));
+        assertFalse(cache.isCached("alice", "proj2"));
+        assertTrue("recently used", cache.isCached("alice", "proj0"));
+        assertTrue("just added", cache.isCached("alice", "proj10"));
+        for (int i = 3; i < 10; i++) {
+            assertTrue(cache.isCached("alice", "proj" + i));
+        }
+    }
+
+    @Test
+    public void evictsOnlyTheExcessAmongEqualAccessTimes() {
+        TestCache cache = new TestCache(10);
+        for (int i = 0; i < 10; i++) {
+            cache.getUserProjectPermissions("alice", "proj" + i);
+            cache.getEntry("alice", "proj" + i).lastAccess = 1000;
+        }
+        cache.getUserProjectPermissions("alice", "proj10");
+        assertEquals(9, cache.size());
+        assertTrue(cache.isCached("alice", "proj10"));
+    }
+
+    private static CTFRole role(String title) {
+        CTFRole r = createMock(CTFRole.class);
+        expect(r.getTitle()).andReturn(title).anyTimes();
+        expect(r.getId()).andReturn("role-" + title).anyTimes();
+        replay(r);
+        return r;
+    }
+
+    private static CTFProject view(String username, CTFRole... roles) throws Exception {
+        CTFProject p = createMock(CTFProject.class);
+        expect(p.getUserRoles(username)).andReturn(new CTFList<CTFRole>(Arrays.asList(roles)));
+        replay(p);
+        return p;
+    }
+
+    /**
+     * A miss fetches only the project asked for, once for every user; each user's roles
+     * are then read with their own connection.
+     */
+    @Test
+    public void missFetchesTheOneProjectOnce() throws Exception {
+        CollabNetRoles.setRegistry(new CollabNetRoles.Registry(Arrays.asList(CollabNetRoles.HUDSON_READ_ROLE,
+                CollabNetRoles.HUDSON_BUILD_ROLE, CollabNetRoles.HUDSON_CONFIGURE_ROLE, CollabNetRoles.HUDSON_DELETE_ROLE)));
+        try {
+            CollabNetApp alice = createMock(CollabNetApp.class);
+            CollabNetApp bob = createMock(CollabNetApp.class);
+            CTFProject fetched = createMock(CTFProject.class);
+            CTFProject unbound = createMock(CTFProject.class);
+            expect(alice.getProjectById("proj1001")).andReturn(fetched);
+            expect(fetched.withConnection(null)).andReturn(unbound);
+            expect(fetched.withConnection(alice)).andReturn(view("alice", role("Hudson Read")));
+            expect(unbound.withConnection(bob)).andReturn(view("bob", role("Hudson Read"), role("Hudson Build/Cancel")));
+            replay(alice, bob, fetched, unbound);
+
+            CNAuthorizationCache cache = new CNAuthorizationCache(100);
+            Set<Permission> a = cache.loadUserProjectPermSet(alice, "alice", "proj1001");
+            assertTrue(a.contains(Item.READ));
+            assertFalse(a.contains(Item.BUILD));
+            // bob's connection is never asked for the project
+            Set<Permission> b = cache.loadUserProjectPermSet(bob, "bob", "proj1001");
+            assertTrue(b.contains(Item.READ));
+            assertTrue(b.contains(Item.BUILD));
+            verify(alice, bob, fetched, unbound);
+        } finally {
+            CollabNetRoles.setRegistry(null);
+        }
+    }
+
+    @Test
+    public void missingProjectGrantsNothing() throws Exception {
+        CollabNetApp conn = createMock(CollabNetApp.class);
+        expect(conn.getProjectById("proj9999")).andReturn(null);
+        replay(conn);
+        assertTrue(new CNAuthorizationCache(100).loadUserProjectPermSet(conn, "alice", "proj9999").isEmpty());
+        verify(conn);
+    }
+
+    @Test
+    public void countsHitsMissesAndLoads() {
+        TestCache cache = new TestCache(100);
+        CNAuthorizationCache.Statistics stats = CNAuthorizationCache.getStatistics();
+        long hits = stats.getHits(), misses = stats.getMisses();
+        long loads = stats.getLoads(), failures = stats.getLoadFailures();
+
+        cache.getUserProjectPermissions("alice", "proj1001");
+        cache.getUserProjectPermissions("alice", "proj1001");
+        cache.granted = null;
+        assertSame(CNPermissionSet.EMPTY, cache.getUserProjectPermissions("bob", "proj1001"));
+
+        assertEquals(1, stats.getHits() - hits);
+        assertEquals(2, stats.getMisses() - misses);
+        assertEquals(2, stats.getLoads() - loads);
+        assertEquals(1, stats.getLoadFailures() - failures);
+        assertTrue(stats.getAverageLoadTimeMs() >= 0);
+        String shown = stats.toString();
+        assertTrue(shown, shown.contains("hits: " + stats.getHits()));
+        assertTrue(shown, shown.contains("misses: " + stats.getMisses()));
+        assertTrue(shown, shown.contains("evictions: " + stats.getEvictions()));
+        assertTrue(shown, shown.contains(stats.getLoadFailures() + " failed"));
+    }
+}
@@ -0,0 +1,135 @@
+package hudson.plugins.collabnet.auth;
+
+import com.collabnet.ce.webservices.CTFUser;
+import com.collabnet.ce.webservices.CollabNetApp;
+import org.junit.Test;
+import org.springframework.security.core.Authentication;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CNFilterTest {
+    private static final String URL = "https://ctf.example.com";
+
+    /**
+     * Logs in without TeamForge. A token is good for one login only, as on TeamForge,
+     * and every login waits for {@link #gate} if it is set.
+     */
+    private static class TestFilter extends CNFilter {
+        final AtomicInteger logins = new AtomicInteger();
+        final Set<String> usedTokens = new HashSet<String>();
+        volatile CountDownLatch gate;
+
+        @Override
+        CNAuthentication login(String url, String username, String token) throws IOException {
+            logins.incrementAndGet();
+            CountDownLatch g = gate;
+            if (g != null) {
+                try {
+                    g.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            synchronized (usedTokens) {
+                if (!usedTokens.add(token)) {
+                    throw new IOException("Token " + token + " was already used");
+                }
+            }
+            return new CNAuthentication(username, connection());
+        }
+    }
+
+    private static CollabNetApp connection() throws IOException {
+        CTFUser user = createMock(CTFUser.class);
+        expect(user.isSuperUser()).andReturn(false).anyTimes();
+        replay(user);
+        CollabNetApp app = createMock(CollabNetApp.class);
+        expect(app.getMyselfData()).andReturn(user).anyTimes();
+        expect(app.copy()).andReturn(app).anyTimes();
+        replay(app);
+        return app;
+    }
+
+    @Test(timeout = 10000)
+    public void concurrentRequestsWithOneTokenShareOneLogin() throws Exception {
+        final TestFilter filter = new TestFilter();
+        filter.gate = new CountDownLatch(1);
+        final int threads = 8;
+        final CyclicBarrier start = new CyclicBarrier(threads);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Authentication> auths = new ArrayList<Authentication>();
+        try {
+            List<Future<Authentication>> results = new ArrayList<Future<Authentication>>();
+            for (int i = 0; i < threads; i++) {
+                results.add(pool.submit(new Callable<Authentication>() {
+                    public Authentication call() throws Exception {
+                        start.await();
+                        return filter.loginWithToken(URL, "alice", "token1");
+                    }
+                }));
+            }
+            // let every request reach the login in progress before it completes
+            Thread.sleep(200);
+            filter.gate.countDown();
+            for (Future<Authentication> r : results) {
+                Authentication auth = r.get();
+                assertNotNull(auth);
+                assertEquals("alice", auth.getName());
+                assertTrue(auth.isAuthenticated());
+                auths.add(auth);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, filter.logins.get());
+        // each request gets an authentication of its own
+        for (int i = 0; i < auths.size(); i++) {
+            for (int j = i + 1; j < auths.size(); j++) {
+                assertTrue(auths.get(i) != auths.get(j));
+            }
+        }
+    }
+
+    @Test
+    public void finishedLoginIsNotReplayed() {
+        TestFilter filter = new TestFilter();
+        assertNotNull(filter.loginWithToken(URL, "alice", "token1"));
+        // the same token again logs in again, and TeamForge refuses it
+        assertNull(filter.loginWithToken(URL, "alice", "token1"));
+        assertEquals(2, filter.logins.get());
+        // a failed login is not kept either
+        assertNull(filter.loginWithToken(URL, "alice", "token1"));
+        assertEquals(3, filter.logins.get());
+        assertNotNull(filter.loginWithToken(URL, "alice", "token2"));
+    }
+
+    @Test
+    public void copyKeepsTheSessionButNotTheFlags() throws Exception {
+        CNAuthentication auth = new CNAuthentication("alice", connection());
+        CNAuthentication copy = auth.copy();
+        copy.setAuthenticated(false);
+        copy.setCNAuthed(false);
+        assertTrue(auth.isAuthenticated());
+        assertTrue(auth.isCNAuthed());
+        assertEquals(auth.getCredentials(), copy.getCredentials());
+    }
+}
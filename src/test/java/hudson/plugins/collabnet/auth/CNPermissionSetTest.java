@@ -0,0 +1,79 @@
+package hudson.plugins.collabnet.auth;
+
+import hudson.model.Item;
+import hudson.security.Permission;
+import jenkins.model.Jenkins;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CNPermissionSetTest {
+    private static CNPermissionSet of(Permission... granted) {
+        Set<Permission> s = new HashSet<Permission>();
+        Collections.addAll(s, granted);
+        return new CNPermissionSet(s);
+    }
+
+    /**
+     * What the set must answer, worked out the slow way.
+     */
+    private static boolean walk(Set<Permission> granted, Permission p) {
+        for (; p != null; p = p.impliedBy) {
+            if (granted.contains(p)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void grantedPermissionsAreHeld() {
+        CNPermissionSet set = of(Item.BUILD, Item.READ);
+        assertTrue(set.hasPermission(Item.BUILD));
+        assertTrue(set.hasPermission(Item.READ));
+        assertFalse(set.hasPermission(Item.CONFIGURE));
+        assertFalse(set.hasPermission(Jenkins.ADMINISTER));
+        assertFalse(set.hasPermission(null));
+        assertEquals(2, set.getGranted().size());
+    }
+
+    @Test
+    public void administerImpliesEverything() {
+        CNPermissionSet set = of(Jenkins.ADMINISTER);
+        assertTrue(set.hasPermission(Item.READ));
+        assertTrue(set.hasPermission(Item.CONFIGURE));
+        assertEquals(Collections.singleton(Jenkins.ADMINISTER), set.getGranted());
+    }
+
+    @Test
+    public void emptySetHoldsNothing() {
+        for (Permission p : Permission.getAll()) {
+            assertFalse(p.getId(), CNPermissionSet.EMPTY.hasPermission(p));
+        }
+    }
+
+    @Test
+    public void bitsMatchTheImpliedByChains() {
+        Set<Permission> granted = new HashSet<Permission>();
+        Collections.addAll(granted, Item.CONFIGURE, Item.BUILD, Permission.READ);
+        CNPermissionSet set = new CNPermissionSet(granted);
+        for (Permission p : Permission.getAll()) {
+            assertEquals(p.getId(), walk(granted, p), set.hasPermission(p));
+        }
+    }
+
+    @Test
+    public void permissionsRegisteredLaterWalkTheChain() {
+        CNPermissionSet set = of(Item.CONFIGURE);
+        CNPermissionSet other = of(Item.READ);
+        Permission late = new Permission(Item.PERMISSIONS, "CNPermissionSetTestLate", null, Item.CONFIGURE);
+        assertTrue(set.hasPermission(late));
+        assertFalse(other.hasPermission(late));
+    }
+}
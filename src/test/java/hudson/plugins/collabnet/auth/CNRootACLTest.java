@@ -0,0 +1,107 @@
+package hudson.plugins.collabnet.auth;
+
+import com.collabnet.ce.webservices.CTFUser;
+import com.collabnet.ce.webservices.CollabNetApp;
+import hudson.model.Hudson;
+import hudson.model.Item;
+import hudson.security.ACL;
+import hudson.security.Permission;
+import hudson.util.XStream2;
+import jenkins.model.Jenkins;
+import org.junit.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CNRootACLTest {
+    private static CNRootACL acl() {
+        return new CNRootACL(Arrays.asList("admin", "admin"), Collections.singletonList("admins"),
+                Arrays.asList("reader"), Collections.singletonList("readers"));
+    }
+
+    private static CNAuthentication user(String name, boolean superUser, String... groups) throws Exception {
+        CTFUser user = createMock(CTFUser.class);
+        expect(user.isSuperUser()).andReturn(superUser).anyTimes();
+        replay(user);
+        CollabNetApp app = createMock(CollabNetApp.class);
+        expect(app.getMyselfData()).andReturn(user).anyTimes();
+        expect(app.getMyGroupNames()).andReturn(new HashSet<String>(Arrays.asList(groups))).anyTimes();
+        replay(app);
+        return new CNAuthentication(name, app);
+    }
+
+    private static void assertAdmin(ACL acl, Authentication a) {
+        assertTrue(acl.hasPermission2(a, Jenkins.ADMINISTER));
+        assertTrue(acl.hasPermission2(a, Item.CONFIGURE));
+    }
+
+    private static void assertReader(ACL acl, Authentication a) {
+        assertTrue(acl.hasPermission2(a, Item.READ));
+        assertFalse(acl.hasPermission2(a, Item.CONFIGURE));
+        assertFalse(acl.hasPermission2(a, Jenkins.ADMINISTER));
+    }
+
+    @Test
+    public void membersGetTheirPermissions() throws Exception {
+        CNRootACL acl = acl();
+        assertAdmin(acl, user("admin", false));
+        assertAdmin(acl, user("alice", false, "staff", "admins"));
+        assertAdmin(acl, user("root", true));
+        assertReader(acl, user("reader", false));
+        assertReader(acl, user("bob", false, "readers"));
+
+        CNAuthentication other = user("carol", false, "staff");
+        assertTrue("every logged in user reads Jenkins", acl.hasPermission2(other, Hudson.READ));
+        assertFalse(acl.hasPermission2(other, Item.READ));
+        assertTrue(acl.hasPermission2(ACL.SYSTEM2, Jenkins.ADMINISTER));
+    }
+
+    @Test
+    public void innerACLSettlesTheRest() throws Exception {
+        CNRootACL acl = acl().wrap(new CNAuthenticatedUserACL());
+        assertAdmin(acl, user("admin", false));
+        assertTrue(acl.hasPermission2(user("carol", false), Item.CONFIGURE));
+        Authentication foreign = new UsernamePasswordAuthenticationToken("dave", "pw");
+        assertFalse(acl.hasPermission2(foreign, Item.READ));
+        // without the inner ACL, other users get nothing
+        assertFalse(acl().hasPermission2(user("carol", false), Item.CONFIGURE));
+    }
+
+    /**
+     * Older configurations saved the users and groups as lists, and may miss some of them.
+     */
+    @Test
+    public void oldConfigurationsAreConverted() throws Exception {
+        String xml = "<hudson.plugins.collabnet.auth.CNRootACL>"
+                + "<adminUsers class=\"java.util.ArrayList\"><string>admin</string></adminUsers>"
+                + "<readUsers class=\"java.util.ArrayList\"><string>reader</string></readUsers>"
+                + "<readGroups class=\"java.util.ArrayList\"><string>readers</string></readGroups>"
+                + "</hudson.plugins.collabnet.auth.CNRootACL>";
+        CNRootACL acl = (CNRootACL) new XStream2().fromXML(xml);
+        assertAdmin(acl, user("admin", false));
+        assertReader(acl, user("bob", false, "readers"));
+        assertFalse("no admin groups were saved", acl.hasPermission2(user("carol", false, "admins"), Item.READ));
+        // the sets can be shared by a wrapping ACL
+        assertReader(acl.wrap(null), user("reader", false));
+    }
+
+    @Test
+    public void savedACLReadsBack() throws Exception {
+        XStream2 xs = new XStream2();
+        CNRootACL acl = (CNRootACL) xs.fromXML(xs.toXML(acl()));
+        assertAdmin(acl, user("alice", false, "admins"));
+        assertReader(acl, user("reader", false));
+        for (Permission p : new Permission[] {Item.READ, Item.BUILD}) {
+            assertFalse(p.getId(), acl.hasPermission2(user("carol", false), p));
+        }
+    }
+}
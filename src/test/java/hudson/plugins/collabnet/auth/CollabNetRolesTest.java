@@ -0,0 +1,100 @@
+package hudson.plugins.collabnet.auth;
+
+import hudson.model.Item;
+import hudson.plugins.collabnet.auth.CNProjectACL.CollabNetRoles;
+import hudson.security.Permission;
+import jenkins.model.Jenkins;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+
+import static hudson.plugins.collabnet.auth.CNProjectACL.CollabNetRoles.HUDSON_BUILD_ROLE;
+import static hudson.plugins.collabnet.auth.CNProjectACL.CollabNetRoles.HUDSON_CONFIGURE_ROLE;
+import static hudson.plugins.collabnet.auth.CNProjectACL.CollabNetRoles.HUDSON_DELETE_ROLE;
+import static hudson.plugins.collabnet.auth.CNProjectACL.CollabNetRoles.HUDSON_READ_ROLE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CollabNetRolesTest {
+    private static CollabNetRoles.Registry registry() {
+        return new CollabNetRoles.Registry(Arrays.asList(HUDSON_READ_ROLE, HUDSON_BUILD_ROLE,
+                HUDSON_CONFIGURE_ROLE, HUDSON_DELETE_ROLE));
+    }
+
+    /**
+     * The granting role, worked out the slow way.
+     */
+    private static CollabNetRole scan(List<CollabNetRole> roles, Permission permission) {
+        for (CollabNetRole role : roles) {
+            for (Permission p = permission; p != null; p = p.impliedBy) {
+                if (role.getPermissions().contains(p)) {
+                    return role;
+                }
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void rolesAreLookedUpByName() {
+        CollabNetRoles.Registry r = registry();
+        assertEquals(Arrays.asList("Hudson Read", "Hudson Build/Cancel", "Hudson Configure", "Hudson Delete"),
+                r.names);
+        for (CollabNetRole role : r.roles) {
+            assertSame(role, r.byName.get(role.getName()));
+            assertEquals(role.getName(), new HashSet<Permission>(role.getPermissions()), r.permissions.get(role));
+        }
+        assertNull(r.byName.get("Hudson Promote"));
+    }
+
+    @Test
+    public void registryCannotBeModified() {
+        CollabNetRoles.Registry r = registry();
+        try {
+            r.names.add("Hudson Admin");
+            fail();
+        } catch (UnsupportedOperationException expected) {
+        }
+        try {
+            r.permissions.get(HUDSON_READ_ROLE).add(Jenkins.ADMINISTER);
+            fail();
+        } catch (UnsupportedOperationException expected) {
+        }
+    }
+
+    @Test
+    public void grantingRoleMatchesAScan() {
+        CollabNetRoles.Registry r = registry();
+        assertSame(HUDSON_READ_ROLE, r.getGrantingRole(Item.READ));
+        assertSame(HUDSON_BUILD_ROLE, r.getGrantingRole(Item.BUILD));
+        assertSame(HUDSON_CONFIGURE_ROLE, r.getGrantingRole(Item.CONFIGURE));
+        assertSame(HUDSON_DELETE_ROLE, r.getGrantingRole(Item.DELETE));
+        assertNull(r.getGrantingRole(Jenkins.ADMINISTER));
+        for (Permission p : Permission.getAll()) {
+            assertSame(p.getId(), scan(r.roles, p), r.getGrantingRole(p));
+        }
+    }
+
+    /**
+     * expandPermissions once followed the starting permission's impliedBy forever.
+     */
+    @Test(timeout = 10000)
+    public void expandPermissionsWalksTheImpliedByChain() {
+        for (Permission permission : Permission.getAll()) {
+            List<Permission> chain = new ArrayList<Permission>();
+            for (Permission p = permission; p != null; p = p.impliedBy) {
+                chain.add(p);
+            }
+            Collection<Permission> expanded = CollabNetRoles.expandPermissions(permission);
+            assertEquals(permission.getId(), chain, new ArrayList<Permission>(expanded));
+        }
+        assertTrue(CollabNetRoles.expandPermissions(Item.CONFIGURE).size() > 1);
+    }
+}
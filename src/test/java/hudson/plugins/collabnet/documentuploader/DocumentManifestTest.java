@@ -0,0 +1,157 @@
+package hudson.plugins.collabnet.documentuploader;
+
+import com.collabnet.ce.webservices.CTFDocument;
+import com.collabnet.ce.webservices.CTFDocumentFolder;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DocumentManifestTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File file;
+    private CTFDocumentFolder folder;
+    private CTFDocumentFolder otherFolder;
+
+    @Before
+    public void setUp() throws Exception {
+        file = new File(tmp.getRoot(), "manifest.json");
+        folder = folder("docf1001");
+        otherFolder = folder("docf1002");
+    }
+
+    private static CTFDocumentFolder folder(String id) {
+        CTFDocumentFolder f = createMock(CTFDocumentFolder.class);
+        expect(f.getId()).andReturn(id).anyTimes();
+        replay(f);
+        return f;
+    }
+
+    private static CTFDocument doc(String id) {
+        CTFDocument d = createMock(CTFDocument.class);
+        expect(d.getId()).andReturn(id).anyTimes();
+        replay(d);
+        return d;
+    }
+
+    private static DocumentManifest.Entry entry(String name, String docId) {
+        return new DocumentManifest.Entry("/ws/" + name, 42, 1000, "sha-" + name, docId);
+    }
+
+    @Test
+    public void missingFileGivesAnEmptyManifest() {
+        DocumentManifest m = DocumentManifest.load(file);
+        assertNull(m.get(folder, "a.txt", doc("doc1")));
+        assertTrue(m.getDocumentIds(folder).isEmpty());
+    }
+
+    @Test
+    public void roundTrip() throws Exception {
+        DocumentManifest m = DocumentManifest.load(file);
+        m.put(folder, "a.txt", entry("a.txt", "doc1"));
+        m.put(otherFolder, "b.txt", entry("b.txt", "doc2"));
+        m.save();
+
+        DocumentManifest loaded = DocumentManifest.load(file);
+        DocumentManifest.Entry e = loaded.get(folder, "a.txt", doc("doc1"));
+        assertNotNull(e);
+        assertEquals("/ws/a.txt", e.path);
+        assertEquals(42, e.size);
+        assertEquals(1000, e.lastModified);
+        assertEquals("sha-a.txt", e.sha256);
+        assertTrue(e.matches("/ws/a.txt", 42, 1000));
+        assertFalse(e.matches("/ws/a.txt", 43, 1000));
+        assertEquals(Collections.singletonMap("a.txt", "doc1"), loaded.getDocumentIds(folder));
+        assertEquals(Collections.singletonMap("b.txt", "doc2"), loaded.getDocumentIds(otherFolder));
+    }
+
+    @Test
+    public void entryOnlyCountsForItsDocument() {
+        DocumentManifest m = DocumentManifest.load(file);
+        m.put(folder, "a.txt", entry("a.txt", "doc1"));
+        assertNull("deleted on TeamForge", m.get(folder, "a.txt", null));
+        assertNull("replaced on TeamForge", m.get(folder, "a.txt", doc("doc9")));
+        assertNull("other folder", m.get(otherFolder, "a.txt", doc("doc1")));
+    }
+
+    @Test
+    public void corruptFilesGiveAnEmptyManifest() throws Exception {
+        for (String content : new String[] {"{not json", "null", "[1,2]", "{\"docf1001/a.txt\":3}",
+                "{\"docf1001/a.txt\":{\"path\":\"/ws/a.txt\"}}"}) {
+            Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+            DocumentManifest m = DocumentManifest.load(file);
+            assertTrue(content, m.getDocumentIds(folder).isEmpty());
+            m.put(folder, "a.txt", entry("a.txt", "doc1"));
+            m.save();
+            assertNotNull(content, DocumentManifest.load(file).get(folder, "a.txt", doc("doc1")));
+        }
+    }
+
+    @Test
+    public void malformedRecordsAreIgnoredOneByOne() throws Exception {
+        String content = "{\"docf1001/a.txt\":{\"path\":\"/ws/a.txt\",\"size\":\"42\"},"
+                + "\"docf1001/b.txt\":{\"path\":\"/ws/b.txt\",\"size\":42,\"mtime\":1000,"
+                + "\"sha256\":\"sha-b.txt\",\"documentId\":\"doc2\"}}";
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        DocumentManifest m = DocumentManifest.load(file);
+        assertEquals(Collections.singletonMap("b.txt", "doc2"), m.getDocumentIds(folder));
+        assertTrue(m.get(folder, "b.txt", doc("doc2")).matches("/ws/b.txt", 42, 1000));
+    }
+
+    @Test
+    public void concurrentSavesAreMerged() throws Exception {
+        DocumentManifest first = DocumentManifest.load(file);
+        DocumentManifest second = DocumentManifest.load(file);
+        first.put(folder, "a.txt", entry("a.txt", "doc1"));
+        second.put(folder, "b.txt", entry("b.txt", "doc2"));
+        first.save();
+        second.save();
+        DocumentManifest loaded = DocumentManifest.load(file);
+        assertNotNull(loaded.get(folder, "a.txt", doc("doc1")));
+        assertNotNull(loaded.get(folder, "b.txt", doc("doc2")));
+    }
+
+    @Test
+    public void removalIsSaved() throws Exception {
+        DocumentManifest m = DocumentManifest.load(file);
+        m.put(folder, "a.txt", entry("a.txt", "doc1"));
+        m.put(folder, "b.txt", entry("b.txt", "doc2"));
+        m.save();
+
+        m = DocumentManifest.load(file);
+        m.remove(folder, "a.txt");
+        m.save();
+        assertEquals(Collections.singletonMap("b.txt", "doc2"), DocumentManifest.load(file).getDocumentIds(folder));
+    }
+
+    @Test
+    public void removalDoesNotUndoANewerUpload() throws Exception {
+        DocumentManifest m = DocumentManifest.load(file);
+        m.put(folder, "a.txt", entry("a.txt", "doc1"));
+        m.save();
+
+        DocumentManifest pruning = DocumentManifest.load(file);
+        DocumentManifest uploading = DocumentManifest.load(file);
+        pruning.remove(folder, "a.txt");
+        uploading.put(folder, "a.txt", entry("a.txt", "doc3"));
+        uploading.save();
+        pruning.save();
+        assertNotNull(DocumentManifest.load(file).get(folder, "a.txt", doc("doc3")));
+    }
+}
@@ -0,0 +1,120 @@
+package hudson.plugins.collabnet.filerelease;
+
+import com.collabnet.ce.webservices.CTFRelease;
+import com.collabnet.ce.webservices.CTFReleaseFile;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ReleaseFileDigestsTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File file;
+    private CTFRelease release;
+
+    @Before
+    public void setUp() throws Exception {
+        file = new File(tmp.getRoot(), "digests.json");
+        release = createMock(CTFRelease.class);
+        expect(release.getId()).andReturn("rel1001").anyTimes();
+        replay(release);
+    }
+
+    private static CTFReleaseFile releaseFile(String id, String title) {
+        CTFReleaseFile f = createMock(CTFReleaseFile.class);
+        expect(f.getId()).andReturn(id).anyTimes();
+        expect(f.getTitle()).andReturn(title).anyTimes();
+        replay(f);
+        return f;
+    }
+
+    @Test
+    public void roundTrip() throws Exception {
+        ReleaseFileDigests d = ReleaseFileDigests.load(file);
+        assertNull(d.get(release, releaseFile("frs1", "a.zip")));
+        d.put(release, releaseFile("frs1", "a.zip"), "aaa");
+        d.put(release, releaseFile("frs2", "b.zip"), "bbb");
+        d.save();
+
+        ReleaseFileDigests loaded = ReleaseFileDigests.load(file);
+        assertEquals("aaa", loaded.get(release, releaseFile("frs1", "a.zip")));
+        assertEquals("bbb", loaded.get(release, releaseFile("frs2", "b.zip")));
+    }
+
+    @Test
+    public void digestOnlyCountsForItsFile() throws Exception {
+        ReleaseFileDigests d = ReleaseFileDigests.load(file);
+        d.put(release, releaseFile("frs1", "a.zip"), "aaa");
+        assertNull("replaced on TeamForge", d.get(release, releaseFile("frs9", "a.zip")));
+    }
+
+    @Test
+    public void corruptFilesGiveNoDigests() throws Exception {
+        for (String content : new String[] {"{not json", "null", "[1,2]", "{\"rel1001/a.zip\":3}"}) {
+            Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+            ReleaseFileDigests d = ReleaseFileDigests.load(file);
+            assertNull(content, d.get(release, releaseFile("frs1", "a.zip")));
+            d.put(release, releaseFile("frs1", "a.zip"), "aaa");
+            d.save();
+            assertEquals(content, "aaa", ReleaseFileDigests.load(file).get(release, releaseFile("frs1", "a.zip")));
+        }
+    }
+
+    @Test
+    public void filesNoLongerInTheReleaseArePruned() throws Exception {
+        ReleaseFileDigests d = ReleaseFileDigests.load(file);
+        d.put(release, releaseFile("frs1", "a.zip"), "aaa");
+        d.put(release, releaseFile("frs2", "b.zip"), "bbb");
+        d.save();
+
+        d = ReleaseFileDigests.load(file);
+        d.retain(release, Collections.singleton("frs2"));
+        d.save();
+        ReleaseFileDigests loaded = ReleaseFileDigests.load(file);
+        assertNull(loaded.get(release, releaseFile("frs1", "a.zip")));
+        assertEquals("bbb", loaded.get(release, releaseFile("frs2", "b.zip")));
+    }
+
+    @Test
+    public void concurrentSavesAreMerged() throws Exception {
+        ReleaseFileDigests first = ReleaseFileDigests.load(file);
+        ReleaseFileDigests second = ReleaseFileDigests.load(file);
+        first.put(release, releaseFile("frs1", "a.zip"), "aaa");
+        second.put(release, releaseFile("frs2", "b.zip"), "bbb");
+        first.save();
+        second.save();
+        ReleaseFileDigests loaded = ReleaseFileDigests.load(file);
+        assertEquals("aaa", loaded.get(release, releaseFile("frs1", "a.zip")));
+        assertEquals("bbb", loaded.get(release, releaseFile("frs2", "b.zip")));
+    }
+
+    @Test
+    public void pruningDoesNotUndoANewerUpload() throws Exception {
+        ReleaseFileDigests d = ReleaseFileDigests.load(file);
+        d.put(release, releaseFile("frs1", "a.zip"), "aaa");
+        d.save();
+
+        ReleaseFileDigests pruning = ReleaseFileDigests.load(file);
+        ReleaseFileDigests uploading = ReleaseFileDigests.load(file);
+        pruning.retain(release, new HashSet<String>(Arrays.asList("frs7")));
+        uploading.put(release, releaseFile("frs3", "a.zip"), "ccc");
+        uploading.save();
+        pruning.save();
+        assertEquals("ccc", ReleaseFileDigests.load(file).get(release, releaseFile("frs3", "a.zip")));
+    }
+}
@@ -0,0 +1,54 @@
+package hudson.plugins.collabnet.util;
+
+import hudson.plugins.collabnet.CollabNetPlugin;
+import org.junit.After;
+import org.junit.Test;
+
+import javax.ws.rs.client.Client;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class CNHttpTransportTest {
+    private static final String SKIP_SSL_VALIDATION = CollabNetPlugin.class.getName() + ".skipSslValidation";
+
+    @After
+    public void tearDown() {
+        System.clearProperty(SKIP_SSL_VALIDATION);
+        CNHttpTransport.shutdown();
+    }
+
+    @Test
+    public void clientsAreShared() {
+        Client jersey = CNHttpTransport.getJerseyClient();
+        assertSame(jersey, CNHttpTransport.getJerseyClient());
+        assertSame(CNHttpTransport.getHttpClient(), CNHttpTransport.getHttpClient());
+        assertSame(CNHttpTransport.getConnectionManager(), CNHttpTransport.getConnectionManager());
+    }
+
+    @Test
+    public void eachSslSettingHasItsOwnPool() {
+        Client validating = CNHttpTransport.getJerseyClient();
+        Object validatingPool = CNHttpTransport.getConnectionManager();
+
+        System.setProperty(SKIP_SSL_VALIDATION, "true");
+        Client lenient = CNHttpTransport.getJerseyClient();
+        assertNotSame(validating, lenient);
+        assertNotSame(validatingPool, CNHttpTransport.getConnectionManager());
+        assertSame(lenient, CNHttpTransport.getJerseyClient());
+
+        // switching back does not disturb requests still using the other pool
+        System.clearProperty(SKIP_SSL_VALIDATION);
+        assertSame(validating, CNHttpTransport.getJerseyClient());
+        assertSame(validatingPool, CNHttpTransport.getConnectionManager());
+    }
+
+    @Test
+    public void shutdownStartsOver() {
+        Client before = CNHttpTransport.getJerseyClient();
+        Object pool = CNHttpTransport.getConnectionManager();
+        CNHttpTransport.shutdown();
+        assertNotSame(before, CNHttpTransport.getJerseyClient());
+        assertNotSame(pool, CNHttpTransport.getConnectionManager());
+    }
+}
@@ -0,0 +1,119 @@
+package hudson.plugins.collabnet.util;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.ws.rs.core.HttpHeaders;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CNResponseCacheTest {
+    private static final byte[] BODY = "{\"items\":[]}".getBytes(StandardCharsets.UTF_8);
+
+    @Before
+    @After
+    public void clear() {
+        CNResponseCache.clear();
+    }
+
+    @Test
+    public void keyDependsOnTheUserAndNotOnTheParameterOrder() {
+        Map<String, String> p1 = new LinkedHashMap<String, String>();
+        p1.put("offset", "0");
+        p1.put("count", "100");
+        Map<String, String> p2 = new LinkedHashMap<String, String>();
+        p2.put("count", "100");
+        p2.put("offset", "0");
+        assertEquals(CNResponseCache.key("alice", "http://ctf/a", p1), CNResponseCache.key("alice", "http://ctf/a", p2));
+        assertFalse(CNResponseCache.key("alice", "http://ctf/a", p1).equals(CNResponseCache.key("bob", "http://ctf/a", p1)));
+        assertFalse(CNResponseCache.key("alice", "http://ctf/a", null).equals(CNResponseCache.key("alice", "http://ctf/a", p1)));
+    }
+
+    @Test
+    public void everyHitGetsItsOwnStream() throws Exception {
+        CNResponseCache.put("k", "\"v1\"", null, BODY);
+        CNResponseCache.Entry e = CNResponseCache.get("k");
+        assertNotNull(e);
+        InputStream first = e.getBody();
+        InputStream second = e.getBody();
+        assertNotSame(first, second);
+        assertArrayEquals(BODY, IOUtils.toByteArray(first));
+        assertArrayEquals(BODY, IOUtils.toByteArray(second));
+        assertEquals(BODY.length, CNResponseCache.getTotalBytes());
+    }
+
+    @Test
+    public void conditionalHeaders() {
+        CNResponseCache.put("etag", "\"v1\"", null, BODY);
+        CNResponseCache.put("date", null, "Sat, 17 Oct 2026 10:00:00 GMT", BODY);
+        Map<String, String> expected = new HashMap<String, String>();
+        expected.put(HttpHeaders.IF_NONE_MATCH, "\"v1\"");
+        assertEquals(expected, CNResponseCache.get("etag").getConditionalHeaders());
+        expected.clear();
+        expected.put(HttpHeaders.IF_MODIFIED_SINCE, "Sat, 17 Oct 2026 10:00:00 GMT");
+        assertEquals(expected, CNResponseCache.get("date").getConditionalHeaders());
+    }
+
+    @Test
+    public void responsesThatCannotBeRevalidatedAreNotKept() {
+        assertFalse(CNResponseCache.isCacheable(null, null));
+        CNResponseCache.put("k", null, null, BODY);
+        assertNull(CNResponseCache.get("k"));
+        assertEquals(0, CNResponseCache.getTotalBytes());
+    }
+
+    @Test
+    public void replacingAResponseKeepsTheByteCount() {
+        CNResponseCache.put("k", "\"v1\"", null, BODY);
+        CNResponseCache.put("k", "\"v2\"", null, new byte[3]);
+        assertEquals(3, CNResponseCache.getTotalBytes());
+        assertTrue(CNResponseCache.get("k").getConditionalHeaders().containsValue("\"v2\""));
+    }
+
+    @Test
+    public void bodyLargerThanTheLimitIsNotKeptAndDropsTheOldOne() {
+        CNResponseCache.put("k", "\"v1\"", null, BODY);
+        CNResponseCache.put("k", "\"v2\"", null, new byte[(int) CNResponseCache.MAX_BYTES + 1]);
+        assertNull(CNResponseCache.get("k"));
+        assertEquals(0, CNResponseCache.getTotalBytes());
+    }
+
+    @Test
+    public void leastRecentlyUsedResponsesAreEvicted() {
+        for (int i = 0; i < CNResponseCache.MAX_ENTRIES; i++) {
+            CNResponseCache.put("k" + i, "\"v\"", null, BODY);
+        }
+        // k0 is used again, so k1 is now the eldest
+        assertNotNull(CNResponseCache.get("k0"));
+        CNResponseCache.put("new", "\"v\"", null, BODY);
+        assertNotNull(CNResponseCache.get("k0"));
+        assertNull(CNResponseCache.get("k1"));
+        assertNotNull(CNResponseCache.get("new"));
+        assertEquals((long) CNResponseCache.MAX_ENTRIES * BODY.length, CNResponseCache.getTotalBytes());
+    }
+
+    @Test
+    public void eldestResponsesAreEvictedBeyondTheByteLimit() {
+        int half = (int) (CNResponseCache.MAX_BYTES / 2);
+        CNResponseCache.put("a", "\"v\"", null, new byte[half]);
+        CNResponseCache.put("b", "\"v\"", null, new byte[half]);
+        CNResponseCache.put("c", "\"v\"", null, new byte[half]);
+        assertNull(CNResponseCache.get("a"));
+        assertNotNull(CNResponseCache.get("b"));
+        assertNotNull(CNResponseCache.get("c"));
+        assertTrue(CNResponseCache.getTotalBytes() <= CNResponseCache.MAX_BYTES);
+    }
+}
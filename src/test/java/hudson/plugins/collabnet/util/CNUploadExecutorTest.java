@@ -0,0 +1,122 @@
+package hudson.plugins.collabnet.util;
+
+import hudson.model.TaskListener;
+import hudson.util.StreamTaskListener;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CNUploadExecutorTest {
+    private final ByteArrayOutputStream log = new ByteArrayOutputStream();
+    private final TaskListener listener = new StreamTaskListener(log, StandardCharsets.UTF_8);
+
+    /**
+     * Logs its name, waits, and returns its name, or fails if asked to.
+     */
+    private static CNUploadExecutor.Task<String> task(final String name, final long sleepMs, final boolean fail) {
+        return new CNUploadExecutor.Task<String>() {
+            public String call(TaskListener listener) throws IOException, InterruptedException {
+                listener.getLogger().println("start " + name);
+                Thread.sleep(sleepMs);
+                if (fail) {
+                    throw new IOException("failed " + name);
+                }
+                listener.getLogger().println("end " + name);
+                return name;
+            }
+        };
+    }
+
+    private String log() {
+        listener.getLogger().flush();
+        return new String(log.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void resultsAndLogsKeepTheOrderOfTheTasks() throws Exception {
+        List<CNUploadExecutor.Task<String>> tasks = new ArrayList<CNUploadExecutor.Task<String>>();
+        // the first tasks are the slowest, so they finish last
+        for (int i = 0; i < 6; i++) {
+            tasks.add(task("t" + i, (6 - i) * 20, false));
+        }
+        List<String> results = CNUploadExecutor.runAll(tasks, listener);
+        assertEquals(Arrays.asList("t0", "t1", "t2", "t3", "t4", "t5"), results);
+        String log = log();
+        int at = -1;
+        for (int i = 0; i < 6; i++) {
+            int start = log.indexOf("start t" + i);
+            int end = log.indexOf("end t" + i);
+            assertTrue(log, start > at);
+            assertTrue(log, end > start);
+            at = end;
+        }
+    }
+
+    @Test
+    public void failedTaskGetsNullAndTheOthersStillRun() throws Exception {
+        List<CNUploadExecutor.Task<String>> tasks = new ArrayList<CNUploadExecutor.Task<String>>();
+        tasks.add(task("t0", 0, false));
+        tasks.add(task("t1", 10, true));
+        tasks.add(task("t2", 30, false));
+        List<String> results = CNUploadExecutor.runAll(tasks, listener);
+        assertEquals(3, results.size());
+        assertEquals("t0", results.get(0));
+        assertNull(results.get(1));
+        assertEquals("t2", results.get(2));
+        String log = log();
+        assertTrue(log, log.contains("failed t1"));
+        assertTrue(log, log.indexOf("failed t1") < log.indexOf("start t2"));
+    }
+
+    @Test
+    public void atMostConcurrencyTasksRunAtOnce() throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger peak = new AtomicInteger();
+        List<CNUploadExecutor.Task<String>> tasks = new ArrayList<CNUploadExecutor.Task<String>>();
+        for (int i = 0; i < 3 * CNUploadExecutor.CONCURRENCY; i++) {
+            final String name = "t" + i;
+            tasks.add(new CNUploadExecutor.Task<String>() {
+                public String call(TaskListener listener) throws InterruptedException {
+                    int now = running.incrementAndGet();
+                    synchronized (peak) {
+                        peak.set(Math.max(peak.get(), now));
+                    }
+                    Thread.sleep(20);
+                    running.decrementAndGet();
+                    return name;
+                }
+            });
+        }
+        List<String> results = CNUploadExecutor.runAll(tasks, listener);
+        assertEquals(tasks.size(), results.size());
+        assertTrue("peak " + peak.get(), peak.get() <= CNUploadExecutor.CONCURRENCY);
+        assertEquals(0, running.get());
+    }
+
+    @Test
+    public void singleTaskRunsInTheCallingThread() throws Exception {
+        final Thread caller = Thread.currentThread();
+        List<CNUploadExecutor.Task<Boolean>> tasks = new ArrayList<CNUploadExecutor.Task<Boolean>>();
+        tasks.add(new CNUploadExecutor.Task<Boolean>() {
+            public Boolean call(TaskListener listener) {
+                return Thread.currentThread() == caller;
+            }
+        });
+        assertEquals(Arrays.asList(Boolean.TRUE), CNUploadExecutor.runAll(tasks, listener));
+    }
+
+    @Test
+    public void noTasks() throws Exception {
+        assertTrue(CNUploadExecutor.runAll(new ArrayList<CNUploadExecutor.Task<String>>(), listener).isEmpty());
+    }
+}